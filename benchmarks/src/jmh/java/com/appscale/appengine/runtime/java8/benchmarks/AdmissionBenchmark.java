@@ -0,0 +1,120 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.appscale.appengine.runtime.java8.jetty.RequestEnvironments;
+import com.appscale.appengine.runtime.java8.util.ApiCallTracker;
+import com.appscale.appengine.runtime.java8.util.Logins;
+import com.appscale.appengine.runtime.java8.util.Logins.LoginCookie;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment.RuntimeEnvironmentRequest;
+import com.google.appengine.repackaged.com.google.common.collect.ImmutableMap;
+import com.google.appengine.repackaged.com.google.common.io.BaseEncoding;
+import com.google.apphosting.api.ApiProxy;
+
+/**
+ * Cost of admitting a request before application code runs.
+ *
+ * The admission benchmark runs the request environment setup and teardown
+ * that the container runs around application code for each request. Run
+ * with the gc profiler for bytes allocated per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class AdmissionBenchmark {
+  private static final String APPLICATION_ID = "benchmark";
+  private static final String COOKIE_SECRET = "5a5db44769184e83a6f9d582fe8b22b4";
+
+  @Param({"none", "valid", "invalid", "force-admin"})
+  public String login;
+
+  private HttpServletRequest request;
+
+  @Setup
+  public void setup() throws NoSuchAlgorithmException {
+    System.setProperty("APPLICATION_ID", APPLICATION_ID);
+    System.setProperty("COOKIE_SECRET", COOKIE_SECRET);
+    final String email = "example@appscale.internal";
+    final String nickname = "example";
+    final String admins = APPLICATION_ID;
+    switch (login) {
+      case "none":
+        request = BenchmarkRequests.request();
+        break;
+      case "valid":
+        request = BenchmarkRequests.request(Collections.emptyMap(), new Cookie(Logins.COOKIE_NAME,
+            email + ":" + nickname + ":" + admins + ":" + sha1Hex(email + nickname + admins + COOKIE_SECRET)));
+        break;
+      case "invalid":
+        request = BenchmarkRequests.request(Collections.emptyMap(), new Cookie(Logins.COOKIE_NAME,
+            email + ":" + nickname + ":" + admins + ":" + sha1Hex("invalid")));
+        break;
+      case "force-admin":
+        final Map<String, String> headers = ImmutableMap.of(
+            RuntimeEnvironmentRequest.HEADER_FAKE_IS_ADMIN, sha1Hex(APPLICATION_ID + "/" + COOKIE_SECRET));
+        request = BenchmarkRequests.request(headers);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown login type " + login);
+    }
+  }
+
+  private static String sha1Hex(final String value) throws NoSuchAlgorithmException {
+    final byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+    return BaseEncoding.base16().lowerCase().encode(digest);
+  }
+
+  @Benchmark
+  public Optional<LoginCookie> loginCookie() {
+    return Logins.cookie(request);
+  }
+
+  @Benchmark
+  public boolean forceAdmin() {
+    return Logins.isForceAdmin(request, RuntimeEnvironmentRequest.HEADER_FAKE_IS_ADMIN);
+  }
+
+  @Benchmark
+  public RuntimeEnvironmentRequest environmentRequest() {
+    return RuntimeEnvironmentRequest.forRequest(request);
+  }
+
+  @Benchmark
+  public RuntimeEnvironment environment() {
+    return new RuntimeEnvironment(APPLICATION_ID, "default", "1",
+        RuntimeEnvironmentRequest.forRequest(request), 0, 8080, 60_000L);
+  }
+
+  @Benchmark
+  public RuntimeEnvironment admission() {
+    final RuntimeEnvironment env = RequestEnvironments.begin(APPLICATION_ID, "default", "1",
+        request, 0, 8080, 8081, ApiCallTracker.DEFAULT_MAX_CONCURRENT_CALLS);
+    try {
+      RequestEnvironments.end("/", env, ApiCallTracker.DEFAULT_REQUEST_END_GRACE_MILLIS);
+    } finally {
+      ApiProxy.clearEnvironmentForCurrentThread();
+    }
+    return env;
+  }
+}
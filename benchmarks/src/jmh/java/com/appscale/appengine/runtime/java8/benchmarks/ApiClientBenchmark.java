@@ -0,0 +1,80 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import com.appscale.appengine.runtime.java8.server.AppScaleApiClient;
+import com.appscale.appengine.runtime.java8.testing.StandInApiServer;
+
+/**
+ * Transport throughput for AppScaleApiClient against a stand-in API server
+ * with no simulated latency, so results reflect client and HTTP overhead.
+ *
+ * Run with the gc profiler for allocation per call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ApiClientBenchmark {
+
+  @Param({"128", "16384", "262144"})
+  public int payloadSize;
+
+  private StandInApiServer server;
+  private AppScaleApiClient client;
+  private byte[] requestBytes;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    server = StandInApiServer.builder()
+        .responseSize(payloadSize)
+        .build();
+    client = new AppScaleApiClient(server.start());
+    requestBytes = new byte[payloadSize];
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    client.shutdown();
+    server.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public byte[] call1Thread() throws IOException {
+    return client.makeSyncCall("memcache", "Get", requestBytes);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public byte[] call4Threads() throws IOException {
+    return client.makeSyncCall("memcache", "Get", requestBytes);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public byte[] call16Threads() throws IOException {
+    return client.makeSyncCall("memcache", "Get", requestBytes);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public byte[] call64Threads() throws IOException {
+    return client.makeSyncCall("memcache", "Get", requestBytes);
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import com.appscale.appengine.runtime.java8.server.AppScaleApiProxyLocal;
+import com.appscale.appengine.runtime.java8.util.ApiCallTracker;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
+import com.google.appengine.tools.development.ApiUtils;
+import com.google.appengine.tools.development.LocalRpcService.Status;
+import com.google.apphosting.api.ApiBasePb.StringProto;
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ * Dispatch overhead of AppScaleApiProxyLocal for a trivial local service.
+ *
+ * Covers the call tracker, privileged wrapping, executor hand-off, environment
+ * handling, capability check and reflective dispatch. The direct benchmark
+ * is the request conversion and service call alone for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ApiProxyDispatchBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ProxyState {
+    AppScaleApiProxyLocal proxy;
+    EchoRpcService service;
+    byte[] requestBytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      proxy = new AppScaleApiProxyLocal(null, Collections.emptySet(), null);
+      service = (EchoRpcService) proxy.getService(EchoRpcService.PACKAGE);
+      requestBytes = new StringProto().setValue("benchmark request").toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      proxy.stop();
+    }
+  }
+
+  /**
+   * Per thread environment with an API call tracker as for requests.
+   */
+  @State(Scope.Thread)
+  public static class EnvironmentState {
+    Environment environment;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      environment = newEnvironment();
+    }
+  }
+
+  /**
+   * Environment shared by all threads, as for a request making concurrent calls.
+   */
+  @State(Scope.Benchmark)
+  public static class SharedEnvironmentState {
+    Environment environment;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      environment = newEnvironment();
+    }
+  }
+
+  private static Environment newEnvironment() {
+    final Environment environment = new BenchmarkEnvironment();
+    environment.getAttributes().put(
+        RuntimeEnvironment.ATTR_API_CALL_TRACKER.getName(), new ApiCallTracker(100));
+    return environment;
+  }
+
+  @Benchmark
+  public byte[] direct(final ProxyState state) {
+    final StringProto request = ApiUtils.convertBytesToPb(state.requestBytes, StringProto.class);
+    return ApiUtils.convertPbToBytes(state.service.echo(new Status(), request));
+  }
+
+  @Benchmark
+  public byte[] syncCall(final ProxyState state, final EnvironmentState env) {
+    return state.proxy.makeSyncCall(env.environment, EchoRpcService.PACKAGE, "Echo", state.requestBytes);
+  }
+
+  @Benchmark
+  public byte[] asyncCall(final ProxyState state, final EnvironmentState env)
+      throws ExecutionException, InterruptedException {
+    return state.proxy.makeAsyncCall(env.environment, EchoRpcService.PACKAGE, "Echo", state.requestBytes, null).get();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public byte[] syncCallContended(final ProxyState state, final EnvironmentState env) {
+    return state.proxy.makeSyncCall(env.environment, EchoRpcService.PACKAGE, "Echo", state.requestBytes);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public byte[] asyncCallContended(final ProxyState state, final EnvironmentState env)
+      throws ExecutionException, InterruptedException {
+    return state.proxy.makeAsyncCall(env.environment, EchoRpcService.PACKAGE, "Echo", state.requestBytes, null).get();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public byte[] asyncCallSharedEnvironment(final ProxyState state, final SharedEnvironmentState env)
+      throws ExecutionException, InterruptedException {
+    return state.proxy.makeAsyncCall(env.environment, EchoRpcService.PACKAGE, "Echo", state.requestBytes, null).get();
+  }
+}
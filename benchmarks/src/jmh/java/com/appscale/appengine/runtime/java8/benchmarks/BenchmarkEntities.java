@@ -0,0 +1,46 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import com.google.storage.onestore.v3.OnestoreEntity.EntityProto;
+import com.google.storage.onestore.v3.OnestoreEntity.PropertyValue;
+
+/**
+ * Entity payloads with a realistic mix of property types.
+ */
+final class BenchmarkEntities {
+  private static final String APP_ID = "benchmark";
+
+  private BenchmarkEntities() {
+  }
+
+  static EntityProto entity(final String kind, final long id, final int propertyCount) {
+    final EntityProto entity = new EntityProto();
+    entity.getMutableKey().setApp(APP_ID).getMutablePath().addElement().setType(kind).setId(id);
+    entity.getMutableEntityGroup().addElement().setType(kind).setId(id);
+    for (int p = 0; p < propertyCount; p++) {
+      final PropertyValue value = entity.addProperty()
+          .setName("property" + p)
+          .setMultiple(false)
+          .getMutableValue();
+      switch (p % 4) {
+        case 0:
+          value.setStringValue("value-" + id + "-" + p + "-abcdefghijklmnopqrstuvwxyz");
+          break;
+        case 1:
+          value.setInt64Value(id * 1000 + p);
+          break;
+        case 2:
+          value.setDoubleValue(id / (p + 1.0));
+          break;
+        default:
+          value.setBooleanValue((id + p) % 2 == 0);
+          break;
+      }
+    }
+    return entity;
+  }
+}
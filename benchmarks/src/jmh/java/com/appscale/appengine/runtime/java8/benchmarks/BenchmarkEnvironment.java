@@ -0,0 +1,58 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ * Minimal environment for API calls made outside of a request.
+ */
+public class BenchmarkEnvironment implements Environment {
+  private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+  public String getAppId() {
+    return "benchmark";
+  }
+
+  public String getModuleId() {
+    return "default";
+  }
+
+  public String getVersionId() {
+    return "1";
+  }
+
+  public String getEmail() {
+    return null;
+  }
+
+  public boolean isLoggedIn() {
+    return false;
+  }
+
+  public boolean isAdmin() {
+    return false;
+  }
+
+  public String getAuthDomain() {
+    return "gmail.com";
+  }
+
+  @Deprecated
+  public String getRequestNamespace() {
+    return "";
+  }
+
+  public Map<String, Object> getAttributes() {
+    return attributes;
+  }
+
+  public long getRemainingMillis() {
+    return Long.MAX_VALUE;
+  }
+}
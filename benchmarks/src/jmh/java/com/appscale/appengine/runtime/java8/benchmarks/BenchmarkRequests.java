@@ -0,0 +1,414 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.io.BufferedReader;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpUpgradeHandler;
+import javax.servlet.http.Part;
+
+/**
+ * Minimal servlet requests for benchmarks.
+ *
+ * Only headers, cookies, attributes and a few request properties are
+ * supported, other methods return default values. Requests are plain
+ * classes so that benchmarks do not include reflective dispatch.
+ */
+public final class BenchmarkRequests {
+
+  private BenchmarkRequests() {
+  }
+
+  public static HttpServletRequest request() {
+    return request(Collections.emptyMap());
+  }
+
+  public static HttpServletRequest request(final Map<String, String> headers, final Cookie... cookies) {
+    return new BenchmarkRequest(headers, cookies.length == 0 ? null : cookies.clone());
+  }
+
+  private static final class BenchmarkRequest implements HttpServletRequest {
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final Cookie[] cookies;
+
+    private BenchmarkRequest(final Map<String, String> headers, final Cookie[] cookies) {
+      this.headers.putAll(headers);
+      this.cookies = cookies;
+    }
+
+    @Override
+    public String getAuthType() {
+      return null;
+    }
+
+    @Override
+    public Cookie[] getCookies() {
+      return cookies;
+    }
+
+    @Override
+    public long getDateHeader(final String name) {
+      return -1L;
+    }
+
+    @Override
+    public String getHeader(final String name) {
+      return headers.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(final String name) {
+      final String value = headers.get(name);
+      return value == null ?
+          Collections.emptyEnumeration() :
+          Collections.enumeration(Collections.singletonList(value));
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+      return Collections.enumeration(headers.keySet());
+    }
+
+    @Override
+    public int getIntHeader(final String name) {
+      final String value = headers.get(name);
+      return value == null ? -1 : Integer.parseInt(value);
+    }
+
+    @Override
+    public String getMethod() {
+      return "GET";
+    }
+
+    @Override
+    public String getPathInfo() {
+      return null;
+    }
+
+    @Override
+    public String getPathTranslated() {
+      return null;
+    }
+
+    @Override
+    public String getContextPath() {
+      return "";
+    }
+
+    @Override
+    public String getQueryString() {
+      return null;
+    }
+
+    @Override
+    public String getRemoteUser() {
+      return null;
+    }
+
+    @Override
+    public boolean isUserInRole(final String role) {
+      return false;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+      return null;
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+      return null;
+    }
+
+    @Override
+    public String getRequestURI() {
+      return "/";
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+      return new StringBuffer("http://localhost/");
+    }
+
+    @Override
+    public String getServletPath() {
+      return "";
+    }
+
+    @Override
+    public HttpSession getSession(final boolean create) {
+      return null;
+    }
+
+    @Override
+    public HttpSession getSession() {
+      return null;
+    }
+
+    @Override
+    public String changeSessionId() {
+      throw new IllegalStateException("No session");
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+      return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+      return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+      return false;
+    }
+
+    @Override
+    @Deprecated
+    public boolean isRequestedSessionIdFromUrl() {
+      return false;
+    }
+
+    @Override
+    public boolean authenticate(final HttpServletResponse response) {
+      return false;
+    }
+
+    @Override
+    public void login(final String username, final String password) {
+    }
+
+    @Override
+    public void logout() {
+    }
+
+    @Override
+    public Collection<Part> getParts() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Part getPart(final String name) {
+      return null;
+    }
+
+    @Override
+    public <T extends HttpUpgradeHandler> T upgrade(final Class<T> handlerClass) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object getAttribute(final String name) {
+      return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+      return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+      return null;
+    }
+
+    @Override
+    public void setCharacterEncoding(final String env) {
+    }
+
+    @Override
+    public int getContentLength() {
+      return -1;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+      return -1L;
+    }
+
+    @Override
+    public String getContentType() {
+      return null;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      return null;
+    }
+
+    @Override
+    public String getParameter(final String name) {
+      return null;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+      return Collections.emptyEnumeration();
+    }
+
+    @Override
+    public String[] getParameterValues(final String name) {
+      return null;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public String getProtocol() {
+      return "HTTP/1.1";
+    }
+
+    @Override
+    public String getScheme() {
+      return "http";
+    }
+
+    @Override
+    public String getServerName() {
+      return "localhost";
+    }
+
+    @Override
+    public int getServerPort() {
+      return 80;
+    }
+
+    @Override
+    public BufferedReader getReader() {
+      return null;
+    }
+
+    @Override
+    public String getRemoteAddr() {
+      return "127.0.0.1";
+    }
+
+    @Override
+    public String getRemoteHost() {
+      return "127.0.0.1";
+    }
+
+    @Override
+    public void setAttribute(final String name, final Object value) {
+      attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(final String name) {
+      attributes.remove(name);
+    }
+
+    @Override
+    public Locale getLocale() {
+      return Locale.getDefault();
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+      return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+    }
+
+    @Override
+    public boolean isSecure() {
+      return false;
+    }
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(final String path) {
+      return null;
+    }
+
+    @Override
+    @Deprecated
+    public String getRealPath(final String path) {
+      return null;
+    }
+
+    @Override
+    public int getRemotePort() {
+      return 0;
+    }
+
+    @Override
+    public String getLocalName() {
+      return "localhost";
+    }
+
+    @Override
+    public String getLocalAddr() {
+      return "127.0.0.1";
+    }
+
+    @Override
+    public int getLocalPort() {
+      return 80;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+      return null;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+      throw new IllegalStateException("Async not supported");
+    }
+
+    @Override
+    public AsyncContext startAsync(final ServletRequest request, final ServletResponse response) {
+      throw new IllegalStateException("Async not supported");
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+      return false;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+      return false;
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+      throw new IllegalStateException("Async not started");
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+      return DispatcherType.REQUEST;
+    }
+
+    @Override
+    public String toString() {
+      return "BenchmarkRequest" + headers;
+    }
+  }
+}
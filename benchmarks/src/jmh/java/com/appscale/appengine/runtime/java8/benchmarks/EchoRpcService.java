@@ -0,0 +1,39 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.util.Map;
+import com.google.appengine.tools.development.AbstractLocalRpcService;
+import com.google.appengine.tools.development.LocalServiceContext;
+import com.google.apphosting.api.ApiBasePb.StringProto;
+
+/**
+ * Trivial local service so benchmarks measure API dispatch overhead.
+ */
+public class EchoRpcService extends AbstractLocalRpcService {
+  public static final String PACKAGE = "benchmark_echo";
+
+  @Override
+  public String getPackage() {
+    return PACKAGE;
+  }
+
+  @Override
+  public void init(final LocalServiceContext context, final Map<String, String> properties) {
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+  }
+
+  public StringProto echo(final Status status, final StringProto request) {
+    return new StringProto().setValue(request.getValue());
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import com.google.apphosting.datastore.DatastoreV3Pb.GetResponse;
+import com.google.apphosting.datastore.DatastoreV3Pb.QueryResult;
+import com.google.storage.onestore.v3.OnestoreEntity.EntityProto;
+
+/**
+ * Compares full and lazy decoding of datastore results when an application
+ * reads some or all of the returned entities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class LazyDatastoreResultBenchmark {
+
+  @Param({"20", "200"})
+  public int entityCount;
+
+  @Param({"10", "50"})
+  public int propertyCount;
+
+  @Param({"1", "10", "-1"})
+  public int accessCount;
+
+  private byte[] queryResultBytes;
+  private byte[] getResponseBytes;
+  private int accessed;
+
+  @Setup
+  public void setup() {
+    final QueryResult queryResult = new QueryResult();
+    queryResult.setMoreResults(true);
+    final GetResponse getResponse = new GetResponse();
+    for (int i = 1; i <= entityCount; i++) {
+      final EntityProto entity = BenchmarkEntities.entity("Benchmark", i, propertyCount);
+      queryResult.addResult(entity);
+      getResponse.addEntity().setEntity(entity);
+    }
+    queryResultBytes = queryResult.toByteArray();
+    getResponseBytes = getResponse.toByteArray();
+    accessed = accessCount < 0 ? entityCount : Math.min(accessCount, entityCount);
+  }
+
+  @Benchmark
+  public void queryResultFull(final Blackhole blackhole) {
+    final QueryResult queryResult = new QueryResult();
+    queryResult.mergeFrom(queryResultBytes);
+    for (int i = 0; i < accessed; i++) {
+      blackhole.consume(queryResult.getResult(i).getProperty(0));
+    }
+  }
+
+  @Benchmark
+  public void queryResultLazy(final Blackhole blackhole) {
+    final LazyDatastoreResult result = LazyDatastoreResult.forQueryResult(queryResultBytes);
+    for (int i = 0; i < accessed; i++) {
+      blackhole.consume(result.getEntity(i).getProperty(0));
+    }
+  }
+
+  @Benchmark
+  public void getResponseFull(final Blackhole blackhole) {
+    final GetResponse getResponse = new GetResponse();
+    getResponse.mergeFrom(getResponseBytes);
+    for (int i = 0; i < accessed; i++) {
+      blackhole.consume(getResponse.getEntity(i).getEntity().getProperty(0));
+    }
+  }
+
+  @Benchmark
+  public void getResponseLazy(final Blackhole blackhole) {
+    final LazyDatastoreResult result = LazyDatastoreResult.forGetResponse(getResponseBytes);
+    for (int i = 0; i < accessed; i++) {
+      blackhole.consume(result.getEntity(i).getProperty(0));
+    }
+  }
+}
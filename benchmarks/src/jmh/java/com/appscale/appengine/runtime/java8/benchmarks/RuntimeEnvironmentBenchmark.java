@@ -0,0 +1,53 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment.RuntimeEnvironmentRequest;
+
+/**
+ * Per request environment construction, run with the gc profiler to see
+ * bytes allocated per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class RuntimeEnvironmentBenchmark {
+
+  private HttpServletRequest request;
+  private RuntimeEnvironment environment;
+
+  @Setup
+  public void setup() {
+    request = BenchmarkRequests.request();
+    environment = create();
+  }
+
+  @Benchmark
+  public RuntimeEnvironment create() {
+    return new RuntimeEnvironment("benchmark", "default", "1",
+        RuntimeEnvironmentRequest.forRequest(request), 0, 8080, 60_000L);
+  }
+
+  @Benchmark
+  public RuntimeEnvironment unauthChild() {
+    return RuntimeEnvironment.unauthChild(environment);
+  }
+
+  @Benchmark
+  public Object getAttribute() {
+    return environment.getAttributes().get(RuntimeEnvironment.ATTR_API_CALL_TRACKER.getName());
+  }
+}
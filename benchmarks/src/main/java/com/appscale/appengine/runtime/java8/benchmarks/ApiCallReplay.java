@@ -0,0 +1,217 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import com.appscale.appengine.runtime.java8.server.ApiCallRecord;
+import com.appscale.appengine.runtime.java8.server.AppScaleApiClient;
+import com.appscale.appengine.runtime.java8.testing.LatencyDistribution;
+import com.appscale.appengine.runtime.java8.testing.StandInApiServer;
+
+/**
+ * Replays captured API calls and reports throughput and latency.
+ *
+ * Calls are issued on the recorded schedule (optionally scaled) and latency
+ * is measured from the scheduled time, so delays caused by a saturated
+ * target are included rather than hidden. Unthrottled replay has no
+ * schedule, so latency is measured from the start of each call.
+ *
+ * @see com.appscale.appengine.runtime.java8.server.ApiCallCapture
+ */
+public class ApiCallReplay {
+
+  private final ApiTarget target;
+  private final double rate;
+  private final int threads;
+
+  public ApiCallReplay(final ApiTarget target, final double rate, final int threads) {
+    this.target = target;
+    this.rate = rate;
+    this.threads = threads;
+  }
+
+  public static void main(final String[] args) throws Exception {
+    int port = 8081;
+    double rate = 1.0;
+    int threads = 32;
+    LatencyDistribution standInLatency = null;
+    final List<File> files = new ArrayList<>();
+    for (final String arg : args) {
+      if (arg.startsWith("--port=")) {
+        port = Integer.parseInt(arg.substring(7));
+      } else if (arg.startsWith("--rate=")) {
+        rate = Double.parseDouble(arg.substring(7));
+      } else if (arg.startsWith("--threads=")) {
+        threads = Integer.parseInt(arg.substring(10));
+      } else if (arg.startsWith("--standin=")) {
+        standInLatency = LatencyDistribution.parse(arg.substring(10));
+      } else if (arg.startsWith("--")) {
+        usage();
+        return;
+      } else {
+        final File file = new File(arg);
+        final File[] captureFiles = file.listFiles((dir, name) -> name.endsWith(".bin"));
+        if (captureFiles != null) {
+          files.addAll(Arrays.asList(captureFiles));
+        } else {
+          files.add(file);
+        }
+      }
+    }
+    if (files.isEmpty()) {
+      usage();
+      return;
+    }
+
+    final List<ApiCallRecord> records = new ArrayList<>();
+    for (final File file : files) {
+      records.addAll(read(file));
+    }
+    records.sort((r1, r2) -> Long.compare(r1.getTimestampMillis(), r2.getTimestampMillis()));
+
+    final StandInApiServer standIn = standInLatency == null ?
+        null :
+        StandInApiServer.builder().latency(standInLatency).echo(true).threads(threads).build();
+    if (standIn != null) {
+      port = standIn.start();
+    }
+    final AppScaleApiClient client = new AppScaleApiClient(port);
+    try {
+      new ApiCallReplay(client::makeSyncCall, rate, threads).replay(records).print();
+    } finally {
+      client.shutdown();
+      if (standIn != null) {
+        standIn.close();
+      }
+    }
+  }
+
+  private static void usage() {
+    System.err.println("Usage: ApiCallReplay [--port=API_PORT | --standin=DIST] [--rate=SCALE] [--threads=N] CAPTURE_FILE_OR_DIR...");
+    System.err.println();
+    System.err.println(" --port=API_PORT  Port for the API server (default 8081)");
+    System.err.println(" --standin=DIST   Replay against a stand-in API server with the given latency, e.g. fixed:5");
+    System.err.println(" --rate=SCALE     Replay rate relative to the recorded rate, 0 for unthrottled (default 1)");
+    System.err.println(" --threads=N      Maximum concurrent calls (default 32)");
+  }
+
+  public static List<ApiCallRecord> read(final File file) throws IOException {
+    final List<ApiCallRecord> records = new ArrayList<>();
+    try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      ApiCallRecord.readHeader(in);
+      ApiCallRecord record;
+      while ((record = ApiCallRecord.read(in)) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  public ReplayResult replay(final List<ApiCallRecord> records) throws InterruptedException {
+    final ReplayResult result = new ReplayResult();
+    if (records.isEmpty()) {
+      return result;
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final long firstTimestamp = records.get(0).getTimestampMillis();
+    final long startNanos = System.nanoTime();
+    try {
+      for (final ApiCallRecord record : records) {
+        if (rate <= 0.0) {
+          // time queued in the executor is not latency of the target
+          executor.execute(() -> call(record, System.nanoTime(), result));
+          continue;
+        }
+        final long scheduledNanos =
+            startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(record.getTimestampMillis() - firstTimestamp) / rate);
+        final long delay = scheduledNanos - System.nanoTime();
+        if (delay > 0) {
+          LockSupport.parkNanos(delay);
+        }
+        executor.execute(() -> call(record, scheduledNanos, result));
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.HOURS);
+    }
+    result.elapsedNanos = System.nanoTime() - startNanos;
+    return result;
+  }
+
+  private void call(final ApiCallRecord record, final long scheduledNanos, final ReplayResult result) {
+    final String method = record.getPackageName() + "." + record.getMethodName();
+    result.recorded(method).record(TimeUnit.MICROSECONDS.toNanos(record.getLatencyMicros()));
+    final LatencyRecorder replayed = result.replayed(method);
+    try {
+      target.call(record.getPackageName(), record.getMethodName(), record.getRequestBytes());
+      final long latency = System.nanoTime() - scheduledNanos;
+      replayed.record(latency);
+      result.total.record(latency);
+    } catch (final Exception e) {
+      replayed.recordError();
+      result.total.recordError();
+    }
+  }
+
+  /**
+   * Target for replayed calls.
+   */
+  public interface ApiTarget {
+    byte[] call(String packageName, String methodName, byte[] requestBytes) throws Exception;
+  }
+
+  public static final class ReplayResult {
+    private final LatencyRecorder total = new LatencyRecorder();
+    private final Map<String, LatencyRecorder> replayed = new TreeMap<>();
+    private final Map<String, LatencyRecorder> recorded = new TreeMap<>();
+    private long elapsedNanos;
+
+    private synchronized LatencyRecorder replayed(final String method) {
+      return replayed.computeIfAbsent(method, key -> new LatencyRecorder());
+    }
+
+    private synchronized LatencyRecorder recorded(final String method) {
+      return recorded.computeIfAbsent(method, key -> new LatencyRecorder());
+    }
+
+    public LatencyRecorder.Snapshot getTotal() {
+      return total.snapshot();
+    }
+
+    /**
+     * Completed calls per second.
+     */
+    public double getThroughput() {
+      final LatencyRecorder.Snapshot snapshot = total.snapshot();
+      return elapsedNanos == 0 ?
+          0.0 :
+          (snapshot.getCount() + snapshot.getErrors()) / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    public synchronized void print() {
+      System.out.println(String.format("elapsed=%.3fs throughput=%.1f calls/s",
+          elapsedNanos / 1_000_000_000.0, getThroughput()));
+      System.out.println("total " + total.snapshot().summary());
+      for (final Map.Entry<String, LatencyRecorder> entry : replayed.entrySet()) {
+        System.out.println(entry.getKey() + " replayed " + entry.getValue().snapshot().summary());
+        System.out.println(entry.getKey() + " recorded " + recorded.get(entry.getKey()).snapshot().summary());
+      }
+    }
+  }
+}
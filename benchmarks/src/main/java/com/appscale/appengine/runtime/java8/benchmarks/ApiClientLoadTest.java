@@ -0,0 +1,161 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import com.appscale.appengine.runtime.java8.server.AppScaleApiClient;
+import com.appscale.appengine.runtime.java8.testing.LatencyDistribution;
+import com.appscale.appengine.runtime.java8.testing.StandInApiServer;
+
+/**
+ * Closed loop load test for AppScaleApiClient against a stand-in API server.
+ *
+ * Each concurrency level runs for a fixed duration and reports calls/sec,
+ * latency percentiles and bytes allocated per call by the calling threads.
+ */
+public class ApiClientLoadTest {
+
+  public static void main(final String[] args) throws Exception {
+    int[] concurrency = {1, 4, 16, 64};
+    long durationSecs = 10;
+    long warmupSecs = 5;
+    LatencyDistribution latency = LatencyDistribution.none();
+    int requestSize = 128;
+    int responseSize = 128;
+    double errorRate = 0.0;
+    for (final String arg : args) {
+      if (arg.startsWith("--concurrency=")) {
+        final String[] levels = arg.substring(14).split(",");
+        concurrency = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+          concurrency[i] = Integer.parseInt(levels[i]);
+        }
+      } else if (arg.startsWith("--duration=")) {
+        durationSecs = Long.parseLong(arg.substring(11));
+      } else if (arg.startsWith("--warmup=")) {
+        warmupSecs = Long.parseLong(arg.substring(9));
+      } else if (arg.startsWith("--latency=")) {
+        latency = LatencyDistribution.parse(arg.substring(10));
+      } else if (arg.startsWith("--request-size=")) {
+        requestSize = Integer.parseInt(arg.substring(15));
+      } else if (arg.startsWith("--response-size=")) {
+        responseSize = Integer.parseInt(arg.substring(16));
+      } else if (arg.startsWith("--error-rate=")) {
+        errorRate = Double.parseDouble(arg.substring(13));
+      } else {
+        usage();
+        return;
+      }
+    }
+
+    int maxConcurrency = 1;
+    for (final int level : concurrency) {
+      maxConcurrency = Math.max(maxConcurrency, level);
+    }
+    try (final StandInApiServer server = StandInApiServer.builder()
+        .latency(latency)
+        .responseSize(responseSize)
+        .applicationErrors(errorRate, 1)
+        .threads(Math.max(maxConcurrency, 8))
+        .build()) {
+      final AppScaleApiClient client = new AppScaleApiClient(server.start());
+      try {
+        final byte[] requestBytes = new byte[requestSize];
+        run(client, requestBytes, concurrency[0], TimeUnit.SECONDS.toNanos(warmupSecs));
+        for (final int level : concurrency) {
+          final Result result = run(client, requestBytes, level, TimeUnit.SECONDS.toNanos(durationSecs));
+          System.out.println(String.format("concurrency=%d throughput=%.1f calls/s alloc=%d bytes/call %s",
+              level, result.getThroughput(), result.getAllocatedPerCall(), result.latency.summary()));
+        }
+      } finally {
+        client.shutdown();
+      }
+    }
+  }
+
+  private static void usage() {
+    System.err.println("Usage: ApiClientLoadTest [OPTION]...");
+    System.err.println();
+    System.err.println(" --concurrency=N,N  Concurrent callers for each run (default 1,4,16,64)");
+    System.err.println(" --duration=SECS    Duration of each run (default 10)");
+    System.err.println(" --warmup=SECS      Warmup duration (default 5)");
+    System.err.println(" --latency=DIST     Simulated latency, e.g. fixed:5, lognormal:5:0.8 (default none)");
+    System.err.println(" --request-size=N   Request payload bytes (default 128)");
+    System.err.println(" --response-size=N  Response payload bytes (default 128)");
+    System.err.println(" --error-rate=RATE  Fraction of calls failing with an application error (default 0)");
+  }
+
+  private static Result run(
+      final AppScaleApiClient client,
+      final byte[] requestBytes,
+      final int concurrency,
+      final long durationNanos
+  ) throws InterruptedException {
+    final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final LatencyRecorder recorder = new LatencyRecorder();
+    final LongAdder allocated = new LongAdder();
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> threads = new ArrayList<>();
+    final long[] deadline = new long[1];
+    for (int i = 0; i < concurrency; i++) {
+      final Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (final InterruptedException e) {
+          return;
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long now;
+        while ((now = System.nanoTime()) < deadline[0]) {
+          try {
+            client.makeSyncCall("memcache", "Get", requestBytes);
+            recorder.record(System.nanoTime() - now);
+          } catch (final Exception e) {
+            recorder.recordError();
+          }
+        }
+        allocated.add(threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore);
+      }, "load-" + i);
+      thread.start();
+      threads.add(thread);
+    }
+    final long startNanos = System.nanoTime();
+    deadline[0] = startNanos + durationNanos;
+    start.countDown();
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    return new Result(recorder.snapshot(), allocated.sum(), System.nanoTime() - startNanos);
+  }
+
+  private static final class Result {
+    private final LatencyRecorder.Snapshot latency;
+    private final long allocatedBytes;
+    private final long elapsedNanos;
+
+    private Result(final LatencyRecorder.Snapshot latency, final long allocatedBytes, final long elapsedNanos) {
+      this.latency = latency;
+      this.allocatedBytes = allocatedBytes;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    private double getThroughput() {
+      return (latency.getCount() + latency.getErrors()) / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    private long getAllocatedPerCall() {
+      final long calls = latency.getCount() + latency.getErrors();
+      return calls == 0 ? 0L : allocatedBytes / calls;
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.eclipse.jetty.unixsocket.client.HttpClientTransportOverUnixSockets;
+import com.appscale.appengine.runtime.java8.jetty.ServerSettings;
+import com.appscale.appengine.runtime.java8.testing.LatencyDistribution;
+
+/**
+ * Closed loop load test comparing HTTP/1.1, h2c and HTTP/1.1 over a Unix
+ * domain socket.
+ *
+ * The server connectors are built from ServerSettings as for the app server,
+ * with a handler that responds after a simulated latency. Each protocol and
+ * concurrency level reports requests/sec, peak server side connections
+ * and latency percentiles.
+ */
+public class HttpProtocolLoadTest {
+
+  public static void main(final String[] args) throws Exception {
+    int[] concurrency = {1, 16, 64, 256};
+    long durationSecs = 10;
+    long warmupSecs = 5;
+    LatencyDistribution latency = LatencyDistribution.fixed(5, TimeUnit.MILLISECONDS);
+    int responseSize = 1024;
+    String[] protocols = {"http1", "h2c", "unix"};
+    String unixSocket = new File(System.getProperty("java.io.tmpdir"), "appscale-loadtest.sock").getPath();
+    final Map<String, String> properties = new HashMap<>();
+    properties.put(ServerSettings.PROPERTY_H2C, "true");
+    for (final String arg : args) {
+      if (arg.startsWith("--concurrency=")) {
+        final String[] levels = arg.substring(14).split(",");
+        concurrency = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+          concurrency[i] = Integer.parseInt(levels[i]);
+        }
+      } else if (arg.startsWith("--duration=")) {
+        durationSecs = Long.parseLong(arg.substring(11));
+      } else if (arg.startsWith("--warmup=")) {
+        warmupSecs = Long.parseLong(arg.substring(9));
+      } else if (arg.startsWith("--latency=")) {
+        latency = LatencyDistribution.parse(arg.substring(10));
+      } else if (arg.startsWith("--response-size=")) {
+        responseSize = Integer.parseInt(arg.substring(16));
+      } else if (arg.startsWith("--protocols=")) {
+        protocols = arg.substring(12).split(",");
+      } else if (arg.startsWith("--unix-socket=")) {
+        unixSocket = arg.substring(14);
+      } else if (arg.startsWith("--max-streams=")) {
+        properties.put(ServerSettings.PROPERTY_H2C_MAX_CONCURRENT_STREAMS, arg.substring(14));
+      } else if (arg.startsWith("--stream-window=")) {
+        properties.put(ServerSettings.PROPERTY_H2C_STREAM_WINDOW, arg.substring(16));
+      } else if (arg.startsWith("--session-window=")) {
+        properties.put(ServerSettings.PROPERTY_H2C_SESSION_WINDOW, arg.substring(17));
+      } else {
+        usage();
+        return;
+      }
+    }
+
+    int maxConcurrency = 1;
+    for (final int level : concurrency) {
+      maxConcurrency = Math.max(maxConcurrency, level);
+    }
+    properties.put(ServerSettings.PROPERTY_MAX_THREADS, String.valueOf(Math.max(200, maxConcurrency + 32)));
+    if (Arrays.asList(protocols).contains("unix")) {
+      properties.put(ServerSettings.PROPERTY_UNIX_SOCKET, unixSocket);
+    }
+    final ServerSettings serverSettings = ServerSettings.fromProperties(properties);
+    final Server server = new Server(serverSettings.buildThreadPool(null));
+    final HttpConfiguration httpConfiguration = new HttpConfiguration();
+    serverSettings.configure(httpConfiguration);
+    final ServerConnector connector = serverSettings.buildConnector(
+        server, serverSettings.buildConnectionFactories(httpConfiguration));
+    final ConnectionStatistics connectionStatistics = new ConnectionStatistics();
+    connector.addBean(connectionStatistics);
+    connector.setHost("127.0.0.1");
+    server.addConnector(connector);
+    final UnixSocketConnector unixSocketConnector = serverSettings.buildUnixSocketConnector(
+        server, serverSettings.buildConnectionFactories(httpConfiguration));
+    if (unixSocketConnector != null) {
+      unixSocketConnector.addBean(connectionStatistics);
+      server.addConnector(unixSocketConnector);
+    }
+    server.setHandler(new LatencyHandler(latency, responseSize));
+    server.start();
+    try {
+      final String uri = "http://127.0.0.1:" + connector.getLocalPort() + "/";
+      for (final String protocol : protocols) {
+        final HttpClient client = newClient(protocol, maxConcurrency, unixSocket);
+        client.start();
+        try {
+          run(client, uri, concurrency[0], TimeUnit.SECONDS.toNanos(warmupSecs));
+          for (final int level : concurrency) {
+            connectionStatistics.reset();
+            final Result result = run(client, uri, level, TimeUnit.SECONDS.toNanos(durationSecs));
+            System.out.println(String.format("protocol=%s concurrency=%d throughput=%.1f req/s connections=%d %s",
+                protocol, level, result.getThroughput(), connectionStatistics.getConnectionsMax(),
+                result.latency.summary()));
+          }
+        } finally {
+          client.stop();
+        }
+      }
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static void usage() {
+    System.err.println("Usage: HttpProtocolLoadTest [OPTION]...");
+    System.err.println();
+    System.err.println(" --concurrency=N,N     Concurrent clients for each run (default 1,16,64,256)");
+    System.err.println(" --duration=SECS       Duration of each run (default 10)");
+    System.err.println(" --warmup=SECS         Warmup duration (default 5)");
+    System.err.println(" --latency=DIST        Simulated handler latency, e.g. fixed:5 (default fixed:5)");
+    System.err.println(" --response-size=N     Response body bytes (default 1024)");
+    System.err.println(" --protocols=P,P       Protocols to compare, http1, h2c, unix (default all)");
+    System.err.println(" --unix-socket=PATH    Socket path for the unix protocol (default in java.io.tmpdir)");
+    System.err.println(" --max-streams=N       h2c maximum concurrent streams per connection");
+    System.err.println(" --stream-window=N     h2c initial stream flow control window");
+    System.err.println(" --session-window=N    h2c initial session flow control window");
+  }
+
+  private static HttpClient newClient(final String protocol, final int maxConcurrency, final String unixSocket) {
+    final HttpClientTransport transport;
+    switch (protocol) {
+      case "http1":
+        transport = new HttpClientTransportOverHTTP(1);
+        break;
+      case "h2c":
+        transport = new HttpClientTransportOverHTTP2(new HTTP2Client());
+        break;
+      case "unix":
+        transport = new HttpClientTransportOverUnixSockets(unixSocket);
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid protocol: " + protocol);
+    }
+    final HttpClient client = new HttpClient(transport, null);
+    client.setMaxConnectionsPerDestination(maxConcurrency);
+    client.setMaxRequestsQueuedPerDestination(maxConcurrency * 2);
+    return client;
+  }
+
+  private static Result run(
+      final HttpClient client,
+      final String uri,
+      final int concurrency,
+      final long durationNanos
+  ) throws InterruptedException {
+    final LatencyRecorder recorder = new LatencyRecorder();
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> threads = new ArrayList<>();
+    final long[] deadline = new long[1];
+    for (int i = 0; i < concurrency; i++) {
+      final Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (final InterruptedException e) {
+          return;
+        }
+        long now;
+        while ((now = System.nanoTime()) < deadline[0]) {
+          try {
+            final ContentResponse response = client.GET(uri);
+            if (response.getStatus() == HttpServletResponse.SC_OK) {
+              recorder.record(System.nanoTime() - now);
+            } else {
+              recorder.recordError();
+            }
+          } catch (final Exception e) {
+            recorder.recordError();
+          }
+        }
+      }, "load-" + i);
+      thread.start();
+      threads.add(thread);
+    }
+    final long startNanos = System.nanoTime();
+    deadline[0] = startNanos + durationNanos;
+    start.countDown();
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    return new Result(recorder.snapshot(), System.nanoTime() - startNanos);
+  }
+
+  private static final class Result {
+    private final LatencyRecorder.Snapshot latency;
+    private final long elapsedNanos;
+
+    private Result(final LatencyRecorder.Snapshot latency, final long elapsedNanos) {
+      this.latency = latency;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    private double getThroughput() {
+      return (latency.getCount() + latency.getErrors()) / (elapsedNanos / 1_000_000_000.0);
+    }
+  }
+
+  private static final class LatencyHandler extends AbstractHandler {
+    private final LatencyDistribution latency;
+    private final byte[] body;
+
+    private LatencyHandler(final LatencyDistribution latency, final int responseSize) {
+      this.latency = latency;
+      this.body = new byte[responseSize];
+    }
+
+    @Override
+    public void handle(
+        final String target,
+        final Request baseRequest,
+        final HttpServletRequest request,
+        final HttpServletResponse response
+    ) throws IOException {
+      final Random random = ThreadLocalRandom.current();
+      final long delayNanos = latency.nextNanos(random);
+      if (delayNanos > 0L) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(delayNanos);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      baseRequest.setHandled(true);
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setContentType("application/octet-stream");
+      response.setContentLength(body.length);
+      response.getOutputStream().write(body);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Records latencies for percentile reporting.
+ *
+ * All samples are retained so percentiles are exact, this is intended for
+ * benchmark runs and not for use in the runtime.
+ */
+public final class LatencyRecorder {
+  private long[] samples = new long[1024];
+  private int count;
+  private long errors;
+
+  public synchronized void record(final long nanos) {
+    if (count == samples.length) {
+      samples = Arrays.copyOf(samples, count * 2);
+    }
+    samples[count++] = nanos;
+  }
+
+  public synchronized void recordError() {
+    errors++;
+  }
+
+  public synchronized Snapshot snapshot() {
+    final long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    return new Snapshot(sorted, errors);
+  }
+
+  public static final class Snapshot {
+    private final long[] sorted;
+    private final long errors;
+
+    private Snapshot(final long[] sorted, final long errors) {
+      this.sorted = sorted;
+      this.errors = errors;
+    }
+
+    public int getCount() {
+      return sorted.length;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    /**
+     * Percentile latency in nanoseconds, e.g. 0.99 for the 99th percentile.
+     */
+    public long percentile(final double percentile) {
+      if (sorted.length == 0) {
+        return 0L;
+      }
+      final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public long max() {
+      return sorted.length == 0 ? 0L : sorted[sorted.length - 1];
+    }
+
+    public double meanMillis() {
+      if (sorted.length == 0) {
+        return 0.0;
+      }
+      long total = 0;
+      for (final long sample : sorted) {
+        total += sample;
+      }
+      return total / 1_000_000.0 / sorted.length;
+    }
+
+    /**
+     * Summary as count, errors, mean and percentiles in milliseconds.
+     */
+    public String summary() {
+      return String.format("count=%d errors=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+          getCount(), getErrors(), meanMillis(),
+          percentile(0.5) / 1_000_000.0,
+          percentile(0.9) / 1_000_000.0,
+          percentile(0.99) / 1_000_000.0,
+          percentile(0.999) / 1_000_000.0,
+          max() / 1_000_000.0);
+    }
+  }
+}
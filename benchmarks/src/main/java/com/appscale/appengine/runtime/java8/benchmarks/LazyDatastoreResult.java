@@ -0,0 +1,180 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import com.appscale.appengine.runtime.java8.server.ProtoWire;
+import com.google.storage.onestore.v3.OnestoreEntity.EntityProto;
+
+/**
+ * Lazily decoded view of the entities in an encoded datastore result.
+ *
+ * Construction only indexes the offsets of each entity in the encoded
+ * QueryResult or GetResponse, an entity is decoded on first access and the
+ * decoded value is retained. Instances are not thread safe.
+ *
+ * This is benchmark support for comparing lazy and full decoding, results
+ * returned to applications are decoded by the SDK so the runtime does not
+ * use it.
+ */
+public final class LazyDatastoreResult {
+  // QueryResult: repeated EntityProto result = 2
+  private static final int QUERY_RESULT_FIELD = 2;
+  // GetResponse: repeated group Entity = 1 { optional EntityProto entity = 2 }
+  private static final int GET_ENTITY_GROUP = 1;
+  private static final int GET_ENTITY_FIELD = 2;
+
+  private final byte[] bytes;
+  private final int[] offsets;
+  private final int[] lengths;
+  private final EntityProto[] entities;
+
+  private LazyDatastoreResult(final byte[] bytes, final int[] offsets, final int[] lengths, final int size) {
+    this.bytes = bytes;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.entities = new EntityProto[size];
+  }
+
+  /**
+   * Index the results of an encoded datastore_v3 QueryResult.
+   *
+   * @throws IllegalArgumentException If the bytes are not a valid encoding
+   */
+  public static LazyDatastoreResult forQueryResult(final byte[] bytes) {
+    final Index index = new Index();
+    final ProtoWire wire = new ProtoWire(bytes);
+    int tag;
+    while ((tag = wire.readTag()) != 0) {
+      if (ProtoWire.fieldNumber(tag) == QUERY_RESULT_FIELD &&
+          ProtoWire.wireType(tag) == ProtoWire.WIRETYPE_LENGTH_DELIMITED) {
+        final int length = wire.readLength();
+        index.add(wire.position(), length);
+        wire.skip(length);
+      } else {
+        wire.skipField(tag);
+      }
+    }
+    return index.build(bytes);
+  }
+
+  /**
+   * Index the entities of an encoded datastore_v3 GetResponse.
+   *
+   * Keys that were not found are indexed as absent entities so positions
+   * match the keys of the originating request.
+   *
+   * @throws IllegalArgumentException If the bytes are not a valid encoding
+   */
+  public static LazyDatastoreResult forGetResponse(final byte[] bytes) {
+    final Index index = new Index();
+    final ProtoWire wire = new ProtoWire(bytes);
+    int tag;
+    while ((tag = wire.readTag()) != 0) {
+      if (ProtoWire.fieldNumber(tag) == GET_ENTITY_GROUP &&
+          ProtoWire.wireType(tag) == ProtoWire.WIRETYPE_START_GROUP) {
+        int offset = -1;
+        int length = 0;
+        int groupTag;
+        while ((groupTag = wire.readTag()) != 0) {
+          if (ProtoWire.wireType(groupTag) == ProtoWire.WIRETYPE_END_GROUP) {
+            break;
+          } else if (ProtoWire.fieldNumber(groupTag) == GET_ENTITY_FIELD &&
+              ProtoWire.wireType(groupTag) == ProtoWire.WIRETYPE_LENGTH_DELIMITED) {
+            length = wire.readLength();
+            offset = wire.position();
+            wire.skip(length);
+          } else {
+            wire.skipField(groupTag);
+          }
+        }
+        if (ProtoWire.wireType(groupTag) != ProtoWire.WIRETYPE_END_GROUP) {
+          throw new IllegalArgumentException("Unterminated entity group");
+        }
+        index.add(offset, length);
+      } else {
+        wire.skipField(tag);
+      }
+    }
+    return index.build(bytes);
+  }
+
+  public int size() {
+    return entities.length;
+  }
+
+  /**
+   * Check if there is an entity at the given position, absent entities
+   * only occur for get responses.
+   */
+  public boolean hasEntity(final int index) {
+    checkIndex(index);
+    return offsets[index] >= 0;
+  }
+
+  /**
+   * Read only view of the encoded entity, or null if absent.
+   */
+  public ByteBuffer getRawEntity(final int index) {
+    checkIndex(index);
+    return offsets[index] < 0 ?
+        null :
+        ByteBuffer.wrap(bytes, offsets[index], lengths[index]).slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Get the entity at the given position, decoding on first access.
+   *
+   * @return The entity or null if absent
+   * @throws IllegalArgumentException If the entity cannot be decoded
+   */
+  public EntityProto getEntity(final int index) {
+    checkIndex(index);
+    EntityProto entity = entities[index];
+    if (entity == null && offsets[index] >= 0) {
+      entity = new EntityProto();
+      if (!entity.mergeFrom(bytes, offsets[index], lengths[index])) {
+        throw new IllegalArgumentException("Error parsing entity at index " + index);
+      }
+      entities[index] = entity;
+    }
+    return entity;
+  }
+
+  /**
+   * The encoded result this view was created from.
+   */
+  public byte[] toByteArray() {
+    return bytes;
+  }
+
+  private void checkIndex(final int index) {
+    if (index < 0 || index >= entities.length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + entities.length);
+    }
+  }
+
+  private static final class Index {
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private int size;
+
+    void add(final int offset, final int length) {
+      if (size == offsets.length) {
+        offsets = Arrays.copyOf(offsets, size * 2);
+        lengths = Arrays.copyOf(lengths, size * 2);
+      }
+      offsets[size] = offset;
+      lengths[size] = length;
+      size++;
+    }
+
+    LazyDatastoreResult build(final byte[] bytes) {
+      return new LazyDatastoreResult(bytes, offsets, lengths, size);
+    }
+  }
+}
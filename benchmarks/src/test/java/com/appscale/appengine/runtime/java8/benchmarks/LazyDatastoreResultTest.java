@@ -0,0 +1,108 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+import com.google.apphosting.datastore.DatastoreV3Pb.GetResponse;
+import com.google.apphosting.datastore.DatastoreV3Pb.QueryResult;
+import com.google.storage.onestore.v3.OnestoreEntity.EntityProto;
+
+/**
+ *
+ */
+public class LazyDatastoreResultTest {
+
+  @Test
+  public void testQueryResult() {
+    final QueryResult queryResult = new QueryResult();
+    queryResult.setMoreResults(true);
+    for (int i = 1; i <= 3; i++) {
+      queryResult.addResult(entity(i));
+    }
+    queryResult.setSkippedResults(2);
+
+    final LazyDatastoreResult result = LazyDatastoreResult.forQueryResult(queryResult.toByteArray());
+
+    assertEquals(3, result.size(), "size");
+    for (int i = 0; i < 3; i++) {
+      assertTrue(result.hasEntity(i), "has entity " + i);
+      assertEquals(entity(i + 1), result.getEntity(i), "entity " + i);
+    }
+    assertSame(result.getEntity(1), result.getEntity(1), "cached entity");
+  }
+
+  @Test
+  public void testGetResponse() {
+    final GetResponse getResponse = new GetResponse();
+    getResponse.addEntity().setEntity(entity(1));
+    getResponse.addEntity().setKey(entity(2).getKey());
+    getResponse.addEntity().setEntity(entity(3));
+
+    final LazyDatastoreResult result = LazyDatastoreResult.forGetResponse(getResponse.toByteArray());
+
+    assertEquals(3, result.size(), "size");
+    assertEquals(entity(1), result.getEntity(0), "entity 0");
+    assertFalse(result.hasEntity(1), "missing entity");
+    assertNull(result.getEntity(1), "missing entity");
+    assertNull(result.getRawEntity(1), "missing raw entity");
+    assertEquals(entity(3), result.getEntity(2), "entity 2");
+  }
+
+  @Test
+  public void testRawEntity() {
+    final QueryResult queryResult = new QueryResult();
+    queryResult.setMoreResults(false);
+    queryResult.addResult(entity(1));
+
+    final LazyDatastoreResult result = LazyDatastoreResult.forQueryResult(queryResult.toByteArray());
+    final ByteBuffer raw = result.getRawEntity(0);
+    final byte[] rawBytes = new byte[raw.remaining()];
+    raw.get(rawBytes);
+
+    final EntityProto entity = new EntityProto();
+    assertTrue(entity.mergeFrom(rawBytes), "parsed");
+    assertEquals(entity(1), entity, "entity");
+  }
+
+  @Test
+  public void testEmptyResult() {
+    final QueryResult queryResult = new QueryResult();
+    queryResult.setMoreResults(false);
+
+    final LazyDatastoreResult result = LazyDatastoreResult.forQueryResult(queryResult.toByteArray());
+
+    assertEquals(0, result.size(), "size");
+    assertThrows(IndexOutOfBoundsException.class, () -> result.getEntity(0));
+  }
+
+  @Test
+  public void testTruncatedResult() {
+    final QueryResult queryResult = new QueryResult();
+    queryResult.setMoreResults(false);
+    queryResult.addResult(entity(1));
+    final byte[] bytes = queryResult.toByteArray();
+    final byte[] truncated = new byte[bytes.length / 2];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+    assertThrows(IllegalArgumentException.class, () -> LazyDatastoreResult.forQueryResult(truncated));
+  }
+
+  private static EntityProto entity(final long id) {
+    final EntityProto entity = new EntityProto();
+    entity.getMutableKey().setApp("test").getMutablePath().addElement().setType("Test").setId(id);
+    entity.getMutableEntityGroup().addElement().setType("Test").setId(id);
+    entity.addProperty().setName("name").setMultiple(false).getMutableValue().setStringValue("entity-" + id);
+    entity.addProperty().setName("count").setMultiple(false).getMutableValue().setInt64Value(id);
+    return entity;
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import com.appscale.appengine.runtime.java8.util.Diagnostics;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+import com.appscale.appengine.runtime.java8.util.HealthCheckServlet;
+import com.appscale.appengine.runtime.java8.util.Metrics;
+
+/**
+ * Handler for the admin connector serving health, readiness, metrics,
+ * diagnostics and drain requests.
+ *
+ * Requests are handled directly on the admin server so they do not pass
+ * through the web application or wait for request threads. Access is
+ * controlled by the admin connector address rather than by login.
+ *
+ * A POST to the drain path starts draining, drain progress is reported for
+ * any drain request.
+ */
+class AdminHandler extends AbstractHandler {
+  static final String HEALTH_CHECK_PATH = "/_ah/health_check";
+  static final String METRICS_PATH = "/_ah/metrics";
+  static final String DIAGNOSTICS_PATH = "/_ah/diagnostics";
+  static final String DRAIN_PATH = "/_ah/drain";
+
+  private final DrainController drainController;
+
+  AdminHandler(final DrainController drainController) {
+    this.drainController = drainController;
+  }
+
+  @Override
+  public void handle(
+      final String target,
+      final Request baseRequest,
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws IOException {
+    baseRequest.setHandled(true);
+    if (!HttpMethod.GET.is(request.getMethod()) && !HttpMethod.POST.is(request.getMethod())) {
+      response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+      return;
+    }
+    response.setContentType("text/plain");
+    response.setHeader("Cache-Control", "no-cache");
+    if (HEALTH_CHECK_PATH.equals(target)) {
+      response.getWriter().write("ok");
+    } else if (HealthCheckServlet.READINESS_PATH.equals(target)) {
+      HealthCheckServlet.writeReadiness(response);
+    } else if (METRICS_PATH.equals(target)) {
+      response.setContentType(Metrics.CONTENT_TYPE);
+      Metrics.write(response.getWriter());
+    } else if (DRAIN_PATH.equals(target)) {
+      if (HttpMethod.POST.is(request.getMethod())) {
+        drainController.drain();
+      }
+      drainController.report(response.getWriter());
+    } else if (DIAGNOSTICS_PATH.equals(target) || (DIAGNOSTICS_PATH + "/").equals(target)) {
+      final PrintWriter out = response.getWriter();
+      for (final DiagnosticsProvider provider : Diagnostics.all()) {
+        out.println(provider.getName());
+      }
+    } else if (target.startsWith(DIAGNOSTICS_PATH + "/")) {
+      final Optional<DiagnosticsProvider> provider =
+          Diagnostics.get(target.substring(DIAGNOSTICS_PATH.length() + 1));
+      if (provider.isPresent()) {
+        provider.get().report(response.getWriter());
+      } else {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      }
+    } else {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+  }
+}
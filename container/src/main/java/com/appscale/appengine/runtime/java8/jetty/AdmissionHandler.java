@@ -0,0 +1,123 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import com.appscale.appengine.runtime.java8.util.AdmissionController;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment.RuntimeEnvironmentRequest;
+
+/**
+ * Handler admitting requests via an admission controller.
+ *
+ * Offline requests from task queues are admitted by a separate controller
+ * when there is one. Requests that are not admitted are rejected with a 503
+ * response and a Retry-After header.
+ */
+class AdmissionHandler extends HandlerWrapper {
+  private final AdmissionController admissionController;
+  private final AdmissionController offlineAdmissionController;
+
+  /**
+   * @param admissionController The controller for requests, null if not limited
+   * @param offlineAdmissionController The controller for offline requests, null to use the request controller
+   */
+  AdmissionHandler(
+      final AdmissionController admissionController,
+      final AdmissionController offlineAdmissionController
+  ) {
+    this.admissionController = admissionController;
+    this.offlineAdmissionController = offlineAdmissionController;
+  }
+
+  @Override
+  public void handle(
+      final String target,
+      final Request baseRequest,
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws IOException, ServletException {
+    final AdmissionController admissionController =
+        offlineAdmissionController != null && request.getHeader(RuntimeEnvironmentRequest.HEADER_QUEUE_NAME) != null ?
+            offlineAdmissionController :
+            this.admissionController;
+    if (admissionController == null || baseRequest.getDispatcherType() != DispatcherType.REQUEST) {
+      super.handle(target, baseRequest, request, response);
+      return;
+    }
+    if (!admissionController.acquire()) {
+      baseRequest.setHandled(true);
+      response.setHeader(HttpHeader.RETRY_AFTER.asString(), String.valueOf(admissionController.getRetryAfterSecs()));
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Instance busy");
+      return;
+    }
+    final long startNanos = System.nanoTime();
+    try {
+      super.handle(target, baseRequest, request, response);
+    } finally {
+      if (!releaseOnAsyncComplete(request, admissionController, startNanos)) {
+        admissionController.release(System.nanoTime() - startNanos);
+      }
+    }
+  }
+
+  private boolean releaseOnAsyncComplete(
+      final HttpServletRequest request,
+      final AdmissionController admissionController,
+      final long startNanos
+  ) {
+    if (!request.isAsyncStarted()) {
+      return false;
+    }
+    try {
+      request.getAsyncContext().addListener(new ReleaseAsyncListener(admissionController, startNanos));
+      return true;
+    } catch (final IllegalStateException e) {
+      return false;
+    }
+  }
+
+  private static class ReleaseAsyncListener implements AsyncListener {
+    private final AdmissionController admissionController;
+    private final long startNanos;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    ReleaseAsyncListener(final AdmissionController admissionController, final long startNanos) {
+      this.admissionController = admissionController;
+      this.startNanos = startNanos;
+    }
+
+    public void onComplete(final AsyncEvent event) {
+      release();
+    }
+
+    public void onTimeout(final AsyncEvent event) {
+      release();
+    }
+
+    public void onError(final AsyncEvent event) {
+    }
+
+    public void onStartAsync(final AsyncEvent event) {
+      event.getAsyncContext().addListener(this);
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        admissionController.release(System.nanoTime() - startNanos);
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+
+/**
+ * Handler for gzip compression of responses.
+ *
+ * Only the configured mime types are compressed, so blobs with compressed
+ * content types such as images and archives are sent as stored. Range
+ * requests and partial content responses, including blob ranges requested
+ * by the application, are never compressed as the range would not apply to
+ * the encoded content.
+ */
+class CompressionHandler extends GzipHandler {
+  public static final String PROPERTY_ENABLED = "appscale.compression.enabled";
+  public static final String PROPERTY_MIME_TYPES = "appscale.compression.mime_types";
+  public static final String PROPERTY_MIN_SIZE = "appscale.compression.min_size";
+  public static final String PROPERTY_LEVEL = "appscale.compression.level";
+  public static final String PROPERTY_EXCLUDED_PATHS = "appscale.compression.excluded_paths";
+
+  private static final Logger logger = Logger.getLogger(CompressionHandler.class.getName());
+  private static final String DEFAULT_MIME_TYPES =
+      "text/html,text/plain,text/css,text/javascript,text/xml,application/javascript," +
+      "application/json,application/xml,image/svg+xml";
+
+  /**
+   * Create a handler for the given configuration.
+   *
+   * @return The handler or null if compression is not enabled
+   */
+  static CompressionHandler fromProperties(final Map<String, String> properties) {
+    if (!Boolean.parseBoolean(properties.getOrDefault(PROPERTY_ENABLED, "false").trim())) {
+      return null;
+    }
+    final int minSize = Integer.parseInt(properties.getOrDefault(PROPERTY_MIN_SIZE, "1024").trim());
+    final int level = Integer.parseInt(
+        properties.getOrDefault(PROPERTY_LEVEL, String.valueOf(Deflater.DEFAULT_COMPRESSION)).trim());
+    if (minSize < 0) {
+      throw new IllegalArgumentException("Invalid compression minimum size: " + minSize);
+    }
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    final CompressionHandler handler = new CompressionHandler();
+    handler.setIncludedMimeTypes(split(properties.getOrDefault(PROPERTY_MIME_TYPES, DEFAULT_MIME_TYPES)));
+    handler.setMinGzipSize(minSize);
+    handler.setCompressionLevel(level);
+    final String excludedPaths = properties.get(PROPERTY_EXCLUDED_PATHS);
+    if (excludedPaths != null) {
+      handler.setExcludedPaths(split(excludedPaths));
+    }
+    logger.info("Compressing responses of " + minSize + " bytes or more, level " + level);
+    return handler;
+  }
+
+  /**
+   * Get a deflater for the response being committed, or null if the
+   * response should not be compressed.
+   */
+  @Override
+  public Deflater getDeflater(final Request request, final long contentLength) {
+    final Response response = request.getResponse();
+    if (request.getHeader(HttpHeader.RANGE.asString()) != null ||
+        response.getStatus() == HttpServletResponse.SC_PARTIAL_CONTENT ||
+        response.getHttpFields().containsKey(HttpHeader.CONTENT_RANGE.asString())) {
+      return null;
+    }
+    return super.getDeflater(request, contentLength);
+  }
+
+  private static String[] split(final String values) {
+    return values.trim().split("\\s*,\\s*");
+  }
+}
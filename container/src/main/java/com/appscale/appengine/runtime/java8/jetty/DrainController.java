@@ -0,0 +1,183 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+import com.appscale.appengine.runtime.java8.util.Readiness;
+
+/**
+ * Drains the server before it is stopped.
+ *
+ * When draining starts the instance is reported as unready. After the
+ * delay the connectors stop accepting connections and draining completes
+ * when there are no active requests or API calls, or on timeout. HTTP/1
+ * responses sent while draining close the connection so clients reconnect
+ * to another instance.
+ */
+class DrainController implements DiagnosticsProvider {
+  public static final String PROPERTY_DELAY_MILLIS = "appscale.drain.delay_ms";
+  public static final String PROPERTY_TIMEOUT_MILLIS = "appscale.drain.timeout_ms";
+
+  private static final Logger logger = Logger.getLogger(DrainController.class.getName());
+  private static final long POLL_MILLIS = 100L;
+
+  private final Server server;
+  private final long delayMillis;
+  private final long timeoutMillis;
+  private final AtomicBoolean started = new AtomicBoolean();
+  private final CountDownLatch drained = new CountDownLatch(1);
+  private volatile StatisticsHandler statisticsHandler;
+  private volatile IntSupplier activeApiCalls = () -> 0;
+  private volatile State state = State.SERVING;
+  private volatile long startMillis;
+  private volatile long endMillis;
+
+  DrainController(final Server server, final Map<String, String> properties) {
+    this.server = server;
+    this.delayMillis = Long.parseLong(properties.getOrDefault(PROPERTY_DELAY_MILLIS, "5000").trim());
+    this.timeoutMillis = Long.parseLong(properties.getOrDefault(PROPERTY_TIMEOUT_MILLIS, "30000").trim());
+  }
+
+  @Override
+  public String getName() {
+    return "drain";
+  }
+
+  void setStatisticsHandler(final StatisticsHandler statisticsHandler) {
+    this.statisticsHandler = statisticsHandler;
+  }
+
+  void setActiveApiCalls(final IntSupplier activeApiCalls) {
+    this.activeApiCalls = activeApiCalls;
+  }
+
+  /**
+   * Listener to add to connectors for closing connections while draining.
+   */
+  HttpChannel.Listener getRequestListener() {
+    return new HttpChannel.Listener() {
+      @Override
+      public void onBeforeDispatch(final Request request) {
+        if (state != State.SERVING && request.getHttpVersion() != HttpVersion.HTTP_2) {
+          request.getResponse().getHttpFields().put(HttpHeader.CONNECTION, HttpHeaderValue.CLOSE.asString());
+        }
+      }
+    };
+  }
+
+  /**
+   * Start draining if not already started, this does not wait for draining
+   * to complete.
+   */
+  void drain() {
+    if (started.compareAndSet(false, true)) {
+      final Thread thread = new Thread(this::run, "drain");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Wait for draining to complete, the wait is bounded by the drain delay
+   * and timeout.
+   */
+  boolean awaitDrained() throws InterruptedException {
+    return drained.await(delayMillis + timeoutMillis + POLL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  boolean isDraining() {
+    return state != State.SERVING;
+  }
+
+  private void run() {
+    startMillis = System.currentTimeMillis();
+    state = State.DRAINING;
+    Readiness.get().drain();
+    logger.info("Draining, will stop accepting connections in " + delayMillis + "ms");
+    try {
+      Thread.sleep(delayMillis);
+      for (final Connector connector : server.getConnectors()) {
+        closeConnector(connector);
+      }
+      final long deadline = System.currentTimeMillis() + timeoutMillis;
+      while (getActiveRequests() > 0 || activeApiCalls.getAsInt() > 0) {
+        if (System.currentTimeMillis() >= deadline) {
+          logger.warning("Drain timed out with " + getActiveRequests() + " active requests and " +
+              activeApiCalls.getAsInt() + " active API calls");
+          break;
+        }
+        Thread.sleep(POLL_MILLIS);
+      }
+    } catch (final InterruptedException e) {
+      logger.warning("Drain interrupted");
+    } finally {
+      endMillis = System.currentTimeMillis();
+      state = State.DRAINED;
+      drained.countDown();
+    }
+    logger.info("Drained in " + (endMillis - startMillis) + "ms");
+  }
+
+  private void closeConnector(final Connector connector) {
+    try {
+      if (connector instanceof NetworkConnector) {
+        ((NetworkConnector) connector).close();
+      } else if (connector instanceof UnixSocketConnector) {
+        ((UnixSocketConnector) connector).close();
+      }
+    } catch (final Exception e) {
+      logger.log(Level.WARNING, "Error closing connector " + connector, e);
+    }
+  }
+
+  private int getActiveRequests() {
+    final StatisticsHandler statistics = this.statisticsHandler;
+    return statistics == null ? 0 : statistics.getRequestsActive();
+  }
+
+  @Override
+  public void report(final PrintWriter out) {
+    out.println("state " + state);
+    out.println("delay_ms " + delayMillis);
+    out.println("timeout_ms " + timeoutMillis);
+    if (state != State.SERVING) {
+      final long end = state == State.DRAINED ? endMillis : System.currentTimeMillis();
+      out.println("elapsed_ms " + (end - startMillis));
+    }
+    out.println("active_requests " + getActiveRequests());
+    out.println("active_api_calls " + activeApiCalls.getAsInt());
+  }
+
+  private enum State {
+    SERVING,
+    DRAINING,
+    DRAINED;
+
+    @Override
+    public String toString() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+}
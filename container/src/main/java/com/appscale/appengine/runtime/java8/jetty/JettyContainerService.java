@@ -5,14 +5,19 @@
  */
 package com.appscale.appengine.runtime.java8.jetty;
 
+import com.appscale.appengine.runtime.java8.util.AdmissionController;
+import com.appscale.appengine.runtime.java8.util.ApiCallTracker;
+import com.appscale.appengine.runtime.java8.util.DeadlineWatchdog;
+import com.appscale.appengine.runtime.java8.util.DeadlineWatchdog.Deadline;
+import com.appscale.appengine.runtime.java8.util.Diagnostics;
+import com.appscale.appengine.runtime.java8.util.Metrics;
+import com.appscale.appengine.runtime.java8.util.Readiness;
+import com.appscale.appengine.runtime.java8.util.RequestQueue;
 import com.appscale.appengine.runtime.java8.util.RuntimeAppClassLoader;
 import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
-import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment.RuntimeEnvironmentRequest;
-import com.appscale.appengine.runtime.java8.util.RuntimeEnvironmentListener;
 import com.google.appengine.repackaged.com.google.common.base.Strings;
 import com.google.appengine.tools.development.AbstractContainerService;
 import com.google.appengine.tools.development.AppContext;
-import com.google.appengine.tools.development.LocalEnvironment;
 import com.google.appengine.tools.development.jetty9.AppEngineAnnotationConfiguration;
 import com.google.appengine.tools.info.AppengineSdk;
 import com.google.apphosting.api.ApiProxy;
@@ -31,8 +36,8 @@ import java.security.Permissions;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.DispatcherType;
@@ -43,14 +48,16 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.server.ForwardedRequestCustomizer;
+import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpConfiguration;
-import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.server.handler.StatisticsHandler;
-import org.eclipse.jetty.server.nio.NetworkTrafficSelectChannelConnector;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
 import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.webapp.FragmentConfiguration;
 import org.eclipse.jetty.webapp.MetaInfConfiguration;
 import org.eclipse.jetty.webapp.WebAppContext;
@@ -60,8 +67,6 @@ import org.eclipse.jetty.webapp.WebXmlConfiguration;
 public class JettyContainerService extends AbstractContainerService {
   private static final Logger logger = Logger.getLogger(JettyContainerService.class.getName());
   private static final String WEB_DEFAULTS_XML = "com/appscale/appengine/runtime/java8/jetty/webdefault.xml";
-  private static final int MAX_SIMULTANEOUS_API_CALLS = 100;
-  private static final Long SOFT_DEADLINE_DELAY_MS = 60000L;
   private static final String[] CONFIG_CLASSES = new String[]{
       WebInfConfiguration.class.getCanonicalName(),
       WebXmlConfiguration.class.getCanonicalName(),
@@ -79,6 +84,16 @@ public class JettyContainerService extends AbstractContainerService {
   private WebAppContext context;
   private AppContext appContext;
   private Server server;
+  private QueuedThreadPool threadPool;
+  private Server adminServer;
+  private ServerMetrics serverMetrics;
+  private ServerReadinessCheck serverReadinessCheck;
+  private DrainController drainController;
+  private DeadlineWatchdog deadlineWatchdog;
+  private IntSupplier activeApiCalls;
+  private Thread shutdownHook;
+  private RequestQueue requestQueue;
+  private volatile AdmissionController admissionController;
   @SuppressWarnings("FieldCanBeLocal")
   private SessionManagerHandler sessionManagerHandler;
 
@@ -121,15 +136,40 @@ public class JettyContainerService extends AbstractContainerService {
     return urls;
   }
 
-  @SuppressWarnings( "deprecation" )
   protected void connectContainer() throws Exception {
     logger.info( "Connecting container." );
     this.moduleConfigurationHandle.checkEnvironmentVariables();
     Thread currentThread = Thread.currentThread();
     ClassLoader previousCcl = currentThread.getContextClassLoader();
-    this.server = new Server();
+    final Map<String, String> properties = this.devAppServer.getServiceProperties();
+    final ServerSettings serverSettings = ServerSettings.fromProperties(properties);
+    logger.info("Server settings: " + serverSettings);
+    this.requestQueue = RequestQueue.fromProperties(properties);
+    if (this.requestQueue != null) {
+      Diagnostics.register(this.requestQueue);
+    }
+    this.threadPool = serverSettings.buildThreadPool(this.requestQueue);
+    this.server = new Server(this.threadPool);
+    this.serverMetrics = new ServerMetrics(this.threadPool, this.requestQueue);
+    final HttpChannel.Listener requestListener = this.serverMetrics.getRequestListener();
+    Metrics.register(this.serverMetrics);
+    this.serverReadinessCheck = new ServerReadinessCheck(this.threadPool, this.requestQueue);
+    Readiness.get().register(this.serverReadinessCheck);
+    this.adminServer = serverSettings.buildAdminServer();
     this.server.setStopTimeout(TimeUnit.SECONDS.toMillis(30));
-    this.server.setStopAtShutdown(true);
+    this.drainController = new DrainController(this.server, properties);
+    if (this.activeApiCalls != null) {
+      this.drainController.setActiveApiCalls(this.activeApiCalls);
+    }
+    Diagnostics.register(this.drainController);
+    this.deadlineWatchdog = DeadlineWatchdog.fromProperties(properties);
+    if (this.deadlineWatchdog != null) {
+      Diagnostics.register(this.deadlineWatchdog);
+      Metrics.register(this.deadlineWatchdog);
+    }
+    final HttpChannel.Listener drainListener = this.drainController.getRequestListener();
+    this.shutdownHook = new Thread(this::drainAndStop, "drain-shutdown");
+    Runtime.getRuntime().addShutdownHook(this.shutdownHook);
 
     try {
       final ForwardedRequestCustomizer forwardedRequestCustomizer = new ForwardedRequestCustomizer();
@@ -139,13 +179,27 @@ public class JettyContainerService extends AbstractContainerService {
       forwardedRequestCustomizer.setForwardedProtoHeader(HttpHeader.X_FORWARDED_PROTO.toString());
       final HttpConfiguration httpConfiguration = new HttpConfiguration();
       httpConfiguration.addCustomizer(forwardedRequestCustomizer);
-      final HttpConnectionFactory connectionFactory = new HttpConnectionFactory(httpConfiguration);
-      NetworkTrafficSelectChannelConnector connector = new NetworkTrafficSelectChannelConnector(this.server, null, null, null, 0, Runtime.getRuntime().availableProcessors(), connectionFactory );
-      connector.setHost(this.address);
-      connector.setPort(this.port);
-      connector.open();
-      this.server.addConnector(connector);
-      this.port = connector.getLocalPort();
+      serverSettings.configure(httpConfiguration);
+      if (serverSettings.isTcp()) {
+        final ServerConnector connector = serverSettings.buildConnector(
+            this.server, serverSettings.buildConnectionFactories(httpConfiguration));
+        connector.setHost(this.address);
+        connector.setPort(this.port);
+        connector.addBean(requestListener);
+        connector.addBean(drainListener);
+        connector.open();
+        this.server.addConnector(connector);
+        this.port = connector.getLocalPort();
+      }
+      final UnixSocketConnector unixSocketConnector = serverSettings.buildUnixSocketConnector(
+          this.server, serverSettings.buildConnectionFactories(httpConfiguration));
+      if (unixSocketConnector != null) {
+        unixSocketConnector.addBean(requestListener);
+        unixSocketConnector.addBean(drainListener);
+        unixSocketConnector.open();
+        this.server.addConnector(unixSocketConnector);
+        logger.info("Listening on unix socket " + unixSocketConnector.getUnixSocket());
+      }
     } finally {
       currentThread.setContextClassLoader(previousCcl);
     }
@@ -162,16 +216,61 @@ public class JettyContainerService extends AbstractContainerService {
     try {
       final StatisticsHandler statisticsHandler = new StatisticsHandler();
       this.server.setHandler(statisticsHandler);
+      this.serverMetrics.setStatisticsHandler(statisticsHandler);
+      this.drainController.setStatisticsHandler(statisticsHandler);
+      HandlerWrapper handlerParent = statisticsHandler;
+      if (this.requestQueue != null) {
+        final RequestQueueHandler requestQueueHandler = new RequestQueueHandler();
+        handlerParent.setHandler(requestQueueHandler);
+        handlerParent = requestQueueHandler;
+      }
+      final CompressionHandler compressionHandler =
+          CompressionHandler.fromProperties(this.devAppServer.getServiceProperties());
+      if (compressionHandler != null) {
+        handlerParent.setHandler(compressionHandler);
+        handlerParent = compressionHandler;
+      }
 
       final JettyContainerService.ApiProxyHandler apiHandler =
           new JettyContainerService.ApiProxyHandler(this.appEngineWebXml);
       apiHandler.setHandler(this.context);
-      statisticsHandler.setHandler(apiHandler);
+      this.admissionController = AdmissionController.fromConfiguration(
+          this.appEngineWebXml, this.devAppServer.getServiceProperties());
+      // a separate lane would allow concurrent requests for apps that are not threadsafe
+      final AdmissionController offlineAdmissionController = this.appEngineWebXml.getThreadsafe() ?
+          AdmissionController.forOfflineRequests(
+              this.devAppServer.getServiceProperties(), Math.max(1, this.threadPool.getMaxThreads() / 2)) :
+          null;
+      if (this.admissionController != null || offlineAdmissionController != null) {
+        final AdmissionHandler admissionHandler =
+            new AdmissionHandler(this.admissionController, offlineAdmissionController);
+        admissionHandler.setHandler(apiHandler);
+        handlerParent.setHandler(admissionHandler);
+      } else {
+        handlerParent.setHandler(apiHandler);
+      }
+      if (this.admissionController != null) {
+        Diagnostics.register(this.admissionController);
+        this.serverMetrics.setAdmissionController(this.admissionController);
+        this.serverReadinessCheck.setAdmissionController(this.admissionController);
+      }
+      if (offlineAdmissionController != null) {
+        Diagnostics.register(offlineAdmissionController);
+        this.serverMetrics.setOfflineAdmissionController(offlineAdmissionController);
+      }
       this.sessionManagerHandler = SessionManagerHandler.create(Config.builder()
           .setEnableSession(this.isSessionsEnabled())
           .setServletContextHandler(this.context)
           .build());
+      if (this.deadlineWatchdog != null) {
+        this.deadlineWatchdog.start();
+      }
       this.server.start();
+      if (this.adminServer != null) {
+        this.adminServer.setHandler(new AdminHandler(this.drainController));
+        this.adminServer.start();
+        logger.info("Admin server listening on " + this.adminServer.getURI());
+      }
     } finally {
       currentThread.setContextClassLoader(previousCcl);
     }
@@ -179,7 +278,21 @@ public class JettyContainerService extends AbstractContainerService {
 
   protected void stopContainer() throws Exception {
     logger.info( "Stopping container." );
+    if (this.shutdownHook != null) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+      } catch (final IllegalStateException e) {
+        // already shutting down
+      }
+      this.shutdownHook = null;
+    }
     this.server.stop();
+    if (this.adminServer != null) {
+      this.adminServer.stop();
+    }
+    if (this.deadlineWatchdog != null) {
+      this.deadlineWatchdog.stop();
+    }
   }
 
   protected void startHotDeployScanner() {
@@ -195,6 +308,33 @@ public class JettyContainerService extends AbstractContainerService {
     return this.appContext;
   }
 
+  /**
+   * Set the source for the count of API calls in progress, draining waits
+   * for these calls to complete.
+   */
+  public void setActiveApiCalls(final IntSupplier activeApiCalls) {
+    this.activeApiCalls = activeApiCalls;
+    if (this.drainController != null) {
+      this.drainController.setActiveApiCalls(activeApiCalls);
+    }
+  }
+
+  /**
+   * Drain and stop the server on JVM shutdown.
+   */
+  private void drainAndStop() {
+    try {
+      this.drainController.drain();
+      this.drainController.awaitDrained();
+      this.server.stop();
+      if (this.adminServer != null) {
+        this.adminServer.stop();
+      }
+    } catch (final Exception e) {
+      logger.log(Level.WARNING, "Error stopping server at shutdown", e);
+    }
+  }
+
   public void forwardToServer(
       final HttpServletRequest hrequest,
       final HttpServletResponse hresponse
@@ -313,43 +453,51 @@ public class JettyContainerService extends AbstractContainerService {
 
   private class ApiProxyHandler extends HandlerWrapper {
     private final AppEngineWebXml appEngineWebXml;
+    private final int maxConcurrentApiCalls;
+    private final long apiCallGraceMillis;
 
     public ApiProxyHandler(AppEngineWebXml appEngineWebXml) {
+      final Map<String, String> properties = JettyContainerService.this.devAppServer.getServiceProperties();
       this.appEngineWebXml = appEngineWebXml;
+      this.maxConcurrentApiCalls = ApiCallTracker.maxConcurrentCalls(properties);
+      this.apiCallGraceMillis = ApiCallTracker.requestEndGraceMillis(properties);
     }
 
     public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
       if (baseRequest.getDispatcherType() == DispatcherType.REQUEST) {
-        final Semaphore semaphore = new Semaphore(MAX_SIMULTANEOUS_API_CALLS);
-        final int port = JettyContainerService.this.devAppServer.getPort();
-
-        final RuntimeEnvironment env = new RuntimeEnvironment(
+        final RuntimeEnvironment env = RequestEnvironments.begin(
             this.appEngineWebXml.getAppId(),
             WebModule.getModuleName(this.appEngineWebXml),
             this.appEngineWebXml.getMajorVersionId(),
-            RuntimeEnvironmentRequest.forRequest(request),
+            request,
             JettyContainerService.this.instance,
             JettyContainerService.this.getPort(),
-            JettyContainerService.SOFT_DEADLINE_DELAY_MS);
-        final Map<String, Object> envAttributes = env.getAttributes();
-        envAttributes.put(LocalEnvironment.API_CALL_SEMAPHORE, semaphore);
-        envAttributes.put(LocalEnvironment.DEFAULT_VERSION_HOSTNAME,
-            System.getProperty("APPLICATION_HOST", "localhost:"+port));
-        envAttributes.put(LocalEnvironment.FILESAPI_WAS_USED, false);
-        ApiProxy.setEnvironmentForCurrentThread(env);
+            JettyContainerService.this.devAppServer.getPort(),
+            this.maxConcurrentApiCalls);
         final JettyContainerService.RecordingResponseWrapper wrappedResponse =
             new JettyContainerService.RecordingResponseWrapper(response);
 
+        final DeadlineWatchdog watchdog = JettyContainerService.this.deadlineWatchdog;
+        final Deadline deadline = watchdog == null ? null : watchdog.watch(target, env.getRemainingMillis());
         try {
           super.handle(target, baseRequest, request, wrappedResponse);
         } finally {
-          try {
-            semaphore.acquire(MAX_SIMULTANEOUS_API_CALLS);
-          } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.log(Level.WARNING, "Interrupted while waiting for API calls to complete:", e);
+          if (deadline != null) {
+            deadline.cancel();
+          }
+          if (!RequestEndAsyncListener.deferRequestEnd(request, env, JettyContainerService.this.threadPool,
+              () -> RequestEnvironments.end(target, env, this.apiCallGraceMillis))) {
+            RequestEnvironments.end(target, env, this.apiCallGraceMillis);
           }
-          RuntimeEnvironmentListener.requestEnd(env);
+        }
+      } else if (baseRequest.getDispatcherType() == DispatcherType.ASYNC &&
+          request.getAttribute(RequestEndAsyncListener.ENVIRONMENT_ATTR) instanceof RuntimeEnvironment) {
+        ApiProxy.setEnvironmentForCurrentThread(
+            (RuntimeEnvironment) request.getAttribute(RequestEndAsyncListener.ENVIRONMENT_ATTR));
+        try {
+          super.handle(target, baseRequest, request, response);
+        } finally {
+          ApiProxy.clearEnvironmentForCurrentThread();
         }
       } else {
         super.handle(target, baseRequest, request, response);
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
+import com.google.apphosting.api.ApiProxy;
+
+/**
+ * Async listener that ends a request once when the async cycle completes
+ * or times out.
+ *
+ * Listeners are called on the thread that completes the async context,
+ * which can be one of the request's own threads, so the request end runs
+ * on the executor rather than blocking or interrupting that thread.
+ */
+class RequestEndAsyncListener implements AsyncListener {
+  static final String ENVIRONMENT_ATTR = "com.appscale.appengine.runtime.environment";
+
+  private final Executor executor;
+  private final Runnable requestEnd;
+  private final AtomicBoolean ended = new AtomicBoolean();
+
+  RequestEndAsyncListener(final Executor executor, final Runnable requestEnd) {
+    this.executor = executor;
+    this.requestEnd = requestEnd;
+  }
+
+  /**
+   * If the application started async processing the environment is kept
+   * for async dispatches and the end of the request is deferred until the
+   * async cycle completes.
+   *
+   * @param requestEnd Ends the request, run with the request environment set
+   * @return True if the request end was deferred
+   */
+  static boolean deferRequestEnd(
+      final HttpServletRequest request,
+      final RuntimeEnvironment env,
+      final Executor executor,
+      final Runnable requestEnd
+  ) {
+    if (!request.isAsyncStarted()) {
+      return false;
+    }
+    try {
+      request.setAttribute(ENVIRONMENT_ATTR, env);
+      request.getAsyncContext().addListener(new RequestEndAsyncListener(executor, () -> {
+        ApiProxy.setEnvironmentForCurrentThread(env);
+        try {
+          requestEnd.run();
+        } finally {
+          ApiProxy.clearEnvironmentForCurrentThread();
+        }
+      }));
+    } catch (final IllegalStateException e) {
+      return false;
+    }
+    ApiProxy.clearEnvironmentForCurrentThread();
+    return true;
+  }
+
+  public void onComplete(final AsyncEvent event) {
+    end();
+  }
+
+  public void onTimeout(final AsyncEvent event) {
+    end();
+  }
+
+  public void onError(final AsyncEvent event) {
+  }
+
+  public void onStartAsync(final AsyncEvent event) {
+    event.getAsyncContext().addListener(this);
+  }
+
+  private void end() {
+    if (this.ended.compareAndSet(false, true)) {
+      try {
+        this.executor.execute(this.requestEnd);
+      } catch (final RejectedExecutionException e) {
+        this.requestEnd.run();
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.HttpServletRequest;
+import com.appscale.appengine.runtime.java8.util.ApiCallTracker;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment.RuntimeEnvironmentRequest;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironmentListener;
+import com.google.appengine.tools.development.LocalEnvironment;
+import com.google.apphosting.api.ApiProxy;
+
+/**
+ * Environment setup and teardown for each request handled by the container.
+ *
+ * This is the per request work done around application code, it is public
+ * so that benchmarks measure the code the container runs.
+ */
+public final class RequestEnvironments {
+  private static final Logger logger = Logger.getLogger(RequestEnvironments.class.getName());
+  private static final long SOFT_DEADLINE_DELAY_MS = 60000L;
+  private static final long OFFLINE_SOFT_DEADLINE_DELAY_MS = 600000L;
+
+  private RequestEnvironments() {
+  }
+
+  /**
+   * Create the environment for a request and set it for the current thread.
+   *
+   * @param port The port for the container
+   * @param apiPort The port for the development server
+   */
+  public static RuntimeEnvironment begin(
+      final String appId,
+      final String moduleName,
+      final String versionId,
+      final HttpServletRequest request,
+      final int instance,
+      final int port,
+      final int apiPort,
+      final int maxConcurrentApiCalls
+  ) {
+    final ApiCallTracker apiCallTracker = new ApiCallTracker(maxConcurrentApiCalls);
+    final RuntimeEnvironmentRequest environmentRequest = RuntimeEnvironmentRequest.forRequest(request);
+    final RuntimeEnvironment env = new RuntimeEnvironment(
+        appId,
+        moduleName,
+        versionId,
+        environmentRequest,
+        instance,
+        port,
+        environmentRequest.isOffline() ? OFFLINE_SOFT_DEADLINE_DELAY_MS : SOFT_DEADLINE_DELAY_MS);
+    final Map<String, Object> envAttributes = env.getAttributes();
+    envAttributes.put(RuntimeEnvironment.ATTR_API_CALL_TRACKER.getName(), apiCallTracker);
+    envAttributes.put(LocalEnvironment.DEFAULT_VERSION_HOSTNAME,
+        System.getProperty("APPLICATION_HOST", "localhost:" + apiPort));
+    envAttributes.put(LocalEnvironment.FILESAPI_WAS_USED, false);
+    ApiProxy.setEnvironmentForCurrentThread(env);
+    return env;
+  }
+
+  /**
+   * End the request, waiting for in-flight API calls up to the grace period.
+   */
+  public static void end(final String target, final RuntimeEnvironment env, final long apiCallGraceMillis) {
+    final ApiCallTracker apiCallTracker = env.getAttribute(RuntimeEnvironment.ATTR_API_CALL_TRACKER).orElse(null);
+    if (apiCallTracker != null) {
+      try {
+        final int cancelled = apiCallTracker.awaitCompletion(apiCallGraceMillis);
+        if (cancelled > 0) {
+          logger.warning("Cancelled " + cancelled + " API calls in-flight at end of request " + target);
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        logger.log(Level.WARNING, "Interrupted while waiting for API calls to complete:", e);
+      }
+    }
+    RuntimeEnvironmentListener.requestEnd(env);
+  }
+}
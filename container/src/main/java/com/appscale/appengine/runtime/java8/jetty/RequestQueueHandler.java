@@ -0,0 +1,49 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.io.IOException;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import com.appscale.appengine.runtime.java8.util.RequestQueue;
+import com.appscale.appengine.runtime.java8.util.RequestQueue.DropReason;
+
+/**
+ * Handler dropping requests that expired in the server request queue.
+ *
+ * A request is only dropped if it is itself older than the queue delay,
+ * the job that expired may be connection work that handles a newer
+ * request.
+ *
+ * Dropped requests are rejected with a 503 response without being passed
+ * to the application.
+ */
+class RequestQueueHandler extends HandlerWrapper {
+
+  @Override
+  public void handle(
+      final String target,
+      final Request baseRequest,
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws IOException, ServletException {
+    final DropReason dropReason = baseRequest.getDispatcherType() == DispatcherType.REQUEST ?
+        RequestQueue.takeDropReason(System.currentTimeMillis() - baseRequest.getTimeStamp()) :
+        null;
+    if (dropReason != null) {
+      baseRequest.setHandled(true);
+      response.setHeader(HttpHeader.RETRY_AFTER.asString(), "1");
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request expired in queue");
+      return;
+    }
+    super.handle(target, baseRequest, request, response);
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import com.appscale.appengine.runtime.java8.util.AdmissionController;
+import com.appscale.appengine.runtime.java8.util.Histogram;
+import com.appscale.appengine.runtime.java8.util.Metrics.MetricsProvider;
+import com.appscale.appengine.runtime.java8.util.MetricsWriter;
+import com.appscale.appengine.runtime.java8.util.RequestQueue;
+import com.appscale.appengine.runtime.java8.util.RequestQueue.DropReason;
+
+/**
+ * Request, thread pool, queue and per lane admission metrics for the server.
+ *
+ * Request durations are recorded by a channel listener on the connectors so
+ * they include time spent queued and in async processing.
+ */
+class ServerMetrics implements MetricsProvider {
+  private final Histogram requestDuration = Histogram.latency();
+  private final QueuedThreadPool threadPool;
+  private final RequestQueue requestQueue;
+  private volatile StatisticsHandler statisticsHandler;
+  private volatile AdmissionController admissionController;
+  private volatile AdmissionController offlineAdmissionController;
+
+  ServerMetrics(final QueuedThreadPool threadPool, final RequestQueue requestQueue) {
+    this.threadPool = threadPool;
+    this.requestQueue = requestQueue;
+  }
+
+  @Override
+  public String getName() {
+    return "server";
+  }
+
+  /**
+   * Listener to add to connectors for recording request durations.
+   */
+  HttpChannel.Listener getRequestListener() {
+    return new HttpChannel.Listener() {
+      @Override
+      public void onComplete(final Request request) {
+        final long timeStamp = request.getTimeStamp();
+        if (timeStamp > 0L) {
+          requestDuration.recordMillis(Math.max(0L, System.currentTimeMillis() - timeStamp));
+        }
+      }
+    };
+  }
+
+  void setStatisticsHandler(final StatisticsHandler statisticsHandler) {
+    this.statisticsHandler = statisticsHandler;
+  }
+
+  void setAdmissionController(final AdmissionController admissionController) {
+    this.admissionController = admissionController;
+  }
+
+  void setOfflineAdmissionController(final AdmissionController offlineAdmissionController) {
+    this.offlineAdmissionController = offlineAdmissionController;
+  }
+
+  @Override
+  public void collect(final MetricsWriter out) {
+    out.histogram("appscale_http_request_duration_seconds", "HTTP request duration", requestDuration);
+    final StatisticsHandler statistics = this.statisticsHandler;
+    if (statistics != null) {
+      out.counter("appscale_http_requests_total", "HTTP requests", statistics.getRequests());
+      out.gauge("appscale_http_requests_active", "HTTP requests in progress", statistics.getRequestsActive());
+      out.gauge("appscale_http_requests_active_max", "Maximum HTTP requests in progress",
+          statistics.getRequestsActiveMax());
+      out.family("appscale_http_responses_total", MetricsWriter.COUNTER, "HTTP responses by status class");
+      out.sample("appscale_http_responses_total", "code", "1xx", statistics.getResponses1xx());
+      out.sample("appscale_http_responses_total", "code", "2xx", statistics.getResponses2xx());
+      out.sample("appscale_http_responses_total", "code", "3xx", statistics.getResponses3xx());
+      out.sample("appscale_http_responses_total", "code", "4xx", statistics.getResponses4xx());
+      out.sample("appscale_http_responses_total", "code", "5xx", statistics.getResponses5xx());
+      out.counter("appscale_http_response_bytes_total", "HTTP response bytes", statistics.getResponsesBytesTotal());
+      out.counter("appscale_http_async_dispatches_total", "HTTP async dispatches", statistics.getAsyncDispatches());
+    }
+
+    out.gauge("appscale_server_threads", "Server pool threads", threadPool.getThreads());
+    out.gauge("appscale_server_threads_busy", "Server pool busy threads", threadPool.getBusyThreads());
+    out.gauge("appscale_server_threads_idle", "Server pool idle threads", threadPool.getIdleThreads());
+    out.gauge("appscale_server_threads_max", "Server pool maximum threads", threadPool.getMaxThreads());
+    out.gauge("appscale_server_queue_size", "Server pool queued jobs", threadPool.getQueueSize());
+
+    if (requestQueue != null) {
+      out.counter("appscale_request_queue_dispatched_total", "Request queue jobs dispatched",
+          requestQueue.getDispatched());
+      out.counter("appscale_request_queue_dispatched_lifo_total", "Request queue jobs dispatched newest first",
+          requestQueue.getDispatchedLifo());
+      out.gauge("appscale_request_queue_overloaded", "Request queue overloaded (1) or not (0)",
+          requestQueue.isOverloaded() ? 1 : 0);
+      out.family("appscale_request_queue_dropped_total", MetricsWriter.COUNTER, "Requests dropped by reason");
+      for (final DropReason reason : DropReason.values()) {
+        out.sample("appscale_request_queue_dropped_total", "reason", reason.name().toLowerCase(Locale.ROOT),
+            requestQueue.getDropped(reason));
+      }
+    }
+
+    final Map<String, AdmissionController> lanes = new LinkedHashMap<>();
+    if (this.admissionController != null) {
+      lanes.put("interactive", this.admissionController);
+    }
+    if (this.offlineAdmissionController != null) {
+      lanes.put("offline", this.offlineAdmissionController);
+    }
+    if (!lanes.isEmpty()) {
+      laneSamples(out, lanes, "appscale_admission_limit", MetricsWriter.GAUGE,
+          "Concurrent request limit by lane", AdmissionController::getLimit);
+      laneSamples(out, lanes, "appscale_admission_in_flight", MetricsWriter.GAUGE,
+          "Admitted requests in progress by lane", AdmissionController::getInFlight);
+      laneSamples(out, lanes, "appscale_admission_queued", MetricsWriter.GAUGE,
+          "Requests waiting for admission by lane", AdmissionController::getQueued);
+      laneSamples(out, lanes, "appscale_admission_admitted_total", MetricsWriter.COUNTER,
+          "Requests admitted by lane", AdmissionController::getAdmitted);
+      laneSamples(out, lanes, "appscale_admission_queued_total", MetricsWriter.COUNTER,
+          "Requests that waited for admission by lane", AdmissionController::getQueuedTotal);
+      out.family("appscale_admission_rejected_total", MetricsWriter.COUNTER, "Requests rejected by lane and reason");
+      for (final Map.Entry<String, AdmissionController> lane : lanes.entrySet()) {
+        out.sample("appscale_admission_rejected_total", "lane", lane.getKey(), "reason", "queue_full",
+            lane.getValue().getRejectedQueueFull());
+        out.sample("appscale_admission_rejected_total", "lane", lane.getKey(), "reason", "timeout",
+            lane.getValue().getRejectedTimeout());
+      }
+    }
+  }
+
+  private static void laneSamples(
+      final MetricsWriter out,
+      final Map<String, AdmissionController> lanes,
+      final String name,
+      final String type,
+      final String help,
+      final ToLongFunction<AdmissionController> value
+  ) {
+    out.family(name, type, help);
+    for (final Map.Entry<String, AdmissionController> lane : lanes.entrySet()) {
+      out.sample(name, "lane", lane.getKey(), value.applyAsLong(lane.getValue()));
+    }
+  }
+}
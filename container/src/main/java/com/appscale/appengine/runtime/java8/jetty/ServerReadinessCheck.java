@@ -0,0 +1,58 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import com.appscale.appengine.runtime.java8.util.AdmissionController;
+import com.appscale.appengine.runtime.java8.util.Readiness.ReadinessCheck;
+import com.appscale.appengine.runtime.java8.util.Readiness.Status;
+import com.appscale.appengine.runtime.java8.util.RequestQueue;
+
+/**
+ * Readiness check for server thread pool saturation and load shedding.
+ *
+ * The instance is degraded when the thread pool is low on threads or
+ * requests are being shed, and unready when more jobs are queued than
+ * there are threads to run them.
+ */
+class ServerReadinessCheck implements ReadinessCheck {
+  private final QueuedThreadPool threadPool;
+  private final RequestQueue requestQueue;
+  private volatile AdmissionController admissionController;
+  private long lastRejected;
+
+  ServerReadinessCheck(final QueuedThreadPool threadPool, final RequestQueue requestQueue) {
+    this.threadPool = threadPool;
+    this.requestQueue = requestQueue;
+  }
+
+  void setAdmissionController(final AdmissionController admissionController) {
+    this.admissionController = admissionController;
+  }
+
+  @Override
+  public String getName() {
+    return "server";
+  }
+
+  @Override
+  public Status check() {
+    final AdmissionController admission = this.admissionController;
+    boolean shedding = false;
+    if (admission != null) {
+      final long rejected = admission.getRejectedQueueFull() + admission.getRejectedTimeout();
+      shedding = rejected > lastRejected;
+      lastRejected = rejected;
+    }
+    if (threadPool.getQueueSize() > threadPool.getMaxThreads()) {
+      return Status.UNREADY;
+    } else if (shedding || threadPool.isLowOnThreads() ||
+        (requestQueue != null && requestQueue.isOverloaded())) {
+      return Status.DEGRADED;
+    }
+    return Status.READY;
+  }
+}
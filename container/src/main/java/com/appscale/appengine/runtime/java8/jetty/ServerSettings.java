@@ -0,0 +1,251 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Thread pool and connector settings for the server.
+ *
+ * Settings are from service properties, unset values use the Jetty
+ * defaults except for selectors which defaults to the processor count.
+ *
+ * When h2c is enabled HTTP/2 cleartext is accepted on the same connector as
+ * HTTP/1.1, either with prior knowledge or via an upgrade request.
+ *
+ * A Unix domain socket connector can be used alongside or instead of the
+ * TCP connector for a proxy on the same host.
+ *
+ * The admin server is a separate server with a small thread pool for
+ * health, metrics and diagnostics requests.
+ */
+public final class ServerSettings {
+  public static final String PROPERTY_MAX_THREADS = "appscale.server.max_threads";
+  public static final String PROPERTY_MIN_THREADS = "appscale.server.min_threads";
+  public static final String PROPERTY_THREAD_IDLE_TIMEOUT_MILLIS = "appscale.server.thread_idle_timeout_ms";
+  public static final String PROPERTY_RESERVED_THREADS = "appscale.server.reserved_threads";
+  public static final String PROPERTY_ACCEPTORS = "appscale.server.acceptors";
+  public static final String PROPERTY_SELECTORS = "appscale.server.selectors";
+  public static final String PROPERTY_ACCEPT_QUEUE_SIZE = "appscale.server.accept_queue_size";
+  public static final String PROPERTY_IDLE_TIMEOUT_MILLIS = "appscale.server.idle_timeout_ms";
+  public static final String PROPERTY_OUTPUT_BUFFER_SIZE = "appscale.server.output_buffer_size";
+  public static final String PROPERTY_REQUEST_HEADER_SIZE = "appscale.server.request_header_size";
+  public static final String PROPERTY_RESPONSE_HEADER_SIZE = "appscale.server.response_header_size";
+  public static final String PROPERTY_H2C = "appscale.server.h2c";
+  public static final String PROPERTY_H2C_MAX_CONCURRENT_STREAMS = "appscale.server.h2c.max_concurrent_streams";
+  public static final String PROPERTY_H2C_STREAM_WINDOW = "appscale.server.h2c.stream_window";
+  public static final String PROPERTY_H2C_SESSION_WINDOW = "appscale.server.h2c.session_window";
+  public static final String PROPERTY_UNIX_SOCKET = "appscale.server.unix_socket";
+  public static final String PROPERTY_UNIX_SOCKET_ONLY = "appscale.server.unix_socket_only";
+  public static final String PROPERTY_ADMIN_PORT = "appscale.admin.port";
+  public static final String PROPERTY_ADMIN_ADDRESS = "appscale.admin.address";
+  public static final String PROPERTY_ADMIN_THREADS = "appscale.admin.threads";
+
+  private final int maxThreads;
+  private final int minThreads;
+  private final int threadIdleTimeoutMillis;
+  private final int reservedThreads;
+  private final int acceptors;
+  private final int selectors;
+  private final int acceptQueueSize;
+  private final long idleTimeoutMillis;
+  private final int outputBufferSize;
+  private final int requestHeaderSize;
+  private final int responseHeaderSize;
+  private final boolean h2c;
+  private final int h2cMaxConcurrentStreams;
+  private final int h2cStreamWindow;
+  private final int h2cSessionWindow;
+  private final String unixSocket;
+  private final boolean unixSocketOnly;
+  private final int adminPort;
+  private final String adminAddress;
+  private final int adminThreads;
+
+  private ServerSettings(final Map<String, String> properties) {
+    this.maxThreads = intProperty(properties, PROPERTY_MAX_THREADS, 200, 1);
+    this.minThreads = intProperty(properties, PROPERTY_MIN_THREADS, Math.min(8, maxThreads), 1);
+    this.threadIdleTimeoutMillis = intProperty(properties, PROPERTY_THREAD_IDLE_TIMEOUT_MILLIS, 60_000, 0);
+    this.reservedThreads = intProperty(properties, PROPERTY_RESERVED_THREADS, -1, -1);
+    this.acceptors = intProperty(properties, PROPERTY_ACCEPTORS, -1, -1);
+    this.selectors = intProperty(properties, PROPERTY_SELECTORS, Runtime.getRuntime().availableProcessors(), 1);
+    this.acceptQueueSize = intProperty(properties, PROPERTY_ACCEPT_QUEUE_SIZE, 0, 0);
+    this.idleTimeoutMillis = intProperty(properties, PROPERTY_IDLE_TIMEOUT_MILLIS, 30_000, 0);
+    this.outputBufferSize = intProperty(properties, PROPERTY_OUTPUT_BUFFER_SIZE, 32 * 1024, 1);
+    this.requestHeaderSize = intProperty(properties, PROPERTY_REQUEST_HEADER_SIZE, 8 * 1024, 1);
+    this.responseHeaderSize = intProperty(properties, PROPERTY_RESPONSE_HEADER_SIZE, 8 * 1024, 1);
+    this.h2c = Boolean.parseBoolean(properties.getOrDefault(PROPERTY_H2C, "false").trim());
+    this.h2cMaxConcurrentStreams = intProperty(properties, PROPERTY_H2C_MAX_CONCURRENT_STREAMS, -1, 1);
+    this.h2cStreamWindow = intProperty(properties, PROPERTY_H2C_STREAM_WINDOW, -1, 65535);
+    this.h2cSessionWindow = intProperty(properties, PROPERTY_H2C_SESSION_WINDOW, -1, 65535);
+    this.unixSocket = properties.get(PROPERTY_UNIX_SOCKET);
+    this.unixSocketOnly = Boolean.parseBoolean(properties.getOrDefault(PROPERTY_UNIX_SOCKET_ONLY, "false").trim());
+    this.adminPort = intProperty(properties, PROPERTY_ADMIN_PORT, -1, 0);
+    this.adminAddress = properties.getOrDefault(PROPERTY_ADMIN_ADDRESS, "127.0.0.1");
+    this.adminThreads = intProperty(properties, PROPERTY_ADMIN_THREADS, 4, 3);
+    if (unixSocketOnly && unixSocket == null) {
+      throw new IllegalArgumentException(PROPERTY_UNIX_SOCKET_ONLY + " requires " + PROPERTY_UNIX_SOCKET);
+    }
+    if (minThreads > maxThreads) {
+      throw new IllegalArgumentException("Invalid server threads min/max: " + minThreads + "/" + maxThreads);
+    }
+  }
+
+  public static ServerSettings fromProperties(final Map<String, String> properties) {
+    return new ServerSettings(properties);
+  }
+
+  /**
+   * Build the server thread pool.
+   *
+   * @param queue The job queue or null for the default queue
+   */
+  public QueuedThreadPool buildThreadPool(final BlockingQueue<Runnable> queue) {
+    final QueuedThreadPool threadPool = queue == null ?
+        new QueuedThreadPool(maxThreads, minThreads, threadIdleTimeoutMillis) :
+        new QueuedThreadPool(maxThreads, minThreads, threadIdleTimeoutMillis, queue);
+    threadPool.setReservedThreads(reservedThreads);
+    return threadPool;
+  }
+
+  public boolean isH2c() {
+    return h2c;
+  }
+
+  /**
+   * True if the TCP connector should be used.
+   */
+  public boolean isTcp() {
+    return !unixSocketOnly;
+  }
+
+  public void configure(final HttpConfiguration httpConfiguration) {
+    httpConfiguration.setOutputBufferSize(outputBufferSize);
+    httpConfiguration.setRequestHeaderSize(requestHeaderSize);
+    httpConfiguration.setResponseHeaderSize(responseHeaderSize);
+  }
+
+  /**
+   * Build connection factories for the configuration, HTTP/1.1 is first so
+   * it is the default protocol for the connector.
+   */
+  public ConnectionFactory[] buildConnectionFactories(final HttpConfiguration httpConfiguration) {
+    final HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfiguration);
+    if (!h2c) {
+      return new ConnectionFactory[]{ http1 };
+    }
+    final HTTP2CServerConnectionFactory http2c = new HTTP2CServerConnectionFactory(httpConfiguration);
+    if (h2cMaxConcurrentStreams > 0) {
+      http2c.setMaxConcurrentStreams(h2cMaxConcurrentStreams);
+    }
+    if (h2cStreamWindow > 0) {
+      http2c.setInitialStreamRecvWindow(h2cStreamWindow);
+    }
+    if (h2cSessionWindow > 0) {
+      http2c.setInitialSessionRecvWindow(h2cSessionWindow);
+    }
+    return new ConnectionFactory[]{ http1, http2c };
+  }
+
+  public ServerConnector buildConnector(final Server server, final ConnectionFactory... connectionFactories) {
+    final ServerConnector connector = new ServerConnector(server, acceptors, selectors, connectionFactories);
+    connector.setAcceptQueueSize(acceptQueueSize);
+    connector.setIdleTimeout(idleTimeoutMillis);
+    return connector;
+  }
+
+  /**
+   * Build a Unix domain socket connector, any stale socket file is removed.
+   *
+   * @return The connector or null if not configured
+   */
+  public UnixSocketConnector buildUnixSocketConnector(
+      final Server server,
+      final ConnectionFactory... connectionFactories
+  ) throws IOException {
+    if (unixSocket == null) {
+      return null;
+    }
+    Files.deleteIfExists(Paths.get(unixSocket));
+    final UnixSocketConnector connector = new UnixSocketConnector(server, selectors, connectionFactories);
+    connector.setUnixSocket(unixSocket);
+    connector.setAcceptQueueSize(acceptQueueSize);
+    connector.setIdleTimeout(idleTimeoutMillis);
+    return connector;
+  }
+
+  /**
+   * Build the admin server with a connector using a single acceptor and
+   * selector.
+   *
+   * @return The server or null if there is no admin port
+   */
+  public Server buildAdminServer() {
+    if (adminPort < 0) {
+      return null;
+    }
+    final QueuedThreadPool threadPool = new QueuedThreadPool(adminThreads, Math.min(3, adminThreads));
+    threadPool.setName("admin");
+    threadPool.setReservedThreads(0);
+    final Server adminServer = new Server(threadPool);
+    final ServerConnector connector = new ServerConnector(adminServer, 1, 1);
+    connector.setHost(adminAddress);
+    connector.setPort(adminPort);
+    connector.setIdleTimeout(idleTimeoutMillis);
+    adminServer.addConnector(connector);
+    return adminServer;
+  }
+
+  @Override
+  public String toString() {
+    return "threads " + minThreads + "-" + maxThreads +
+        " (reserved " + reservedThreads + ", idle " + threadIdleTimeoutMillis + "ms)" +
+        ", acceptors " + acceptors +
+        ", selectors " + selectors +
+        ", accept queue " + acceptQueueSize +
+        ", idle timeout " + idleTimeoutMillis + "ms" +
+        ", output buffer " + outputBufferSize +
+        ", header sizes " + requestHeaderSize + "/" + responseHeaderSize +
+        (h2c ? ", h2c streams " + h2cMaxConcurrentStreams +
+            " windows " + h2cStreamWindow + "/" + h2cSessionWindow : "") +
+        (unixSocket != null ? ", unix socket " + unixSocket + (unixSocketOnly ? " only" : "") : "") +
+        (adminPort >= 0 ? ", admin " + adminAddress + ":" + adminPort + " threads " + adminThreads : "");
+  }
+
+  private static int intProperty(
+      final Map<String, String> properties,
+      final String name,
+      final int defaultValue,
+      final int minValue
+  ) {
+    final String value = properties.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    final int intValue;
+    try {
+      intValue = Integer.parseInt(value.trim());
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+    }
+    if (intValue < minValue) {
+      throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+    }
+    return intValue;
+  }
+}
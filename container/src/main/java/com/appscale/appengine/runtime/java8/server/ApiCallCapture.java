@@ -0,0 +1,232 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ * Captures sampled API calls to rotating binary files for replay.
+ *
+ * Calls are written by a single background thread, calls are dropped rather
+ * than delaying the API path when the writer falls behind.
+ *
+ * File names end with a sequence number that continues from existing files
+ * in the directory, the files with the lowest sequence are deleted first.
+ *
+ * @see ApiCallRecord
+ */
+public class ApiCallCapture implements ApiCallListener {
+  public static final String PROPERTY_DIRECTORY = "appscale.api.capture.dir";
+  public static final String PROPERTY_SAMPLE_RATE = "appscale.api.capture.sample_rate";
+  public static final String PROPERTY_MAX_FILE_BYTES = "appscale.api.capture.max_file_bytes";
+  public static final String PROPERTY_MAX_FILES = "appscale.api.capture.max_files";
+
+  private static final Logger logger = Logger.getLogger(ApiCallCapture.class.getName());
+  private static final String FILE_PREFIX = "api-capture-";
+  private static final String FILE_SUFFIX = ".bin";
+  private static final int QUEUE_CAPACITY = 1024;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File directory;
+  private final double sampleRate;
+  private final long maxFileBytes;
+  private final int maxFiles;
+  private final ThreadPoolExecutor writer;
+  private final LongAdder captured = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private DataOutputStream out;
+  private long fileSequence;
+
+  public ApiCallCapture(
+      final File directory,
+      final double sampleRate,
+      final long maxFileBytes,
+      final int maxFiles
+  ) {
+    if (sampleRate <= 0.0 || sampleRate > 1.0) {
+      throw new IllegalArgumentException("Sample rate must be in (0, 1]: " + sampleRate);
+    }
+    if (maxFiles < 1) {
+      throw new IllegalArgumentException("Max files must be positive: " + maxFiles);
+    }
+    this.directory = directory;
+    this.sampleRate = sampleRate;
+    this.maxFileBytes = maxFileBytes;
+    this.maxFiles = maxFiles;
+    this.fileSequence = nextFileSequence(directory);
+    this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+        runnable -> {
+          final Thread thread = new Thread(runnable, "api-call-capture");
+          thread.setDaemon(true);
+          return thread;
+        },
+        (runnable, executor) -> dropped.increment());
+  }
+
+  /**
+   * Create a capture if enabled by the given properties.
+   *
+   * @return The capture or null if not enabled
+   */
+  public static ApiCallCapture fromProperties(final Map<String, String> properties) {
+    final String directory = properties.get(PROPERTY_DIRECTORY);
+    if (directory == null || directory.trim().isEmpty()) {
+      return null;
+    }
+    final File captureDirectory = new File(directory.trim());
+    if (!captureDirectory.isDirectory() && !captureDirectory.mkdirs()) {
+      logger.warning("API capture disabled, unable to create directory " + captureDirectory);
+      return null;
+    }
+    return new ApiCallCapture(
+        captureDirectory,
+        Double.parseDouble(properties.getOrDefault(PROPERTY_SAMPLE_RATE, "1.0")),
+        Long.parseLong(properties.getOrDefault(PROPERTY_MAX_FILE_BYTES, String.valueOf(64L * 1024 * 1024))),
+        Integer.parseInt(properties.getOrDefault(PROPERTY_MAX_FILES, "4")));
+  }
+
+  @Override
+  public void onCallComplete(
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes,
+      final byte[] responseBytes,
+      final Throwable error,
+      final long durationNanos
+  ) {
+    if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return;
+    }
+    final long latencyMicros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+    final ApiCallRecord record = new ApiCallRecord(
+        System.currentTimeMillis() - TimeUnit.MICROSECONDS.toMillis(latencyMicros),
+        (int) Math.min(Integer.MAX_VALUE, latencyMicros),
+        packageName,
+        methodName,
+        requestBytes,
+        error == null ? responseBytes : null);
+    writer.execute(() -> write(record));
+  }
+
+  public long getCaptured() {
+    return captured.sum();
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Stop capturing, pending calls are written before the file is closed.
+   */
+  public void close() {
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+        logger.warning("Timed out writing pending API calls");
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    closeFile();
+    logger.info("API capture closed, captured " + getCaptured() + " calls, dropped " + getDropped());
+  }
+
+  private void write(final ApiCallRecord record) {
+    try {
+      if (out == null || out.size() >= maxFileBytes) {
+        rotate();
+      }
+      record.write(out);
+      captured.increment();
+    } catch (final IOException e) {
+      dropped.increment();
+      logger.log(Level.WARNING, "Error writing API capture", e);
+      closeFile();
+    }
+  }
+
+  private void rotate() throws IOException {
+    closeFile();
+    final String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    final File file = new File(directory, FILE_PREFIX + timestamp + "-" + (fileSequence++) + FILE_SUFFIX);
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    ApiCallRecord.writeHeader(out);
+    deleteOldFiles();
+  }
+
+  private void closeFile() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (final IOException e) {
+        logger.log(Level.WARNING, "Error closing API capture", e);
+      }
+      out = null;
+    }
+  }
+
+  private void deleteOldFiles() {
+    final File[] files = listFiles(directory);
+    if (files != null && files.length > maxFiles) {
+      // modification times can tie on coarse grained file systems
+      Arrays.sort(files, Comparator.comparingLong(ApiCallCapture::fileSequence));
+      for (int i = 0; i < files.length - maxFiles; i++) {
+        if (!files[i].delete()) {
+          logger.warning("Unable to delete API capture " + files[i]);
+        }
+      }
+    }
+  }
+
+  private static File[] listFiles(final File directory) {
+    return directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+  }
+
+  private static long nextFileSequence(final File directory) {
+    long sequence = 0L;
+    final File[] files = listFiles(directory);
+    if (files != null) {
+      for (final File file : files) {
+        sequence = Math.max(sequence, fileSequence(file) + 1);
+      }
+    }
+    return sequence;
+  }
+
+  /**
+   * The sequence number from the file name, or -1 if not present.
+   */
+  static long fileSequence(final File file) {
+    final String name = file.getName();
+    final int start = name.lastIndexOf('-') + 1;
+    final int end = name.length() - FILE_SUFFIX.length();
+    try {
+      return start > 0 && end > start ? Long.parseLong(name.substring(start, end)) : -1L;
+    } catch (final NumberFormatException e) {
+      return -1L;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ * Observer for API calls dispatched by AppScaleApiProxyLocal.
+ *
+ * Listeners are invoked inline on the API path so must be cheap and must not
+ * modify the request or response bytes.
+ */
+public interface ApiCallListener {
+
+  /**
+   * Invoked on the calling thread before the call is dispatched.
+   */
+  default void onCallStart(
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes
+  ) {
+  }
+
+  /**
+   * Invoked on the API thread when the call completes.
+   *
+   * @param responseBytes The response or null if the call failed
+   * @param error The failure or null if the call succeeded
+   * @param durationNanos Time taken for the call
+   */
+  default void onCallComplete(
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes,
+      final byte[] responseBytes,
+      final Throwable error,
+      final long durationNanos
+  ) {
+  }
+}
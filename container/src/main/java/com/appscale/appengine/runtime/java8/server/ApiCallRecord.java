@@ -0,0 +1,150 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A captured API call.
+ *
+ * Capture files start with a header followed by records:
+ *
+ * <pre>
+ *   header:  magic "ASAPICAP" (8 bytes), version (int)
+ *   record:  timestamp millis (long), latency micros (int),
+ *            package (utf), method (utf),
+ *            request length (int), request bytes,
+ *            response length (int, -1 for failed calls), response bytes
+ * </pre>
+ */
+public final class ApiCallRecord {
+  private static final byte[] MAGIC = {'A', 'S', 'A', 'P', 'I', 'C', 'A', 'P'};
+  private static final int VERSION = 1;
+
+  private final long timestampMillis;
+  private final int latencyMicros;
+  private final String packageName;
+  private final String methodName;
+  private final byte[] requestBytes;
+  private final byte[] responseBytes;
+
+  public ApiCallRecord(
+      final long timestampMillis,
+      final int latencyMicros,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes,
+      final byte[] responseBytes
+  ) {
+    this.timestampMillis = timestampMillis;
+    this.latencyMicros = latencyMicros;
+    this.packageName = packageName;
+    this.methodName = methodName;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+  }
+
+  public static void writeHeader(final DataOutputStream out) throws IOException {
+    out.write(MAGIC);
+    out.writeInt(VERSION);
+  }
+
+  /**
+   * Read and verify the file header.
+   *
+   * @throws IOException If the header is missing or not supported
+   */
+  public static void readHeader(final DataInputStream in) throws IOException {
+    final byte[] magic = new byte[MAGIC.length];
+    in.readFully(magic);
+    if (!Arrays.equals(MAGIC, magic)) {
+      throw new IOException("Not an API capture file");
+    }
+    final int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported API capture version " + version);
+    }
+  }
+
+  /**
+   * Read the next record.
+   *
+   * @return The record or null at the end of the stream
+   */
+  public static ApiCallRecord read(final DataInputStream in) throws IOException {
+    final long timestampMillis;
+    try {
+      timestampMillis = in.readLong();
+    } catch (final EOFException e) {
+      return null;
+    }
+    final int latencyMicros = in.readInt();
+    final String packageName = in.readUTF();
+    final String methodName = in.readUTF();
+    final byte[] requestBytes = readBytes(in);
+    final byte[] responseBytes = readBytes(in);
+    return new ApiCallRecord(timestampMillis, latencyMicros, packageName, methodName, requestBytes, responseBytes);
+  }
+
+  public void write(final DataOutputStream out) throws IOException {
+    out.writeLong(timestampMillis);
+    out.writeInt(latencyMicros);
+    out.writeUTF(packageName);
+    out.writeUTF(methodName);
+    writeBytes(out, requestBytes);
+    writeBytes(out, responseBytes);
+  }
+
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+
+  public int getLatencyMicros() {
+    return latencyMicros;
+  }
+
+  public String getPackageName() {
+    return packageName;
+  }
+
+  public String getMethodName() {
+    return methodName;
+  }
+
+  public byte[] getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * The response, or null if the call failed.
+   */
+  public byte[] getResponseBytes() {
+    return responseBytes;
+  }
+
+  private static byte[] readBytes(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+    if (bytes == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+}
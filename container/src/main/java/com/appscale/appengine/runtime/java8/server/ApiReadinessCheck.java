@@ -0,0 +1,78 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import com.appscale.appengine.runtime.java8.util.Readiness.ReadinessCheck;
+import com.appscale.appengine.runtime.java8.util.Readiness.Status;
+
+/**
+ * Readiness check for API server calls since the previous check.
+ *
+ * Only transport and RPC errors are counted, application errors such as
+ * datastore collisions are failures of the application rather than of the
+ * API server. The instance is unready if the error rate is high over enough
+ * calls, and degraded if some calls failed or calls are slow.
+ */
+class ApiReadinessCheck implements ReadinessCheck {
+  private static final double DEGRADED_ERROR_RATIO = 0.1;
+  private static final double UNREADY_ERROR_RATIO = 0.5;
+  private static final double DEGRADED_MEAN_SECONDS = 1.0;
+  private static final long UNREADY_MIN_CALLS = 5L;
+
+  private final LongSupplier callsSupplier;
+  private final LongSupplier errorsSupplier;
+  private final DoubleSupplier callSecondsSupplier;
+  private long lastCalls;
+  private long lastErrors;
+  private double lastCallSeconds;
+
+  ApiReadinessCheck(final AppScaleApiClient apiClient) {
+    this(apiClient::getCalls, apiClient::getErrors, apiClient::getCallSeconds);
+  }
+
+  ApiReadinessCheck(
+      final LongSupplier callsSupplier,
+      final LongSupplier errorsSupplier,
+      final DoubleSupplier callSecondsSupplier
+  ) {
+    this.callsSupplier = callsSupplier;
+    this.errorsSupplier = errorsSupplier;
+    this.callSecondsSupplier = callSecondsSupplier;
+    this.lastCalls = callsSupplier.getAsLong();
+    this.lastErrors = errorsSupplier.getAsLong();
+    this.lastCallSeconds = callSecondsSupplier.getAsDouble();
+  }
+
+  @Override
+  public String getName() {
+    return "api";
+  }
+
+  @Override
+  public Status check() {
+    final long nowCalls = callsSupplier.getAsLong();
+    final long nowErrors = errorsSupplier.getAsLong();
+    final double nowCallSeconds = callSecondsSupplier.getAsDouble();
+    final long calls = nowCalls - lastCalls;
+    final long errors = nowErrors - lastErrors;
+    final double callSeconds = nowCallSeconds - lastCallSeconds;
+    lastCalls = nowCalls;
+    lastErrors = nowErrors;
+    lastCallSeconds = nowCallSeconds;
+    if (calls <= 0L) {
+      return Status.READY;
+    }
+    final double errorRatio = errors / (double) calls;
+    if (calls >= UNREADY_MIN_CALLS && errorRatio >= UNREADY_ERROR_RATIO) {
+      return Status.UNREADY;
+    } else if (errorRatio >= DEGRADED_ERROR_RATIO || callSeconds / calls >= DEGRADED_MEAN_SECONDS) {
+      return Status.DEGRADED;
+    }
+    return Status.READY;
+  }
+}
@@ -9,17 +9,20 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import com.appscale.appengine.runtime.java8.util.Histogram;
+import com.appscale.appengine.runtime.java8.util.MetricsWriter;
 import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
 import com.google.appengine.repackaged.com.google.net.util.proto2api.Status.StatusProto;
 import com.google.appengine.repackaged.org.apache.http.HttpResponse;
 import com.google.appengine.repackaged.org.apache.http.StatusLine;
 import com.google.appengine.repackaged.org.apache.http.client.HttpResponseException;
 import com.google.appengine.repackaged.org.apache.http.client.methods.HttpPost;
-import com.google.appengine.repackaged.org.apache.http.conn.HttpClientConnectionManager;
 import com.google.appengine.repackaged.org.apache.http.entity.ByteArrayEntity;
 import com.google.appengine.repackaged.org.apache.http.impl.client.CloseableHttpClient;
 import com.google.appengine.repackaged.org.apache.http.impl.client.HttpClientBuilder;
 import com.google.appengine.repackaged.org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import com.google.appengine.repackaged.org.apache.http.pool.PoolStats;
 import com.google.appengine.tools.development.ApiUtils;
 import com.google.appengine.tools.development.DevSocketImplFactory;
 import com.google.apphosting.utils.remoteapi.RemoteApiPb.Request;
@@ -35,12 +38,17 @@ public class AppScaleApiClient {
   private static final int CONNECTION_TTL_SECS = 8;
 
   private final int port;
+  private final PoolingHttpClientConnectionManager connectionManager = connectionManager();
   private final CloseableHttpClient httpClient = HttpClientBuilder.create()
       .disableRedirectHandling()
-      .setConnectionManager(connectionManager())
+      .setConnectionManager(connectionManager)
       .build();
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder applicationErrors = new LongAdder();
+  private final Histogram callDuration = Histogram.latency();
 
-  private static HttpClientConnectionManager connectionManager() {
+  private static PoolingHttpClientConnectionManager connectionManager() {
     final PoolingHttpClientConnectionManager cm =
         new PoolingHttpClientConnectionManager(CONNECTION_TTL_SECS, TimeUnit.SECONDS);
     cm.setMaxTotal(MAX_CONNECTIONS);
@@ -57,6 +65,79 @@ public class AppScaleApiClient {
       final String packageName,
       final String methodName,
       final byte[] requestBytes
+  ) throws IOException {
+    final long startNanos = System.nanoTime();
+    boolean failed = true;
+    try {
+      final Response response = call(packageName, methodName, requestBytes);
+      if (response.hasApplicationError()) {
+        failed = false;
+        applicationErrors.increment();
+        throw ApiProxyUtils.getRpcError(packageName, methodName, StatusProto.getDefaultInstance(),
+            response.getApplicationError().getCode(), response.getApplicationError().getDetail(), null);
+      } else if (response.hasRpcError()) {
+        throw ApiProxyUtils.getRpcError(packageName, methodName, StatusProto.getDefaultInstance(),
+            response.getRpcError().getCode(), response.getRpcError().getDetail(), null);
+      }
+      failed = false;
+      return response.getResponseAsBytes();
+    } finally {
+      callDuration.recordNanos(System.nanoTime() - startNanos);
+      calls.increment();
+      if (failed) {
+        errors.increment();
+      }
+    }
+  }
+
+  public long getCalls() {
+    return calls.sum();
+  }
+
+  /**
+   * Calls that failed in transport or with an RPC error from the API server.
+   */
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  /**
+   * Calls that completed with an application error, such as a datastore
+   * transaction collision.
+   */
+  public long getApplicationErrors() {
+    return applicationErrors.sum();
+  }
+
+  /**
+   * The total duration of calls in seconds.
+   */
+  public double getCallSeconds() {
+    return callDuration.getSumSeconds();
+  }
+
+  /**
+   * Write call and connection pool metrics.
+   */
+  public void collect(final MetricsWriter out) {
+    out.counter("appscale_api_client_calls_total", "API server calls", calls.sum());
+    out.counter("appscale_api_client_errors_total", "API server calls failed", errors.sum());
+    out.counter("appscale_api_client_application_errors_total", "API server calls with application errors",
+        applicationErrors.sum());
+    out.histogram("appscale_api_client_call_duration_seconds", "API server call duration", callDuration);
+    final PoolStats poolStats = connectionManager.getTotalStats();
+    out.gauge("appscale_api_client_connections_leased", "API server connections in use", poolStats.getLeased());
+    out.gauge("appscale_api_client_connections_available", "API server connections idle",
+        poolStats.getAvailable());
+    out.gauge("appscale_api_client_connections_pending", "API server connection requests waiting",
+        poolStats.getPending());
+    out.gauge("appscale_api_client_connections_max", "API server connection limit", poolStats.getMax());
+  }
+
+  private Response call(
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes
   ) throws IOException {
     final Request remoteApiRequest = new Request();
     remoteApiRequest.setServiceName(packageName);
@@ -97,15 +178,8 @@ public class AppScaleApiClient {
     final boolean responseInputStream = response.mergeFrom(bout.toByteArray());
     if (!responseInputStream) {
       throw new IOException("Error parsing the response from the HTTP API server.");
-    } else if (response.hasApplicationError()) {
-      throw ApiProxyUtils.getRpcError(packageName, methodName, StatusProto.getDefaultInstance(),
-          response.getApplicationError().getCode(), response.getApplicationError().getDetail(), null);
-    } else if (response.hasRpcError()) {
-      throw ApiProxyUtils.getRpcError(packageName, methodName, StatusProto.getDefaultInstance(),
-          response.getRpcError().getCode(), response.getRpcError().getDetail(), null);
-    } else {
-      return response.getResponseAsBytes();
     }
+    return response;
   }
 
   public void shutdown() {
@@ -20,16 +20,23 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import com.appscale.appengine.runtime.java8.util.ApiCallTracker;
+import com.appscale.appengine.runtime.java8.util.Metrics.MetricsProvider;
+import com.appscale.appengine.runtime.java8.util.MetricsWriter;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
 import com.google.appengine.api.capabilities.CapabilityStatus;
 import com.google.appengine.repackaged.com.google.common.collect.Sets;
 import com.google.appengine.tools.development.ApiProxyLocal;
@@ -65,7 +72,9 @@ public class AppScaleApiProxyLocal implements ApiProxyLocal, DevServices {
   private final Map<String, LocalRpcService> serviceCache = new ConcurrentHashMap<>();
   private final Map<String, Method> methodCache = new ConcurrentHashMap<>();
   private final Map<String, String> properties = new HashMap<>();
-  private final ExecutorService apiExecutor = Executors.newCachedThreadPool(
+  private final List<ApiCallListener> apiCallListeners = new CopyOnWriteArrayList<>();
+  private final ThreadPoolExecutor apiExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+      60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
       new AppScaleApiProxyLocal.DaemonThreadFactory(Executors.defaultThreadFactory()));
   private final LocalServiceContext context;
   private final Set<String> apisUsingPythonStubs;
@@ -128,35 +137,57 @@ public class AppScaleApiProxyLocal implements ApiProxyLocal, DevServices {
       final byte[] requestBytes,
       final ApiConfig apiConfig
   ) {
-    final Semaphore semaphore = (Semaphore)environment.getAttributes().get("com.google.appengine.tools.development.api_call_semaphore");
-    if (semaphore != null) {
+    final Object tracker = environment.getAttributes().get(RuntimeEnvironment.ATTR_API_CALL_TRACKER.getName());
+    final ApiCallTracker apiCallTracker = tracker instanceof ApiCallTracker ? (ApiCallTracker) tracker : null;
+
+    final boolean apiCallShouldUsePythonStub = this.apisUsingPythonStubs.contains(packageName);
+    final AppScaleApiProxyLocal.AsyncApiCall asyncApiCall =
+        new AppScaleApiProxyLocal.AsyncApiCall(environment, packageName, methodName,
+                                               requestBytes, apiCallTracker, apiCallShouldUsePythonStub);
+    final FutureTask<byte[]> task = new FutureTask<byte[]>(Executors.privilegedCallable(asyncApiCall)) {
+      @Override
+      protected void done() {
+        if (isCancelled()) {
+          asyncApiCall.cancelled();
+        }
+      }
+    };
+    asyncApiCall.task = task;
+    if (apiCallTracker != null) {
       try {
-        semaphore.acquire();
+        apiCallTracker.acquire(task);
       } catch (InterruptedException e) {
-        throw new RuntimeException("Interrupted while waiting on semaphore:", e);
+        throw new RuntimeException("Interrupted while waiting on API call limit:", e);
       }
     }
 
-    final boolean apiCallShouldUsePythonStub = this.apisUsingPythonStubs.contains(packageName);
-    final AppScaleApiProxyLocal.AsyncApiCall asyncApiCall =
-        new AppScaleApiProxyLocal.AsyncApiCall(environment, packageName, methodName,
-                                               requestBytes, semaphore, apiCallShouldUsePythonStub);
+    this.fireCallStart(environment, packageName, methodName, requestBytes);
 
     final Future<byte[]>  callFuture;
     boolean success = false;
     try {
-      final Callable<byte[]> callable = Executors.privilegedCallable(asyncApiCall);
-      callFuture = AccessController.doPrivileged(new PrivilegedApiAction(callable, asyncApiCall));
+      callFuture = AccessController.doPrivileged(new PrivilegedApiAction(task, asyncApiCall));
       success = true;
+    } catch (final RuntimeException | Error e) {
+      this.fireCallComplete(environment, packageName, methodName, requestBytes, null, e, 0L);
+      throw e;
     } finally {
       if (!success) {
-        asyncApiCall.tryReleaseSemaphore();
+        asyncApiCall.release();
       }
     }
 
     return callFuture;
   }
 
+  public void addApiCallListener(final ApiCallListener listener) {
+    this.apiCallListeners.add(listener);
+  }
+
+  public void removeApiCallListener(final ApiCallListener listener) {
+    this.apiCallListeners.remove(listener);
+  }
+
   public List<Thread> getRequestThreads(final Environment environment) {
     return Collections.singletonList(Thread.currentThread());
   }
@@ -255,6 +286,40 @@ public class AppScaleApiProxyLocal implements ApiProxyLocal, DevServices {
     return service;
   }
 
+  private void fireCallStart(
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes
+  ) {
+    for (final ApiCallListener listener : this.apiCallListeners) {
+      try {
+        listener.onCallStart(environment, packageName, methodName, requestBytes);
+      } catch (final RuntimeException e) {
+        logger.log(Level.WARNING, "Error notifying API call listener of type " + listener.getClass(), e);
+      }
+    }
+  }
+
+  private void fireCallComplete(
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes,
+      final byte[] responseBytes,
+      final Throwable error,
+      final long durationNanos
+  ) {
+    for (final ApiCallListener listener : this.apiCallListeners) {
+      try {
+        listener.onCallComplete(
+            environment, packageName, methodName, requestBytes, responseBytes, error, durationNanos);
+      } catch (final RuntimeException e) {
+        logger.log(Level.WARNING, "Error notifying API call listener of type " + listener.getClass(), e);
+      }
+    }
+  }
+
   private static Level toJavaLevel(com.google.apphosting.api.ApiProxy.LogRecord.Level apiProxyLevel) {
     switch(apiProxyLevel) {
       case debug:
@@ -279,6 +344,43 @@ public class AppScaleApiProxyLocal implements ApiProxyLocal, DevServices {
   public void setClock(Clock clock) {
   }
 
+  /**
+   * The number of API calls being made by the executor.
+   */
+  public int getActiveCalls() {
+    return apiExecutor.getActiveCount();
+  }
+
+  /**
+   * Metrics for the API executor, API server client and request end handling.
+   */
+  public MetricsProvider getMetricsProvider() {
+    return new MetricsProvider() {
+      @Override
+      public String getName() {
+        return "api";
+      }
+
+      @Override
+      public void collect(final MetricsWriter out) {
+        out.gauge("appscale_api_executor_threads", "API executor threads", apiExecutor.getPoolSize());
+        out.gauge("appscale_api_executor_threads_active", "API executor threads running calls",
+            apiExecutor.getActiveCount());
+        out.gauge("appscale_api_executor_threads_largest", "API executor largest thread count",
+            apiExecutor.getLargestPoolSize());
+        out.counter("appscale_api_executor_completed_total", "API executor calls completed",
+            apiExecutor.getCompletedTaskCount());
+        out.counter("appscale_api_calls_cancelled_total", "API calls cancelled at request end",
+            ApiCallTracker.getCancelledCalls());
+        out.counter("appscale_api_request_end_timeouts_total",
+            "Requests ending with API calls in-flight after the grace period", ApiCallTracker.getGraceTimeouts());
+        if (apiClient != null) {
+          apiClient.collect(out);
+        }
+      }
+    };
+  }
+
   private static class DaemonThreadFactory implements ThreadFactory {
     private final ThreadFactory parent;
 
@@ -298,25 +400,37 @@ public class AppScaleApiProxyLocal implements ApiProxyLocal, DevServices {
     private final String packageName;
     private final String methodName;
     private final byte[] requestBytes;
-    private final Semaphore semaphore;
-    private boolean released;
+    private final ApiCallTracker apiCallTracker;
     private final boolean apiCallShouldUsePythonStub;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private Future<byte[]> task;
 
-    public AsyncApiCall(Environment environment, String packageName, String methodName, byte[] requestBytes, Semaphore semaphore, boolean apiCallShouldUsePythonStub) {
+    public AsyncApiCall(Environment environment, String packageName, String methodName, byte[] requestBytes, ApiCallTracker apiCallTracker, boolean apiCallShouldUsePythonStub) {
       this.environment = environment;
       this.packageName = packageName;
       this.methodName = methodName;
       this.requestBytes = requestBytes;
-      this.semaphore = semaphore;
+      this.apiCallTracker = apiCallTracker;
       this.apiCallShouldUsePythonStub = apiCallShouldUsePythonStub;
     }
 
     public byte[] call() {
-      byte[] callResult;
+      if (!this.started.compareAndSet(false, true)) {
+        // cancelled before starting, completion was already notified
+        throw new CancellationException("API call cancelled");
+      }
+      final long startNanos = System.nanoTime();
+      byte[] callResult = null;
+      Throwable error = null;
       try {
         callResult = this.callInternal();
+      } catch (final RuntimeException | Error e) {
+        error = e;
+        throw e;
       } finally {
-        this.tryReleaseSemaphore();
+        AppScaleApiProxyLocal.this.fireCallComplete(this.environment, this.packageName, this.methodName,
+            this.requestBytes, callResult, error, System.nanoTime() - startNanos);
+        this.release();
       }
 
       return callResult;
@@ -385,30 +499,40 @@ public class AppScaleApiProxyLocal implements ApiProxyLocal, DevServices {
       return AppScaleApiProxyLocal.this.apiClient.makeSyncCall(packageName, methodName, requestBytes);
     }
 
-    synchronized void tryReleaseSemaphore() {
-      if (!this.released && this.semaphore != null) {
-        this.semaphore.release();
-        this.released = true;
+    /**
+     * Notify listeners that the call completed if it was cancelled before
+     * starting, a started call notifies when it completes.
+     */
+    void cancelled() {
+      if (this.started.compareAndSet(false, true)) {
+        AppScaleApiProxyLocal.this.fireCallComplete(this.environment, this.packageName, this.methodName,
+            this.requestBytes, null, new CancellationException("API call cancelled"), 0L);
       }
+    }
 
+    void release() {
+      if (this.apiCallTracker != null) {
+        this.apiCallTracker.release(this.task);
+      }
     }
   }
 
   private class PrivilegedApiAction implements PrivilegedAction<Future<byte[]>> {
-    private final Callable<byte[]> callable;
+    private final FutureTask<byte[]> task;
     private final AppScaleApiProxyLocal.AsyncApiCall asyncApiCall;
 
-    PrivilegedApiAction(Callable<byte[]> callable, AppScaleApiProxyLocal.AsyncApiCall asyncApiCall) {
-      this.callable = callable;
+    PrivilegedApiAction(FutureTask<byte[]> task, AppScaleApiProxyLocal.AsyncApiCall asyncApiCall) {
+      this.task = task;
       this.asyncApiCall = asyncApiCall;
     }
 
     public Future<byte[]> run() {
-      final Future<byte[]> result = AppScaleApiProxyLocal.this.apiExecutor.submit(this.callable);
+      AppScaleApiProxyLocal.this.apiExecutor.execute(this.task);
+      final Future<byte[]> result = this.task;
       return new Future<byte[]>() {
         public boolean cancel(final boolean mayInterruptIfRunning) {
           return AccessController.doPrivileged((PrivilegedAction<Boolean>) () -> {
-            PrivilegedApiAction.this.asyncApiCall.tryReleaseSemaphore();
+            PrivilegedApiAction.this.asyncApiCall.release();
             return result.cancel(mayInterruptIfRunning);
           });
         }
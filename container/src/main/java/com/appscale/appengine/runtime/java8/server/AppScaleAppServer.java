@@ -26,6 +26,12 @@ import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import com.appscale.appengine.runtime.java8.util.BackgroundThreads;
+import com.appscale.appengine.runtime.java8.util.Diagnostics;
+import com.appscale.appengine.runtime.java8.util.GcReadinessCheck;
+import com.appscale.appengine.runtime.java8.util.JvmMetrics;
+import com.appscale.appengine.runtime.java8.util.Metrics;
+import com.appscale.appengine.runtime.java8.util.Readiness;
 import com.google.appengine.repackaged.com.google.common.base.Joiner;
 import com.google.appengine.repackaged.com.google.common.base.Splitter;
 import com.google.appengine.repackaged.com.google.common.collect.ImmutableMap;
@@ -62,6 +68,7 @@ public class AppScaleAppServer implements DevAppServer {
   private ServerState serverState;
   private AppScaleApiClient apiClient;
   private ApiProxyLocal apiProxyLocal;
+  private ApiCallCapture apiCallCapture;
   private CountDownLatch shutdownLatch;
 
   public AppScaleAppServer(
@@ -151,7 +158,22 @@ public class AppScaleAppServer implements DevAppServer {
 
         this.apiClient = new AppScaleApiClient(Integer.parseInt(
             this.serviceProperties.getOrDefault("appengine.pythonApiServerPort", "8081")));
-        this.apiProxyLocal = new AppScaleApiProxyLocal(this.modules.getLocalServerEnvironment(), apisUsingPythonStubs, apiClient);
+        final AppScaleApiProxyLocal appScaleApiProxyLocal =
+            new AppScaleApiProxyLocal(this.modules.getLocalServerEnvironment(), apisUsingPythonStubs, apiClient);
+        this.configureApiCallListeners(appScaleApiProxyLocal);
+        this.modules.setActiveApiCalls(appScaleApiProxyLocal::getActiveCalls);
+        Metrics.register(appScaleApiProxyLocal.getMetricsProvider());
+        Metrics.register(new JvmMetrics());
+        final BackgroundThreads backgroundThreads = BackgroundThreads.get();
+        backgroundThreads.configure(this.serviceProperties);
+        Metrics.register(backgroundThreads);
+        Diagnostics.register(backgroundThreads);
+        final Readiness readiness = Readiness.get();
+        readiness.configure(this.serviceProperties);
+        readiness.register(new ApiReadinessCheck(apiClient));
+        readiness.register(new GcReadinessCheck());
+        Diagnostics.register(readiness);
+        this.apiProxyLocal = appScaleApiProxyLocal;
         this.setInboundServicesProperty();
         this.apiProxyLocal.setProperties(this.serviceProperties);
         ApiProxy.setDelegate(this.apiProxyLocal);
@@ -171,11 +193,30 @@ public class AppScaleAppServer implements DevAppServer {
 
         this.shutdownLatch = new CountDownLatch(1);
         this.serverState = ServerState.RUNNING;
+        Readiness.get().started();
         logger.log(Level.INFO, "AppScale App Server is now running");
         return this.shutdownLatch;
       }
     }
 
+    private void configureApiCallListeners(final AppScaleApiProxyLocal proxy) {
+      final RepeatedCallDetector repeatedCallDetector = RepeatedCallDetector.fromProperties(this.serviceProperties);
+      if (repeatedCallDetector != null) {
+        proxy.addApiCallListener(repeatedCallDetector);
+        Diagnostics.register(repeatedCallDetector);
+      }
+      final TransactionContentionTracker transactionContentionTracker =
+          TransactionContentionTracker.fromProperties(this.serviceProperties);
+      if (transactionContentionTracker != null) {
+        proxy.addApiCallListener(transactionContentionTracker);
+        Diagnostics.register(transactionContentionTracker);
+      }
+      this.apiCallCapture = ApiCallCapture.fromProperties(this.serviceProperties);
+      if (this.apiCallCapture != null) {
+        proxy.addApiCallListener(this.apiCallCapture);
+      }
+    }
+
     private void installLoggingServiceHandler(DevServices proxy) {
       Logger root = Logger.getLogger("");
       DevLogService logService = proxy.getLogService();
@@ -255,6 +296,11 @@ public class AppScaleAppServer implements DevAppServer {
         } catch (PrivilegedActionException var2) {
           throw var2.getException();
         } finally {
+          if (apiCallCapture != null) try {
+            apiCallCapture.close();
+          } catch (Exception e) {
+            logger.log(Level.WARNING, "Error closing api call capture", e);
+          }
           if (apiClient != null) try {
               apiClient.shutdown();
           } catch (Exception e) {
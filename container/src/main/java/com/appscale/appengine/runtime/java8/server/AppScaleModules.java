@@ -7,6 +7,7 @@ package com.appscale.appengine.runtime.java8.server;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.function.IntSupplier;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -100,10 +101,18 @@ public class AppScaleModules implements ModulesFilterHelper {
     return jettyContainerService.getAppContext();
   }
 
+  public void setActiveApiCalls(final IntSupplier activeApiCalls) {
+    jettyContainerService.setActiveApiCalls(activeApiCalls);
+  }
+
   public void setApiProxyDelegate(final Delegate<Environment> apiProxyDelegate) {
     jettyContainerService.setApiProxyDelegate(apiProxyDelegate);
   }
 
+  /**
+   * Requests are admitted by the admission handler, so no further permit is
+   * needed here.
+   */
   @Override
   public boolean acquireServingPermit(
       final String moduleOrBackendName,
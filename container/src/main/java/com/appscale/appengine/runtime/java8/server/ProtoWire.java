@@ -0,0 +1,159 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+/**
+ * Minimal protocol buffer wire format reader.
+ *
+ * Walks the fields of an encoded message without decoding them so callers can
+ * locate nested messages by offset and decode only what they need.
+ */
+public final class ProtoWire {
+  public static final int WIRETYPE_VARINT = 0;
+  public static final int WIRETYPE_FIXED64 = 1;
+  public static final int WIRETYPE_LENGTH_DELIMITED = 2;
+  public static final int WIRETYPE_START_GROUP = 3;
+  public static final int WIRETYPE_END_GROUP = 4;
+  public static final int WIRETYPE_FIXED32 = 5;
+
+  private final byte[] buffer;
+  private final int limit;
+  private int position;
+
+  public ProtoWire(final byte[] buffer) {
+    this(buffer, 0, buffer.length);
+  }
+
+  public ProtoWire(final byte[] buffer, final int offset, final int length) {
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  public static int fieldNumber(final int tag) {
+    return tag >>> 3;
+  }
+
+  public static int wireType(final int tag) {
+    return tag & 0x7;
+  }
+
+  public int position() {
+    return position;
+  }
+
+  /**
+   * Read the next field tag.
+   *
+   * @return The tag or 0 if the end of the buffer was reached
+   */
+  public int readTag() {
+    if (position >= limit) {
+      return 0;
+    }
+    final int tag = (int) readVarint();
+    if (fieldNumber(tag) == 0) {
+      throw new IllegalArgumentException("Invalid field tag at offset " + position);
+    }
+    return tag;
+  }
+
+  public long readVarint() {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      checkAvailable(1);
+      final byte b = buffer[position++];
+      result |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint at offset " + position);
+  }
+
+  public long readFixed64() {
+    checkAvailable(8);
+    long result = 0;
+    for (int i = 0; i < 8; i++) {
+      result |= (buffer[position++] & 0xFFL) << (8 * i);
+    }
+    return result;
+  }
+
+  /**
+   * Read the length prefix of a length delimited field, the position is left
+   * at the start of the field content.
+   */
+  public int readLength() {
+    final long length = readVarint();
+    if (length < 0 || length > limit - position) {
+      throw new IllegalArgumentException("Invalid field length " + length + " at offset " + position);
+    }
+    return (int) length;
+  }
+
+  public byte[] readBytes() {
+    final int length = readLength();
+    final byte[] value = new byte[length];
+    System.arraycopy(buffer, position, value, 0, length);
+    position += length;
+    return value;
+  }
+
+  public void skip(final int length) {
+    checkAvailable(length);
+    position += length;
+  }
+
+  /**
+   * Skip the value for the given (already read) tag, including the content
+   * of groups.
+   */
+  public void skipField(final int tag) {
+    switch (wireType(tag)) {
+      case WIRETYPE_VARINT:
+        readVarint();
+        break;
+      case WIRETYPE_FIXED64:
+        skip(8);
+        break;
+      case WIRETYPE_LENGTH_DELIMITED:
+        skip(readLength());
+        break;
+      case WIRETYPE_START_GROUP:
+        skipGroup(fieldNumber(tag));
+        break;
+      case WIRETYPE_FIXED32:
+        skip(4);
+        break;
+      default:
+        throw new IllegalArgumentException("Unexpected wire type " + wireType(tag) + " at offset " + position);
+    }
+  }
+
+  /**
+   * Skip group content up to and including the end group tag.
+   */
+  public void skipGroup(final int fieldNumber) {
+    int tag;
+    while ((tag = readTag()) != 0) {
+      if (wireType(tag) == WIRETYPE_END_GROUP) {
+        if (fieldNumber(tag) != fieldNumber) {
+          throw new IllegalArgumentException("Mismatched end group at offset " + position);
+        }
+        return;
+      }
+      skipField(tag);
+    }
+    throw new IllegalArgumentException("Unterminated group " + fieldNumber);
+  }
+
+  private void checkAvailable(final int length) {
+    if (length > limit - position) {
+      throw new IllegalArgumentException("Truncated message at offset " + position);
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.HttpServletRequest;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ * Detects requests that make the same API call serially with differing
+ * requests, e.g. a datastore or memcache get in a loop, where a single
+ * batched call could be used.
+ *
+ * A run is counted while each call starts after the previous call for the
+ * method has completed and the request bytes differ. Calls issued
+ * concurrently (async) end a run and identical requests are ignored.
+ */
+public class RepeatedCallDetector implements ApiCallListener, DiagnosticsProvider {
+  public static final String PROPERTY_THRESHOLD = "appscale.api.repeated_call_threshold";
+
+  private static final Logger logger = Logger.getLogger(RepeatedCallDetector.class.getName());
+  private static final String ATTR_CALLS = "com.appscale.appengine.api.repeated_calls";
+  private static final String BACKGROUND_ROUTE = "(background)";
+  private static final String OTHER_ROUTE = "(other)";
+  private static final int MAX_ROUTES = 1000;
+
+  private final int threshold;
+  private final ConcurrentMap<String, RouteCalls> routeCalls = new ConcurrentHashMap<>();
+
+  public RepeatedCallDetector(final int threshold) {
+    if (threshold < 2) {
+      throw new IllegalArgumentException("Threshold must be at least 2: " + threshold);
+    }
+    this.threshold = threshold;
+  }
+
+  /**
+   * Create a detector if enabled by the given properties.
+   *
+   * @return The detector or null if not enabled
+   */
+  public static RepeatedCallDetector fromProperties(final Map<String, String> properties) {
+    final String thresholdValue = properties.get(PROPERTY_THRESHOLD);
+    if (thresholdValue == null || thresholdValue.trim().isEmpty()) {
+      return null;
+    }
+    final int threshold = Integer.parseInt(thresholdValue.trim());
+    return threshold > 0 ? new RepeatedCallDetector(threshold) : null;
+  }
+
+  @Override
+  public String getName() {
+    return "repeated_calls";
+  }
+
+  @Override
+  public void onCallStart(
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes
+  ) {
+    final RequestCalls requestCalls = requestCalls(environment);
+    if (requestCalls == null) {
+      return;
+    }
+
+    final String method = packageName + "." + methodName;
+    final int requestHash = Arrays.hashCode(requestBytes);
+    final int run;
+    final boolean crossed;
+    synchronized (requestCalls) {
+      MethodCalls calls = requestCalls.methods.get(method);
+      if (calls == null) {
+        calls = new MethodCalls();
+        requestCalls.methods.put(method, calls);
+      }
+      if (calls.inFlight > 0) {
+        calls.run = 1;
+      } else if (calls.run == 0 || calls.lastRequestHash != requestHash) {
+        calls.run++;
+      }
+      calls.inFlight++;
+      calls.lastRequestHash = requestHash;
+      run = calls.run;
+      crossed = run == threshold && !calls.reported;
+      if (crossed) {
+        calls.reported = true;
+      }
+    }
+
+    if (run >= threshold) {
+      final RouteCalls route = routeCalls(requestCalls.route, method);
+      if (crossed) {
+        route.requests.increment();
+        route.calls.add(run);
+        logRepeatedCalls(requestCalls.route, method, run);
+      } else {
+        route.calls.increment();
+      }
+      route.maxRun.accumulate(run);
+    }
+  }
+
+  @Override
+  public void onCallComplete(
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes,
+      final byte[] responseBytes,
+      final Throwable error,
+      final long durationNanos
+  ) {
+    final Object requestCalls = environment.getAttributes().get(ATTR_CALLS);
+    if (requestCalls instanceof RequestCalls) {
+      final String method = packageName + "." + methodName;
+      synchronized (requestCalls) {
+        final MethodCalls calls = ((RequestCalls)requestCalls).methods.get(method);
+        if (calls != null && calls.inFlight > 0) {
+          calls.inFlight--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Snapshot of the aggregated counts per route and method.
+   */
+  public List<RouteCallCounts> getRouteCallCounts() {
+    final List<RouteCallCounts> counts = new ArrayList<>();
+    for (final RouteCalls calls : routeCalls.values()) {
+      counts.add(new RouteCallCounts(
+          calls.route, calls.method, calls.requests.sum(), calls.calls.sum(), calls.maxRun.get()));
+    }
+    counts.sort((c1, c2) -> Long.compare(c2.getCalls(), c1.getCalls()));
+    return counts;
+  }
+
+  @Override
+  public void report(final PrintWriter out) {
+    out.println("# threshold " + threshold);
+    out.println("# route method requests calls max_run");
+    for (final RouteCallCounts counts : getRouteCallCounts()) {
+      out.println(counts.getRoute() + " " + counts.getMethod() + " " + counts.getRequests() + " " +
+          counts.getCalls() + " " + counts.getMaxRun());
+    }
+  }
+
+  private RouteCalls routeCalls(final String route, final String method) {
+    final String key = route + " " + method;
+    final RouteCalls calls = routeCalls.get(key);
+    if (calls != null) {
+      return calls;
+    } else if (routeCalls.size() >= MAX_ROUTES) {
+      return routeCalls.computeIfAbsent(OTHER_ROUTE + " " + method, k -> new RouteCalls(OTHER_ROUTE, method));
+    } else {
+      return routeCalls.computeIfAbsent(key, k -> new RouteCalls(route, method));
+    }
+  }
+
+  private RequestCalls requestCalls(final Environment environment) {
+    if (environment == null) {
+      return null;
+    }
+    final Map<String, Object> attributes = environment.getAttributes();
+    Object requestCalls = attributes.get(ATTR_CALLS);
+    if (requestCalls == null) {
+      final RequestCalls newRequestCalls = new RequestCalls(route(environment));
+      requestCalls = attributes.putIfAbsent(ATTR_CALLS, newRequestCalls);
+      if (requestCalls == null) {
+        requestCalls = newRequestCalls;
+      }
+    }
+    return requestCalls instanceof RequestCalls ? (RequestCalls) requestCalls : null;
+  }
+
+  private static String route(final Environment environment) {
+    if (environment instanceof RuntimeEnvironment) {
+      final HttpServletRequest request =
+          ((RuntimeEnvironment) environment).getAttribute(RuntimeEnvironment.ATTR_REQUEST).orElse(null);
+      if (request != null) {
+        return request.getRequestURI();
+      }
+    }
+    return BACKGROUND_ROUTE;
+  }
+
+  private void logRepeatedCalls(final String route, final String method, final int run) {
+    final Throwable callSite = new Throwable("API call site");
+    logger.log(Level.WARNING, "Request " + route + " made " + run + " serial " + method +
+        " calls with differing requests, consider batching these calls (e.g. a single get for" +
+        " multiple keys, or async calls)", callSite);
+  }
+
+  private static final class RequestCalls {
+    private final String route;
+    private final Map<String, MethodCalls> methods = new HashMap<>();
+
+    RequestCalls(final String route) {
+      this.route = route;
+    }
+  }
+
+  private static final class MethodCalls {
+    private int run;
+    private int inFlight;
+    private int lastRequestHash;
+    private boolean reported;
+  }
+
+  private static final class RouteCalls {
+    private final String route;
+    private final String method;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder calls = new LongAdder();
+    private final LongAccumulator maxRun = new LongAccumulator(Math::max, 0);
+
+    RouteCalls(final String route, final String method) {
+      this.route = route;
+      this.method = method;
+    }
+  }
+
+  public static final class RouteCallCounts {
+    private final String route;
+    private final String method;
+    private final long requests;
+    private final long calls;
+    private final long maxRun;
+
+    RouteCallCounts(
+        final String route,
+        final String method,
+        final long requests,
+        final long calls,
+        final long maxRun
+    ) {
+      this.route = route;
+      this.method = method;
+      this.requests = requests;
+      this.calls = calls;
+      this.maxRun = maxRun;
+    }
+
+    public String getRoute() {
+      return route;
+    }
+
+    public String getMethod() {
+      return method;
+    }
+
+    /**
+     * Number of requests that crossed the threshold.
+     */
+    public long getRequests() {
+      return requests;
+    }
+
+    /**
+     * Number of serial calls made in runs that crossed the threshold.
+     */
+    public long getCalls() {
+      return calls;
+    }
+
+    public long getMaxRun() {
+      return maxRun;
+    }
+  }
+}
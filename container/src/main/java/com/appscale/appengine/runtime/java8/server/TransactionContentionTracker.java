@@ -0,0 +1,598 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+import com.google.apphosting.api.ApiProxy.ApplicationException;
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ * Tracks datastore transaction outcomes per entity group.
+ *
+ * Transactions are associated with the entity groups of the keys and
+ * entities used in transactional get, put, delete and query calls. Entity
+ * groups are identified by a hash of the root key so key names and ids are
+ * not retained.
+ */
+public class TransactionContentionTracker implements ApiCallListener, DiagnosticsProvider {
+  public static final String PROPERTY_ENABLED = "appscale.datastore.transaction_stats";
+  public static final String PROPERTY_TOP = "appscale.datastore.transaction_stats_top";
+
+  private static final Logger logger = Logger.getLogger(TransactionContentionTracker.class.getName());
+
+  private static final String DATASTORE_PACKAGE = "datastore_v3";
+  private static final int CONCURRENT_TRANSACTION = 2; // DatastoreV3Pb.Error.ErrorCode
+  private static final long[] DURATION_BUCKETS_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+  private static final int DEFAULT_TOP = 20;
+  private static final int MAX_GROUPS = 10000;
+  private static final int MAX_TRANSACTIONS = 10000;
+  private static final long TRANSACTION_EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  // Transaction { required fixed64 handle = 1 }
+  private static final int TRANSACTION_HANDLE = 1;
+  // GetRequest { repeated Reference key = 1; optional Transaction transaction = 2 }
+  private static final int GET_KEY = 1;
+  private static final int GET_TRANSACTION = 2;
+  // PutRequest { repeated EntityProto entity = 1; optional Transaction transaction = 2 }
+  private static final int PUT_ENTITY = 1;
+  private static final int PUT_TRANSACTION = 2;
+  // DeleteRequest { optional Transaction transaction = 5; repeated Reference key = 6 }
+  private static final int DELETE_KEY = 6;
+  private static final int DELETE_TRANSACTION = 5;
+  // Query { optional Reference ancestor = 17; optional Transaction transaction = 22 }
+  private static final int QUERY_ANCESTOR = 17;
+  private static final int QUERY_TRANSACTION = 22;
+  // EntityProto { required Reference key = 13 }
+  private static final int ENTITY_KEY = 13;
+  // Reference { required string app = 13; required Path path = 14; optional string name_space = 20 }
+  private static final int REFERENCE_APP = 13;
+  private static final int REFERENCE_PATH = 14;
+  private static final int REFERENCE_NAMESPACE = 20;
+  // Path { repeated group Element = 1 { required string type = 2; optional int64 id = 3; optional string name = 4 } }
+  private static final int PATH_ELEMENT = 1;
+  private static final int ELEMENT_TYPE = 2;
+  private static final int ELEMENT_ID = 3;
+  private static final int ELEMENT_NAME = 4;
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final int top;
+  private final ConcurrentMap<Long, ActiveTransaction> transactions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Long, GroupStats> groups = new ConcurrentHashMap<>();
+  private final LongAdder untrackedTransactions = new LongAdder();
+  private final LongAdder untrackedGroups = new LongAdder();
+
+  public TransactionContentionTracker(final int top) {
+    this.top = top;
+  }
+
+  /**
+   * Create a tracker unless disabled by the given properties.
+   *
+   * @return The tracker or null if not enabled
+   */
+  public static TransactionContentionTracker fromProperties(final Map<String, String> properties) {
+    if (!Boolean.parseBoolean(properties.getOrDefault(PROPERTY_ENABLED, "true"))) {
+      return null;
+    }
+    final String topValue = properties.get(PROPERTY_TOP);
+    return new TransactionContentionTracker(
+        topValue == null || topValue.trim().isEmpty() ? DEFAULT_TOP : Integer.parseInt(topValue.trim()));
+  }
+
+  @Override
+  public String getName() {
+    return "transactions";
+  }
+
+  @Override
+  public void onCallComplete(
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final byte[] requestBytes,
+      final byte[] responseBytes,
+      final Throwable error,
+      final long durationNanos
+  ) {
+    if (!DATASTORE_PACKAGE.equals(packageName)) {
+      return;
+    }
+    try {
+      switch (methodName) {
+        case "BeginTransaction":
+          if (responseBytes != null) {
+            begin(transactionHandle(responseBytes, 0, responseBytes.length), durationNanos);
+          }
+          break;
+        case "Get":
+          associate(requestBytes, GET_TRANSACTION, GET_KEY, false);
+          break;
+        case "Put":
+          associate(requestBytes, PUT_TRANSACTION, PUT_ENTITY, true);
+          break;
+        case "Delete":
+          associate(requestBytes, DELETE_TRANSACTION, DELETE_KEY, false);
+          break;
+        case "RunQuery":
+          associate(requestBytes, QUERY_TRANSACTION, QUERY_ANCESTOR, false);
+          break;
+        case "Commit":
+          end(transactionHandle(requestBytes, 0, requestBytes.length), true, error);
+          break;
+        case "Rollback":
+          end(transactionHandle(requestBytes, 0, requestBytes.length), false, error);
+          break;
+        default:
+          break;
+      }
+    } catch (final IllegalArgumentException e) {
+      logger.log(Level.FINE, "Unable to track datastore " + methodName + " call", e);
+    }
+  }
+
+  /**
+   * Snapshot of the most contended entity groups.
+   */
+  public List<GroupContention> getTopGroups(final int count) {
+    final List<GroupContention> contention = new ArrayList<>();
+    for (final Map.Entry<Long, GroupStats> entry : groups.entrySet()) {
+      contention.add(entry.getValue().snapshot(entry.getKey()));
+    }
+    contention.sort(Comparator
+        .comparingLong(GroupContention::getConcurrentFailures)
+        .thenComparingLong(GroupContention::getCommitFailures)
+        .thenComparingLong(GroupContention::getTransactions)
+        .reversed());
+    return contention.size() > count ? new ArrayList<>(contention.subList(0, count)) : contention;
+  }
+
+  @Override
+  public void report(final PrintWriter out) {
+    out.println("# groups " + groups.size() + " active_transactions " + transactions.size() +
+        " untracked_groups " + untrackedGroups.sum() + " untracked_transactions " + untrackedTransactions.sum());
+    out.println("# group kind transactions commits commit_failures concurrent_failures failure_rate" +
+        " rollbacks mean_ms failed_ms p50_ms p99_ms");
+    for (final GroupContention group : getTopGroups(top)) {
+      out.println(String.format("%016x %s %d %d %d %d %.3f %d %.1f %.1f %s %s",
+          group.getGroupHash(),
+          group.getKind(),
+          group.getTransactions(),
+          group.getCommits(),
+          group.getCommitFailures(),
+          group.getConcurrentFailures(),
+          group.getCommitFailureRate(),
+          group.getRollbacks(),
+          group.getMeanDurationMillis(),
+          group.getFailedDurationMillis(),
+          bucketLabel(group.getDurationPercentileBucket(0.5)),
+          bucketLabel(group.getDurationPercentileBucket(0.99))));
+    }
+  }
+
+  private void begin(final long handle, final long durationNanos) {
+    if (transactions.size() >= MAX_TRANSACTIONS) {
+      expireTransactions();
+      if (transactions.size() >= MAX_TRANSACTIONS) {
+        untrackedTransactions.increment();
+        return;
+      }
+    }
+    transactions.put(handle, new ActiveTransaction(System.nanoTime() - durationNanos));
+  }
+
+  /**
+   * Associate the keys of a transactional call with its transaction.
+   *
+   * The request is first scanned for the transaction only, so calls outside
+   * an active transaction return without reading keys.
+   */
+  private void associate(
+      final byte[] requestBytes,
+      final int transactionField,
+      final int keyField,
+      final boolean entities
+  ) {
+    if (transactions.isEmpty()) {
+      return;
+    }
+    final ActiveTransaction transaction = transaction(requestBytes, transactionField);
+    if (transaction == null) {
+      return;
+    }
+    final ProtoWire wire = new ProtoWire(requestBytes);
+    int tag;
+    while ((tag = wire.readTag()) != 0) {
+      if (ProtoWire.fieldNumber(tag) == keyField &&
+          ProtoWire.wireType(tag) == ProtoWire.WIRETYPE_LENGTH_DELIMITED) {
+        final int length = wire.readLength();
+        final int offset = wire.position();
+        final RootKey rootKey = entities ?
+            entityRootKey(requestBytes, offset, length) :
+            referenceRootKey(requestBytes, offset, length);
+        if (rootKey != null && transaction.addGroup(rootKey.hash)) {
+          final GroupStats stats = groupStats(rootKey);
+          if (stats != null) {
+            stats.transactions.increment();
+          }
+        }
+        wire.skip(length);
+      } else {
+        wire.skipField(tag);
+      }
+    }
+  }
+
+  private ActiveTransaction transaction(final byte[] requestBytes, final int transactionField) {
+    final ProtoWire wire = new ProtoWire(requestBytes);
+    int tag;
+    while ((tag = wire.readTag()) != 0) {
+      if (ProtoWire.fieldNumber(tag) == transactionField &&
+          ProtoWire.wireType(tag) == ProtoWire.WIRETYPE_LENGTH_DELIMITED) {
+        final int length = wire.readLength();
+        return transactions.get(transactionHandle(requestBytes, wire.position(), length));
+      }
+      wire.skipField(tag);
+    }
+    return null;
+  }
+
+  private void end(final long handle, final boolean commit, final Throwable error) {
+    final ActiveTransaction transaction = transactions.remove(handle);
+    if (transaction == null) {
+      return;
+    }
+    final long durationNanos = System.nanoTime() - transaction.startNanos;
+    final boolean concurrent = error instanceof ApplicationException &&
+        ((ApplicationException) error).getApplicationError() == CONCURRENT_TRANSACTION;
+    for (final Long groupHash : transaction.groups()) {
+      final GroupStats stats = groups.get(groupHash);
+      if (stats == null) {
+        continue;
+      }
+      if (commit) {
+        stats.commits.increment();
+        if (error != null) {
+          stats.commitFailures.increment();
+          stats.failedNanos.add(durationNanos);
+          if (concurrent) {
+            stats.concurrentFailures.increment();
+          }
+        }
+      } else {
+        stats.rollbacks.increment();
+      }
+      stats.record(durationNanos);
+    }
+  }
+
+  private void expireTransactions() {
+    final long now = System.nanoTime();
+    transactions.values().removeIf(transaction -> now - transaction.startNanos > TRANSACTION_EXPIRY_NANOS);
+  }
+
+  private GroupStats groupStats(final RootKey rootKey) {
+    final GroupStats stats = groups.get(rootKey.hash);
+    if (stats != null) {
+      return stats;
+    } else if (groups.size() >= MAX_GROUPS) {
+      untrackedGroups.increment();
+      return null;
+    } else {
+      return groups.computeIfAbsent(rootKey.hash, hash -> new GroupStats(rootKey.kind));
+    }
+  }
+
+  private static long transactionHandle(final byte[] bytes, final int offset, final int length) {
+    final ProtoWire wire = new ProtoWire(bytes, offset, length);
+    int tag;
+    while ((tag = wire.readTag()) != 0) {
+      if (ProtoWire.fieldNumber(tag) == TRANSACTION_HANDLE &&
+          ProtoWire.wireType(tag) == ProtoWire.WIRETYPE_FIXED64) {
+        return wire.readFixed64();
+      }
+      wire.skipField(tag);
+    }
+    throw new IllegalArgumentException("Transaction handle not found");
+  }
+
+  private static RootKey entityRootKey(final byte[] bytes, final int offset, final int length) {
+    final ProtoWire wire = new ProtoWire(bytes, offset, length);
+    int tag;
+    while ((tag = wire.readTag()) != 0) {
+      if (ProtoWire.fieldNumber(tag) == ENTITY_KEY &&
+          ProtoWire.wireType(tag) == ProtoWire.WIRETYPE_LENGTH_DELIMITED) {
+        final int keyLength = wire.readLength();
+        return referenceRootKey(bytes, wire.position(), keyLength);
+      }
+      wire.skipField(tag);
+    }
+    return null;
+  }
+
+  /**
+   * Hash the app, namespace and root path element of a reference.
+   *
+   * @return The root key or null if the root element is incomplete
+   */
+  private static RootKey referenceRootKey(final byte[] bytes, final int offset, final int length) {
+    long hash = FNV_OFFSET;
+    RootKey root = null;
+    final ProtoWire wire = new ProtoWire(bytes, offset, length);
+    int tag;
+    while ((tag = wire.readTag()) != 0) {
+      final int field = ProtoWire.fieldNumber(tag);
+      if (ProtoWire.wireType(tag) == ProtoWire.WIRETYPE_LENGTH_DELIMITED &&
+          (field == REFERENCE_APP || field == REFERENCE_NAMESPACE || field == REFERENCE_PATH)) {
+        final int fieldLength = wire.readLength();
+        final int fieldOffset = wire.position();
+        if (field == REFERENCE_PATH) {
+          root = rootElement(bytes, fieldOffset, fieldLength);
+        } else {
+          hash = fnv(hash, field);
+          hash = fnv(hash, bytes, fieldOffset, fieldLength);
+        }
+        wire.skip(fieldLength);
+      } else {
+        wire.skipField(tag);
+      }
+    }
+    return root == null ? null : new RootKey(root.kind, fnv(hash ^ root.hash, REFERENCE_PATH));
+  }
+
+  private static RootKey rootElement(final byte[] bytes, final int offset, final int length) {
+    final ProtoWire wire = new ProtoWire(bytes, offset, length);
+    int tag;
+    while ((tag = wire.readTag()) != 0) {
+      if (ProtoWire.fieldNumber(tag) == PATH_ELEMENT &&
+          ProtoWire.wireType(tag) == ProtoWire.WIRETYPE_START_GROUP) {
+        long hash = FNV_OFFSET;
+        String kind = null;
+        boolean complete = false;
+        int elementTag;
+        while ((elementTag = wire.readTag()) != 0 &&
+            ProtoWire.wireType(elementTag) != ProtoWire.WIRETYPE_END_GROUP) {
+          final int field = ProtoWire.fieldNumber(elementTag);
+          if (field == ELEMENT_ID && ProtoWire.wireType(elementTag) == ProtoWire.WIRETYPE_VARINT) {
+            final long id = wire.readVarint();
+            hash = fnv(fnv(hash, field), id);
+            complete |= id != 0;
+          } else if ((field == ELEMENT_TYPE || field == ELEMENT_NAME) &&
+              ProtoWire.wireType(elementTag) == ProtoWire.WIRETYPE_LENGTH_DELIMITED) {
+            final int fieldLength = wire.readLength();
+            hash = fnv(fnv(hash, field), bytes, wire.position(), fieldLength);
+            if (field == ELEMENT_TYPE) {
+              kind = new String(bytes, wire.position(), fieldLength, StandardCharsets.UTF_8);
+            } else {
+              complete |= fieldLength > 0;
+            }
+            wire.skip(fieldLength);
+          } else {
+            wire.skipField(elementTag);
+          }
+        }
+        return complete ? new RootKey(kind, hash) : null;
+      }
+      wire.skipField(tag);
+    }
+    return null;
+  }
+
+  private static long fnv(long hash, final byte[] bytes, final int offset, final int length) {
+    for (int i = offset; i < offset + length; i++) {
+      hash ^= bytes[i] & 0xFF;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static long fnv(long hash, final long value) {
+    for (int i = 0; i < 8; i++) {
+      hash ^= (value >>> (8 * i)) & 0xFF;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static String bucketLabel(final int bucket) {
+    if (bucket < 0) {
+      return "-";
+    } else if (bucket < DURATION_BUCKETS_MILLIS.length) {
+      return "<=" + DURATION_BUCKETS_MILLIS[bucket];
+    } else {
+      return ">" + DURATION_BUCKETS_MILLIS[DURATION_BUCKETS_MILLIS.length - 1];
+    }
+  }
+
+  private static final class RootKey {
+    private final String kind;
+    private final long hash;
+
+    RootKey(final String kind, final long hash) {
+      this.kind = kind;
+      this.hash = hash;
+    }
+  }
+
+  private static final class ActiveTransaction {
+    private final long startNanos;
+    private final Set<Long> groups = new HashSet<>(4);
+
+    ActiveTransaction(final long startNanos) {
+      this.startNanos = startNanos;
+    }
+
+    synchronized boolean addGroup(final long groupHash) {
+      return groups.add(groupHash);
+    }
+
+    synchronized List<Long> groups() {
+      return new ArrayList<>(groups);
+    }
+  }
+
+  private static final class GroupStats {
+    private final String kind;
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder commitFailures = new LongAdder();
+    private final LongAdder concurrentFailures = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder durationNanos = new LongAdder();
+    private final LongAdder failedNanos = new LongAdder();
+    private final LongAdder[] durationBuckets = new LongAdder[DURATION_BUCKETS_MILLIS.length + 1];
+
+    GroupStats(final String kind) {
+      this.kind = kind == null ? "-" : kind;
+      for (int i = 0; i < durationBuckets.length; i++) {
+        durationBuckets[i] = new LongAdder();
+      }
+    }
+
+    void record(final long nanos) {
+      durationNanos.add(nanos);
+      final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      int bucket = 0;
+      while (bucket < DURATION_BUCKETS_MILLIS.length && millis > DURATION_BUCKETS_MILLIS[bucket]) {
+        bucket++;
+      }
+      durationBuckets[bucket].increment();
+    }
+
+    GroupContention snapshot(final long groupHash) {
+      final long[] buckets = new long[durationBuckets.length];
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = durationBuckets[i].sum();
+      }
+      return new GroupContention(groupHash, kind, transactions.sum(), commits.sum(), commitFailures.sum(),
+          concurrentFailures.sum(), rollbacks.sum(), durationNanos.sum(), failedNanos.sum(), buckets);
+    }
+  }
+
+  public static final class GroupContention {
+    private final long groupHash;
+    private final String kind;
+    private final long transactions;
+    private final long commits;
+    private final long commitFailures;
+    private final long concurrentFailures;
+    private final long rollbacks;
+    private final long durationNanos;
+    private final long failedNanos;
+    private final long[] durationBuckets;
+
+    GroupContention(
+        final long groupHash,
+        final String kind,
+        final long transactions,
+        final long commits,
+        final long commitFailures,
+        final long concurrentFailures,
+        final long rollbacks,
+        final long durationNanos,
+        final long failedNanos,
+        final long[] durationBuckets
+    ) {
+      this.groupHash = groupHash;
+      this.kind = kind;
+      this.transactions = transactions;
+      this.commits = commits;
+      this.commitFailures = commitFailures;
+      this.concurrentFailures = concurrentFailures;
+      this.rollbacks = rollbacks;
+      this.durationNanos = durationNanos;
+      this.failedNanos = failedNanos;
+      this.durationBuckets = durationBuckets;
+    }
+
+    public long getGroupHash() {
+      return groupHash;
+    }
+
+    public String getKind() {
+      return kind;
+    }
+
+    public long getTransactions() {
+      return transactions;
+    }
+
+    public long getCommits() {
+      return commits;
+    }
+
+    public long getCommitFailures() {
+      return commitFailures;
+    }
+
+    public long getConcurrentFailures() {
+      return concurrentFailures;
+    }
+
+    public double getCommitFailureRate() {
+      return commits == 0 ? 0.0 : (double) commitFailures / commits;
+    }
+
+    public long getRollbacks() {
+      return rollbacks;
+    }
+
+    public double getMeanDurationMillis() {
+      final long ended = commits + rollbacks;
+      return ended == 0 ? 0.0 : durationNanos / 1_000_000.0 / ended;
+    }
+
+    /**
+     * Time spent in transactions whose commit failed.
+     */
+    public double getFailedDurationMillis() {
+      return failedNanos / 1_000_000.0;
+    }
+
+    /**
+     * Duration histogram counts, bucket upper bounds are 5, 10, 25, 50, 100,
+     * 250, 500, 1000, 2500, 5000, 10000 and 30000ms with a final overflow
+     * bucket.
+     */
+    public long[] getDurationBuckets() {
+      return durationBuckets.clone();
+    }
+
+    int getDurationPercentileBucket(final double percentile) {
+      long total = 0;
+      for (final long count : durationBuckets) {
+        total += count;
+      }
+      if (total == 0) {
+        return -1;
+      }
+      final long target = (long) Math.ceil(total * percentile);
+      long count = 0;
+      for (int i = 0; i < durationBuckets.length; i++) {
+        count += durationBuckets[i];
+        if (count >= target) {
+          return i;
+        }
+      }
+      return durationBuckets.length - 1;
+    }
+  }
+}
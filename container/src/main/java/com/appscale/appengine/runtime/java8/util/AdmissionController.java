@@ -0,0 +1,330 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+import com.google.apphosting.utils.config.AppEngineWebXml;
+
+/**
+ * Limits concurrent requests for an instance.
+ *
+ * Requests over the limit wait in a bounded queue and are rejected if the
+ * queue is full or a permit is not available within the queue timeout.
+ *
+ * In adaptive mode the limit is adjusted between one and the configured
+ * maximum using observed latency. The limit is decreased multiplicatively
+ * when latency exceeds the tolerated multiple of the minimum latency seen
+ * and is otherwise increased additively while the limit is in use.
+ *
+ * Offline requests from task queues can use a separate controller so task
+ * backlogs cannot use the capacity for interactive requests.
+ */
+public class AdmissionController implements DiagnosticsProvider {
+  public static final String PROPERTY_MAX_CONCURRENT_REQUESTS = "appscale.admission.max_concurrent_requests";
+  public static final String PROPERTY_MODE = "appscale.admission.mode";
+  public static final String PROPERTY_QUEUE_SIZE = "appscale.admission.queue_size";
+  public static final String PROPERTY_QUEUE_TIMEOUT_MILLIS = "appscale.admission.queue_timeout_ms";
+  public static final String PROPERTY_RETRY_AFTER_SECS = "appscale.admission.retry_after_secs";
+  public static final String PROPERTY_OFFLINE_MAX_CONCURRENT_REQUESTS = "appscale.offline.max_concurrent_requests";
+  public static final String PROPERTY_OFFLINE_QUEUE_SIZE = "appscale.offline.queue_size";
+  public static final String PROPERTY_OFFLINE_QUEUE_TIMEOUT_MILLIS = "appscale.offline.queue_timeout_ms";
+  public static final String MODE_STATIC = "static";
+  public static final String MODE_ADAPTIVE = "adaptive";
+
+  private static final Logger logger = Logger.getLogger(AdmissionController.class.getName());
+  private static final double LATENCY_TOLERANCE = 2.0;
+  private static final double DECREASE_FACTOR = 0.9;
+  private static final int MIN_LATENCY_WINDOW = 1000;
+
+  private final String name;
+  private final int maxLimit;
+  private final boolean adaptive;
+  private final int queueSize;
+  private final long queueTimeoutNanos;
+  private final int retryAfterSecs;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition permitAvailable = lock.newCondition();
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder queuedTotal = new LongAdder();
+  private final LongAdder rejectedQueueFull = new LongAdder();
+  private final LongAdder rejectedTimeout = new LongAdder();
+  private double limit;
+  private int inFlight;
+  private int queued;
+  private long minLatencyNanos = Long.MAX_VALUE;
+  private int minLatencySamples;
+  private long lastDecreaseNanos;
+  private volatile long latencyNanos;
+
+  public AdmissionController(
+      final int maxLimit,
+      final boolean adaptive,
+      final int queueSize,
+      final long queueTimeoutMillis,
+      final int retryAfterSecs
+  ) {
+    this("admission", maxLimit, adaptive, queueSize, queueTimeoutMillis, retryAfterSecs);
+  }
+
+  public AdmissionController(
+      final String name,
+      final int maxLimit,
+      final boolean adaptive,
+      final int queueSize,
+      final long queueTimeoutMillis,
+      final int retryAfterSecs
+  ) {
+    if (maxLimit < 1) {
+      throw new IllegalArgumentException("Invalid concurrent request limit: " + maxLimit);
+    }
+    if (queueSize < 0) {
+      throw new IllegalArgumentException("Invalid queue size: " + queueSize);
+    }
+    this.name = name;
+    this.maxLimit = maxLimit;
+    this.adaptive = adaptive;
+    this.queueSize = queueSize;
+    this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+    this.retryAfterSecs = retryAfterSecs;
+    this.limit = maxLimit;
+    this.lastDecreaseNanos = System.nanoTime();
+  }
+
+  /**
+   * Create a controller for the given configuration.
+   *
+   * The limit is from the service properties if set, otherwise from the
+   * appengine-web.xml threadsafe and max-concurrent-requests settings.
+   *
+   * @return The controller or null if requests are not limited
+   */
+  public static AdmissionController fromConfiguration(
+      final AppEngineWebXml appEngineWebXml,
+      final Map<String, String> properties
+  ) {
+    int maxConcurrentRequests = 0;
+    if (appEngineWebXml != null) {
+      if (!appEngineWebXml.getThreadsafe()) {
+        maxConcurrentRequests = 1;
+      } else if (appEngineWebXml.getAutomaticScaling() != null &&
+          appEngineWebXml.getAutomaticScaling().getMaxConcurrentRequests() != null) {
+        maxConcurrentRequests = Integer.parseInt(
+            appEngineWebXml.getAutomaticScaling().getMaxConcurrentRequests().trim());
+      }
+    }
+    final String maxConcurrentRequestsProperty = properties.get(PROPERTY_MAX_CONCURRENT_REQUESTS);
+    if (maxConcurrentRequestsProperty != null) {
+      maxConcurrentRequests = Integer.parseInt(maxConcurrentRequestsProperty.trim());
+    }
+    if (maxConcurrentRequests < 1) {
+      return null;
+    }
+    final String mode = properties.getOrDefault(PROPERTY_MODE, MODE_STATIC).trim();
+    if (!MODE_STATIC.equals(mode) && !MODE_ADAPTIVE.equals(mode)) {
+      throw new IllegalArgumentException("Invalid admission mode: " + mode);
+    }
+    final AdmissionController controller = new AdmissionController(
+        maxConcurrentRequests,
+        MODE_ADAPTIVE.equals(mode),
+        Integer.parseInt(properties.getOrDefault(PROPERTY_QUEUE_SIZE, "100")),
+        Long.parseLong(properties.getOrDefault(PROPERTY_QUEUE_TIMEOUT_MILLIS, "10000")),
+        Integer.parseInt(properties.getOrDefault(PROPERTY_RETRY_AFTER_SECS, "1")));
+    logger.info("Limiting concurrent requests to " + maxConcurrentRequests + " (" + mode + ")");
+    return controller;
+  }
+
+  /**
+   * Create a controller for offline requests.
+   *
+   * Offline requests are rejected immediately when over the limit unless a
+   * queue size is configured, so task queues back off and retry.
+   *
+   * @param defaultLimit The limit if not configured
+   * @return The controller or null if offline requests are not limited
+   */
+  public static AdmissionController forOfflineRequests(
+      final Map<String, String> properties,
+      final int defaultLimit
+  ) {
+    final int maxConcurrentRequests = Integer.parseInt(properties.getOrDefault(
+        PROPERTY_OFFLINE_MAX_CONCURRENT_REQUESTS, String.valueOf(defaultLimit)).trim());
+    if (maxConcurrentRequests < 1) {
+      return null;
+    }
+    final AdmissionController controller = new AdmissionController(
+        "admission_offline",
+        maxConcurrentRequests,
+        false,
+        Integer.parseInt(properties.getOrDefault(PROPERTY_OFFLINE_QUEUE_SIZE, "0").trim()),
+        Long.parseLong(properties.getOrDefault(PROPERTY_OFFLINE_QUEUE_TIMEOUT_MILLIS, "10000").trim()),
+        Integer.parseInt(properties.getOrDefault(PROPERTY_RETRY_AFTER_SECS, "1").trim()));
+    logger.info("Limiting concurrent offline requests to " + maxConcurrentRequests);
+    return controller;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Acquire a permit to serve a request, waiting in the queue if necessary.
+   *
+   * @return True if the request is admitted and must later be released
+   */
+  public boolean acquire() {
+    lock.lock();
+    try {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        admitted.increment();
+        return true;
+      }
+      if (queued >= queueSize) {
+        rejectedQueueFull.increment();
+        return false;
+      }
+      queued++;
+      queuedTotal.increment();
+      try {
+        long remaining = queueTimeoutNanos;
+        while (inFlight >= (int) limit) {
+          if (remaining <= 0L) {
+            rejectedTimeout.increment();
+            return false;
+          }
+          remaining = permitAvailable.awaitNanos(remaining);
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        rejectedTimeout.increment();
+        return false;
+      } finally {
+        queued--;
+      }
+      inFlight++;
+      admitted.increment();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Release a permit.
+   *
+   * @param latencyNanos The request latency, or a negative value if not known
+   */
+  public void release(final long latencyNanos) {
+    lock.lock();
+    try {
+      inFlight--;
+      if (latencyNanos >= 0L) {
+        this.latencyNanos = latencyNanos;
+        if (adaptive) {
+          adapt(latencyNanos);
+        }
+      }
+      if (inFlight < (int) limit) {
+        permitAvailable.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void adapt(final long latencyNanos) {
+    if (++minLatencySamples > MIN_LATENCY_WINDOW) {
+      // let the minimum drift up so a change in workload is eventually seen
+      minLatencyNanos = minLatencyNanos + (minLatencyNanos >> 3);
+      minLatencySamples = 0;
+    }
+    minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+    final long now = System.nanoTime();
+    if (latencyNanos > minLatencyNanos * LATENCY_TOLERANCE) {
+      // decrease at most once per observed latency so one slow period is one decrease
+      if (now - lastDecreaseNanos > latencyNanos) {
+        limit = Math.max(1.0, limit * DECREASE_FACTOR);
+        lastDecreaseNanos = now;
+      }
+    } else if (inFlight + 1 >= (int) limit / 2) {
+      final double increased = Math.min(maxLimit, limit + 1.0 / limit);
+      if ((int) increased > (int) limit) {
+        permitAvailable.signal();
+      }
+      limit = increased;
+    }
+  }
+
+  public int getRetryAfterSecs() {
+    return retryAfterSecs;
+  }
+
+  public int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getQueued() {
+    lock.lock();
+    try {
+      return queued;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getAdmitted() {
+    return admitted.sum();
+  }
+
+  public long getQueuedTotal() {
+    return queuedTotal.sum();
+  }
+
+  public long getRejectedQueueFull() {
+    return rejectedQueueFull.sum();
+  }
+
+  public long getRejectedTimeout() {
+    return rejectedTimeout.sum();
+  }
+
+  @Override
+  public void report(final PrintWriter out) {
+    out.println("mode " + (adaptive ? MODE_ADAPTIVE : MODE_STATIC));
+    out.println("max_limit " + maxLimit);
+    out.println("limit " + getLimit());
+    out.println("in_flight " + getInFlight());
+    out.println("queued " + getQueued());
+    out.println("queue_size " + queueSize);
+    out.println("admitted " + getAdmitted());
+    out.println("queued_total " + getQueuedTotal());
+    out.println("rejected_queue_full " + getRejectedQueueFull());
+    out.println("rejected_timeout " + getRejectedTimeout());
+    out.println("last_latency_ms " + TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+  }
+}
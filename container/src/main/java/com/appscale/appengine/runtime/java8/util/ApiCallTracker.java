@@ -0,0 +1,123 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks in-flight API calls for a request.
+ *
+ * The number of concurrent calls for a request is limited. At the end of the
+ * request calls that are still in-flight are given a grace period to
+ * complete and are then cancelled.
+ */
+public final class ApiCallTracker {
+  public static final String PROPERTY_MAX_CONCURRENT_CALLS = "appscale.api.max_concurrent_calls";
+  public static final String PROPERTY_REQUEST_END_GRACE_MILLIS = "appscale.api.request_end_grace_ms";
+  public static final int DEFAULT_MAX_CONCURRENT_CALLS = 100;
+  public static final long DEFAULT_REQUEST_END_GRACE_MILLIS = 5_000L;
+
+  private static final LongAdder cancelledCalls = new LongAdder();
+  private static final LongAdder graceTimeouts = new LongAdder();
+
+  private final int maxConcurrentCalls;
+  private final Semaphore permits;
+  private final Set<Future<?>> inFlight = ConcurrentHashMap.newKeySet();
+
+  public ApiCallTracker(final int maxConcurrentCalls) {
+    if (maxConcurrentCalls < 1) {
+      throw new IllegalArgumentException("Invalid maximum concurrent calls: " + maxConcurrentCalls);
+    }
+    this.maxConcurrentCalls = maxConcurrentCalls;
+    this.permits = new Semaphore(maxConcurrentCalls);
+  }
+
+  public static int maxConcurrentCalls(final Map<String, String> properties) {
+    return Integer.parseInt(properties.getOrDefault(
+        PROPERTY_MAX_CONCURRENT_CALLS, String.valueOf(DEFAULT_MAX_CONCURRENT_CALLS)));
+  }
+
+  public static long requestEndGraceMillis(final Map<String, String> properties) {
+    return Long.parseLong(properties.getOrDefault(
+        PROPERTY_REQUEST_END_GRACE_MILLIS, String.valueOf(DEFAULT_REQUEST_END_GRACE_MILLIS)));
+  }
+
+  /**
+   * Total calls cancelled at request end.
+   */
+  public static long getCancelledCalls() {
+    return cancelledCalls.sum();
+  }
+
+  /**
+   * Total requests that ended with calls still in-flight after the grace period.
+   */
+  public static long getGraceTimeouts() {
+    return graceTimeouts.sum();
+  }
+
+  /**
+   * Start tracking a call, waiting if the request is at the concurrent call limit.
+   */
+  public void acquire(final Future<?> call) throws InterruptedException {
+    permits.acquire();
+    inFlight.add(call);
+  }
+
+  /**
+   * Stop tracking a call, this is a no-op if the call is not tracked.
+   */
+  public void release(final Future<?> call) {
+    if (inFlight.remove(call)) {
+      permits.release();
+    }
+  }
+
+  public int getInFlight() {
+    return inFlight.size();
+  }
+
+  /**
+   * Wait for in-flight calls to complete, cancelling any that do not complete
+   * within the grace period.
+   *
+   * @return The number of calls cancelled
+   * @throws InterruptedException If interrupted while waiting, in-flight calls are cancelled
+   */
+  public int awaitCompletion(final long graceMillis) throws InterruptedException {
+    if (inFlight.isEmpty()) {
+      return 0;
+    }
+    boolean interrupted = false;
+    try {
+      if (permits.tryAcquire(maxConcurrentCalls, graceMillis, TimeUnit.MILLISECONDS)) {
+        permits.release(maxConcurrentCalls);
+        return 0;
+      }
+    } catch (final InterruptedException e) {
+      interrupted = true;
+    }
+    graceTimeouts.increment();
+    int cancelled = 0;
+    for (final Future<?> call : inFlight) {
+      if (call.cancel(true)) {
+        cancelled++;
+      }
+      release(call);
+    }
+    cancelledCalls.add(cancelled);
+    if (interrupted) {
+      throw new InterruptedException();
+    }
+    return cancelled;
+  }
+}
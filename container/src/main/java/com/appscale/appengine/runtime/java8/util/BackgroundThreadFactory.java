@@ -10,25 +10,42 @@ import com.google.appengine.tools.development.DevSocketImplFactory;
 import com.google.apphosting.api.ApiProxy;
 
 /**
+ * Thread factory for background threads.
  *
+ * Each thread runs with its own environment and the number of running
+ * threads is limited by {@link BackgroundThreads}.
  */
 public class BackgroundThreadFactory implements ThreadFactory {
 
   public Thread newThread(final Runnable runnable) {
     final RuntimeEnvironment environment = RuntimeEnvironment.unauthChild(RuntimeEnvironment.current());
     final boolean callerNativeMode = DevSocketImplFactory.isNativeSocketMode();
-    Thread thread = new Thread(runnable) {
+    final BackgroundThreads backgroundThreads = BackgroundThreads.get();
+    return new Thread(runnable) {
+      public void start() {
+        backgroundThreads.acquire();
+        try {
+          super.start();
+        } catch (final RuntimeException e) {
+          backgroundThreads.release();
+          throw e;
+        }
+      }
+
       public void run() {
         DevSocketImplFactory.setSocketNativeMode(callerNativeMode);
         ApiProxy.setEnvironmentForCurrentThread(environment);
         try {
           runnable.run();
         } finally {
-          RuntimeEnvironmentListener.requestEnd(environment);
+          try {
+            RuntimeEnvironmentListener.requestEnd(environment);
+          } finally {
+            ApiProxy.clearEnvironmentForCurrentThread();
+            backgroundThreads.release();
+          }
         }
       }
     };
-    System.setProperty("devappserver-thread-" + thread.getName(), "true");
-    return thread;
   }
-}
\ No newline at end of file
+}
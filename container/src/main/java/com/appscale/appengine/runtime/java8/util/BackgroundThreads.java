@@ -0,0 +1,159 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+import com.appscale.appengine.runtime.java8.util.Metrics.MetricsProvider;
+
+/**
+ * Limit for running background threads.
+ *
+ * A background thread holds a slot while running. Starting a thread when
+ * at the limit waits for a slot if the queue is not full, the thread fails
+ * to start if the queue is full or no slot is available before the
+ * timeout.
+ */
+public final class BackgroundThreads implements DiagnosticsProvider, MetricsProvider {
+  public static final String PROPERTY_MAX_THREADS = "appscale.background.max_threads";
+  public static final String PROPERTY_QUEUE_SIZE = "appscale.background.queue_size";
+  public static final String PROPERTY_QUEUE_TIMEOUT_MILLIS = "appscale.background.queue_timeout_ms";
+
+  private static final BackgroundThreads instance = new BackgroundThreads(256, 16, 1000L);
+
+  private final LongAdder started = new LongAdder();
+  private final LongAdder queuedTotal = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private int maxThreads;
+  private int queueSize;
+  private long queueTimeoutMillis;
+  private int running;
+  private int queued;
+
+  BackgroundThreads(final int maxThreads, final int queueSize, final long queueTimeoutMillis) {
+    this.maxThreads = maxThreads;
+    this.queueSize = queueSize;
+    this.queueTimeoutMillis = queueTimeoutMillis;
+  }
+
+  public static BackgroundThreads get() {
+    return instance;
+  }
+
+  /**
+   * Configure the limits from service properties.
+   */
+  public synchronized void configure(final Map<String, String> properties) {
+    maxThreads = Integer.parseInt(properties.getOrDefault(PROPERTY_MAX_THREADS, String.valueOf(maxThreads)).trim());
+    queueSize = Integer.parseInt(properties.getOrDefault(PROPERTY_QUEUE_SIZE, String.valueOf(queueSize)).trim());
+    queueTimeoutMillis = Long.parseLong(properties.getOrDefault(
+        PROPERTY_QUEUE_TIMEOUT_MILLIS, String.valueOf(queueTimeoutMillis)).trim());
+    notifyAll();
+  }
+
+  @Override
+  public String getName() {
+    return "background";
+  }
+
+  /**
+   * Acquire a slot for a background thread, waiting if at the limit.
+   *
+   * @throws IllegalStateException If no slot is available
+   */
+  synchronized void acquire() {
+    if (running < maxThreads) {
+      running++;
+      started.increment();
+      return;
+    }
+    if (queued >= queueSize) {
+      rejected.increment();
+      throw new IllegalStateException("Background thread limit reached (" + maxThreads + ")");
+    }
+    queued++;
+    queuedTotal.increment();
+    boolean interrupted = false;
+    try {
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+      long remaining;
+      while (running >= maxThreads && (remaining = deadline - System.nanoTime()) > 0) {
+        try {
+          TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        } catch (final InterruptedException e) {
+          interrupted = true;
+          break;
+        }
+      }
+    } finally {
+      queued--;
+    }
+    if (running >= maxThreads) {
+      rejected.increment();
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      throw new IllegalStateException("Background thread limit reached (" + maxThreads + ")");
+    }
+    running++;
+    started.increment();
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  synchronized void release() {
+    running--;
+    notify();
+  }
+
+  synchronized int getRunning() {
+    return running;
+  }
+
+  synchronized int getQueued() {
+    return queued;
+  }
+
+  long getRejected() {
+    return rejected.sum();
+  }
+
+  @Override
+  public void report(final PrintWriter out) {
+    final int currentRunning;
+    final int currentQueued;
+    final int currentMaxThreads;
+    final int currentQueueSize;
+    synchronized (this) {
+      currentRunning = running;
+      currentQueued = queued;
+      currentMaxThreads = maxThreads;
+      currentQueueSize = queueSize;
+    }
+    out.println("max_threads " + currentMaxThreads);
+    out.println("queue_size " + currentQueueSize);
+    out.println("running " + currentRunning);
+    out.println("queued " + currentQueued);
+    out.println("started " + started.sum());
+    out.println("queued_total " + queuedTotal.sum());
+    out.println("rejected " + rejected.sum());
+  }
+
+  @Override
+  public void collect(final MetricsWriter out) {
+    out.gauge("appscale_background_threads_running", "Running background threads", getRunning());
+    out.gauge("appscale_background_threads_queued", "Background threads waiting to start", getQueued());
+    out.counter("appscale_background_threads_started_total", "Background threads started", started.sum());
+    out.counter("appscale_background_threads_queued_total", "Background threads that waited to start",
+        queuedTotal.sum());
+    out.counter("appscale_background_threads_rejected_total", "Background threads that failed to start",
+        rejected.sum());
+  }
+}
@@ -5,69 +5,74 @@
  */
 package com.appscale.appengine.runtime.java8.util;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment.AttributeKey;
 import com.google.appengine.tools.development.DevSocketImplFactory;
 import com.google.apphosting.api.ApiProxy;
-import com.google.apphosting.api.ApiProxy.Environment;
 
 /**
+ * Thread factory for threads bound to the current request.
  *
+ * Threads for a request are tracked together so that at request end all
+ * threads are interrupted before waiting, and the wait is shared rather
+ * than per thread.
  */
 public class CurrentRequestThreadFactory implements ThreadFactory {
   private static final Logger logger = Logger.getLogger(CurrentRequestThreadFactory.class.getName());
+  private static final AttributeKey<RequestThreads> ATTR_REQUEST_THREADS =
+      AttributeKey.of("com.appscale.appengine.runtime.request_threads", RequestThreads.class);
+  private static final long INTERRUPT_WAIT_MILLIS = 100L;
 
   public Thread newThread(final Runnable runnable) {
     final boolean callerNativeMode = DevSocketImplFactory.isNativeSocketMode();
-    final Environment environment = RuntimeEnvironment.current();
-    DevSocketImplFactory.setSocketNativeMode(callerNativeMode);
-    Thread thread = new Thread() {
+    final RuntimeEnvironment environment = RuntimeEnvironment.current();
+    final RequestThreads requestThreads = getRequestThreads(environment);
+    return new Thread() {
       public void start() {
-        super.start();
-        RuntimeEnvironmentListener.onRequestEnd( environment -> {
-          if (isAlive()) {
-            logger.info("Interrupting request thread: " + getName());
-            interrupt();
-            logger.info("Waiting up to 100ms for thread to complete: " + getName());
-
-            try {
-              join(100L);
-            } catch (InterruptedException e) {
-              logger.info("Interrupted while waiting.");
-            }
-
-            if (isAlive()) {
-              logger.info("Interrupting request thread again: " + getName());
-              interrupt();
-              final long remaining = getRemainingMillis(environment);
-              logger.info("Waiting up to " + remaining + " ms for thread to complete: " + getName());
-
-              try {
-                join(remaining);
-              } catch (InterruptedException e) {
-                logger.info("Interrupted while waiting.");
-              }
-
-              if (isAlive()) {
-                Throwable stack = new Throwable();
-                stack.setStackTrace(getStackTrace());
-                logger.log(Level.SEVERE, "Thread left running: " + getName(), stack);
-              }
-            }
-          }
-        });
+        requestThreads.add(this);
+        try {
+          super.start();
+        } catch (final RuntimeException e) {
+          requestThreads.remove(this);
+          throw e;
+        }
       }
 
       public void run() {
+        DevSocketImplFactory.setSocketNativeMode(callerNativeMode);
         ApiProxy.setEnvironmentForCurrentThread(environment);
-        runnable.run();
+        try {
+          runnable.run();
+        } finally {
+          ApiProxy.clearEnvironmentForCurrentThread();
+          requestThreads.remove(this);
+        }
       }
     };
-    System.setProperty("devappserver-thread-" + thread.getName(), "true");
-    return thread;
+  }
+
+  private static RequestThreads getRequestThreads(final RuntimeEnvironment environment) {
+    RequestThreads requestThreads = environment.getAttribute(ATTR_REQUEST_THREADS).orElse(null);
+    if (requestThreads == null) {
+      final RequestThreads created = new RequestThreads();
+      requestThreads = (RequestThreads) environment.getAttributes()
+          .putIfAbsent(ATTR_REQUEST_THREADS.getName(), created);
+      if (requestThreads == null) {
+        requestThreads = created;
+        RuntimeEnvironmentListener.onRequestEnd(
+            requestEnvironment -> created.terminate(() -> getRemainingMillis(requestEnvironment)));
+      }
+    }
+    return requestThreads;
   }
 
   private static long getRemainingMillis(final RuntimeEnvironment environment) {
@@ -75,4 +80,88 @@ public class CurrentRequestThreadFactory implements ThreadFactory {
     final Date startDate = environment.getAttribute(RuntimeEnvironment.ATTR_STARTTIME).orElseGet(Date::new);
     return TimeUnit.MINUTES.toMillis(offline ? 10 : 1) - Math.max(0, System.currentTimeMillis() - startDate.getTime());
   }
-}
\ No newline at end of file
+
+  /**
+   * Started threads for a request that have not yet completed.
+   */
+  static final class RequestThreads {
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    void add(final Thread thread) {
+      threads.add(thread);
+    }
+
+    void remove(final Thread thread) {
+      threads.remove(thread);
+    }
+
+    /**
+     * Interrupt all threads and wait briefly, then interrupt any remaining
+     * threads again and wait up to the remaining time for the request.
+     *
+     * @return The number of threads left running
+     */
+    int terminate(final LongSupplier remainingMillis) {
+      List<Thread> alive = alive();
+      if (alive.isEmpty()) {
+        return 0;
+      }
+      logger.info("Interrupting " + alive.size() + " request threads");
+      alive.forEach(Thread::interrupt);
+      if (await(alive, INTERRUPT_WAIT_MILLIS)) {
+        alive = alive();
+        if (!alive.isEmpty()) {
+          logger.info("Interrupting " + alive.size() + " request threads again");
+          alive.forEach(Thread::interrupt);
+          final long remaining = remainingMillis.getAsLong();
+          logger.info("Waiting up to " + remaining + " ms for request threads to complete");
+          await(alive, remaining);
+        }
+      }
+      alive = alive();
+      for (final Thread thread : alive) {
+        final Throwable stack = new Throwable();
+        stack.setStackTrace(thread.getStackTrace());
+        logger.log(Level.SEVERE, "Thread left running: " + thread.getName(), stack);
+      }
+      return alive.size();
+    }
+
+    /**
+     * Threads still running, excluding the current thread in case the
+     * request is ended from one of its own threads.
+     */
+    private List<Thread> alive() {
+      final Thread current = Thread.currentThread();
+      final List<Thread> alive = new ArrayList<>(threads.size());
+      for (final Thread thread : threads) {
+        if (thread != current && thread.isAlive()) {
+          alive.add(thread);
+        }
+      }
+      return alive;
+    }
+
+    /**
+     * Wait for the threads to complete, the timeout is for all threads.
+     *
+     * @return False if interrupted while waiting
+     */
+    private static boolean await(final List<Thread> threads, final long timeoutMillis) {
+      final long deadline = System.currentTimeMillis() + timeoutMillis;
+      try {
+        for (final Thread thread : threads) {
+          final long wait = deadline - System.currentTimeMillis();
+          if (wait <= 0) {
+            break;
+          }
+          thread.join(wait);
+        }
+        return true;
+      } catch (final InterruptedException e) {
+        logger.info("Interrupted while waiting.");
+        return false;
+      }
+    }
+  }
+}
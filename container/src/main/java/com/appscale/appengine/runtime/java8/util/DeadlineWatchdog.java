@@ -0,0 +1,280 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+import com.appscale.appengine.runtime.java8.util.Metrics.MetricsProvider;
+
+/**
+ * Watchdog enforcing request deadlines.
+ *
+ * Request threads past their soft deadline are interrupted. If the thread
+ * is still running the request at the hard deadline the stack is logged
+ * and the thread is interrupted again.
+ *
+ * Deadlines are kept in a hashed timer wheel so watching a request is a
+ * set insert and removal, and a single thread checks one slot per tick.
+ */
+public final class DeadlineWatchdog implements DiagnosticsProvider, MetricsProvider {
+  public static final String PROPERTY_ENABLED = "appscale.deadline.watchdog";
+  public static final String PROPERTY_HARD_DELAY_MILLIS = "appscale.deadline.hard_delay_ms";
+
+  private static final Logger logger = Logger.getLogger(DeadlineWatchdog.class.getName());
+  private static final long TICK_MILLIS = 100L;
+  private static final int WHEEL_SIZE = 512;
+  private static final int MAX_ROUTES = 256;
+  private static final String OTHER_ROUTE = "other";
+
+  private final long hardDelayTicks;
+  private final LongSupplier clock;
+  private final long startNanos;
+  private final Slot[] wheel;
+  private final ConcurrentMap<String, RouteCounts> routes = new ConcurrentHashMap<>();
+  private final LongAdder watched = new LongAdder();
+  private volatile long processingTick;
+  private volatile Thread thread;
+
+  DeadlineWatchdog(final long hardDelayMillis, final LongSupplier clock) {
+    this.hardDelayTicks = Math.max(1L, hardDelayMillis / TICK_MILLIS);
+    this.clock = clock;
+    this.startNanos = clock.getAsLong();
+    this.wheel = new Slot[WHEEL_SIZE];
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      wheel[i] = new Slot();
+    }
+  }
+
+  /**
+   * Create a watchdog for the given configuration.
+   *
+   * @return The watchdog or null if deadlines are not enforced
+   */
+  public static DeadlineWatchdog fromProperties(final Map<String, String> properties) {
+    if (!Boolean.parseBoolean(properties.getOrDefault(PROPERTY_ENABLED, "true").trim())) {
+      return null;
+    }
+    return new DeadlineWatchdog(
+        Long.parseLong(properties.getOrDefault(PROPERTY_HARD_DELAY_MILLIS, "10000").trim()),
+        System::nanoTime);
+  }
+
+  @Override
+  public String getName() {
+    return "deadline";
+  }
+
+  public void start() {
+    final Thread watchdogThread = new Thread(this::run, "deadline-watchdog");
+    watchdogThread.setDaemon(true);
+    thread = watchdogThread;
+    watchdogThread.start();
+  }
+
+  public void stop() {
+    final Thread watchdogThread = thread;
+    thread = null;
+    if (watchdogThread != null) {
+      watchdogThread.interrupt();
+    }
+  }
+
+  /**
+   * Watch the current thread until the returned deadline is cancelled.
+   *
+   * @param route The route for deadline counts
+   * @param softDeadlineMillis The time until the soft deadline
+   */
+  public Deadline watch(final String route, final long softDeadlineMillis) {
+    final Deadline deadline = new Deadline(Thread.currentThread(), route);
+    watched.increment();
+    schedule(deadline, currentTick() + Math.max(1L, softDeadlineMillis / TICK_MILLIS));
+    return deadline;
+  }
+
+  private long currentTick() {
+    return TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - startNanos) / TICK_MILLIS;
+  }
+
+  /**
+   * Add the deadline to the slot for the tick.
+   *
+   * Ticks at or before the one being processed would not be seen until the
+   * next rotation. If the watchdog reached the tick while the deadline was
+   * being added then the deadline is moved to a later tick, unless the
+   * watchdog already removed it from the slot to expire it.
+   */
+  private void schedule(final Deadline deadline, final long tick) {
+    long scheduleTick = tick;
+    while (true) {
+      final Slot slot = slot(deadline, Math.max(scheduleTick, processingTick + 1));
+      slot.deadlines.add(deadline);
+      final long nowProcessingTick = processingTick;
+      if (deadline.tick > nowProcessingTick || !slot.deadlines.remove(deadline)) {
+        return;
+      }
+      scheduleTick = nowProcessingTick + 1;
+    }
+  }
+
+  private Slot slot(final Deadline deadline, final long tick) {
+    deadline.tick = tick;
+    deadline.slot = wheel[(int) (tick % WHEEL_SIZE)];
+    return deadline.slot;
+  }
+
+  private void run() {
+    long lastTick = processingTick;
+    while (thread == Thread.currentThread()) {
+      try {
+        Thread.sleep(TICK_MILLIS);
+      } catch (final InterruptedException e) {
+        break;
+      }
+      final long nowTick = currentTick();
+      lastTick = advance(lastTick, nowTick);
+    }
+  }
+
+  /**
+   * Process slots for ticks after the last processed tick.
+   *
+   * @return The last processed tick
+   */
+  long advance(final long lastTick, final long nowTick) {
+    for (long tick = lastTick + 1; tick <= nowTick && tick <= lastTick + WHEEL_SIZE; tick++) {
+      processingTick = tick;
+      final Slot slot = wheel[(int) (tick % WHEEL_SIZE)];
+      for (final Deadline deadline : slot.deadlines) {
+        // removal decides ownership with a concurrent reschedule
+        if (deadline.tick <= nowTick && slot.deadlines.remove(deadline)) {
+          expire(deadline);
+        }
+      }
+    }
+    processingTick = nowTick;
+    return nowTick;
+  }
+
+  private void expire(final Deadline deadline) {
+    synchronized (deadline) {
+      if (deadline.cancelled) {
+        return;
+      }
+      deadline.fired = true;
+      deadline.thread.interrupt();
+    }
+    final RouteCounts counts = getRouteCounts(deadline.route);
+    if (!deadline.hard) {
+      counts.soft.increment();
+      logger.warning("Interrupted request thread past soft deadline: " + deadline.thread.getName() +
+          " " + deadline.route);
+      deadline.hard = true;
+      schedule(deadline, deadline.tick + hardDelayTicks);
+    } else {
+      counts.hard.increment();
+      final Throwable stack = new Throwable();
+      stack.setStackTrace(deadline.thread.getStackTrace());
+      logger.log(Level.SEVERE, "Request thread running past hard deadline: " + deadline.thread.getName() +
+          " " + deadline.route, stack);
+    }
+  }
+
+  private RouteCounts getRouteCounts(final String route) {
+    RouteCounts counts = routes.get(route);
+    if (counts == null) {
+      counts = routes.size() < MAX_ROUTES ?
+          routes.computeIfAbsent(route, key -> new RouteCounts()) :
+          routes.computeIfAbsent(OTHER_ROUTE, key -> new RouteCounts());
+    }
+    return counts;
+  }
+
+  long getSoftDeadlines() {
+    return routes.values().stream().mapToLong(counts -> counts.soft.sum()).sum();
+  }
+
+  long getHardDeadlines() {
+    return routes.values().stream().mapToLong(counts -> counts.hard.sum()).sum();
+  }
+
+  @Override
+  public void report(final PrintWriter out) {
+    out.println("watched " + watched.sum());
+    out.println("soft_deadlines " + getSoftDeadlines());
+    out.println("hard_deadlines " + getHardDeadlines());
+    for (final Map.Entry<String, RouteCounts> route : routes.entrySet()) {
+      out.println("route " + route.getKey() + " soft " + route.getValue().soft.sum() +
+          " hard " + route.getValue().hard.sum());
+    }
+  }
+
+  @Override
+  public void collect(final MetricsWriter out) {
+    out.counter("appscale_deadline_watched_total", "Requests watched for deadlines", watched.sum());
+    out.family("appscale_deadline_exceeded_total", MetricsWriter.COUNTER, "Request deadlines exceeded by route");
+    for (final Map.Entry<String, RouteCounts> route : routes.entrySet()) {
+      out.sample("appscale_deadline_exceeded_total", "route", route.getKey(), "deadline", "soft",
+          route.getValue().soft.sum());
+      out.sample("appscale_deadline_exceeded_total", "route", route.getKey(), "deadline", "hard",
+          route.getValue().hard.sum());
+    }
+  }
+
+  private static final class Slot {
+    private final Set<Deadline> deadlines = ConcurrentHashMap.newKeySet();
+  }
+
+  private static final class RouteCounts {
+    private final LongAdder soft = new LongAdder();
+    private final LongAdder hard = new LongAdder();
+  }
+
+  /**
+   * A watched request deadline.
+   */
+  public static final class Deadline {
+    private final Thread thread;
+    private final String route;
+    private volatile long tick;
+    private volatile Slot slot;
+    private volatile boolean hard;
+    private boolean cancelled;
+    private boolean fired;
+
+    private Deadline(final Thread thread, final String route) {
+      this.thread = thread;
+      this.route = route;
+    }
+
+    /**
+     * Stop watching, this must be called from the watched thread.
+     *
+     * Any interrupt from the watchdog is cleared so it does not affect later
+     * use of the thread.
+     */
+    public void cancel() {
+      final boolean interrupted;
+      synchronized (this) {
+        cancelled = true;
+        interrupted = fired;
+      }
+      slot.deadlines.remove(this);
+      if (interrupted) {
+        Thread.interrupted();
+      }
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry for runtime diagnostics reports.
+ */
+public final class Diagnostics {
+  private static final Map<String, DiagnosticsProvider> providers = new ConcurrentSkipListMap<>();
+
+  private Diagnostics() {
+  }
+
+  public static void register(final DiagnosticsProvider provider) {
+    providers.put(provider.getName(), provider);
+  }
+
+  public static void unregister(final DiagnosticsProvider provider) {
+    providers.remove(provider.getName(), provider);
+  }
+
+  public static Optional<DiagnosticsProvider> get(final String name) {
+    return Optional.ofNullable(providers.get(name));
+  }
+
+  public static Collection<DiagnosticsProvider> all() {
+    return Collections.unmodifiableCollection(providers.values());
+  }
+
+  public interface DiagnosticsProvider {
+
+    /**
+     * The name for the report, used as the diagnostics path.
+     */
+    String getName();
+
+    /**
+     * Write a plain text report.
+     */
+    void report(PrintWriter out);
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Optional;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+import com.google.apphosting.api.ApiProxy;
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ * Serves registered diagnostics reports to administrators.
+ */
+public class DiagnosticsServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+    final Environment environment = ApiProxy.getCurrentEnvironment();
+    if (environment == null || !environment.isAdmin()) {
+      resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    final String pathInfo = req.getPathInfo();
+    final String name = pathInfo == null || pathInfo.length() <= 1 ? null : pathInfo.substring(1);
+    resp.setContentType("text/plain");
+    resp.setHeader("Cache-Control", "no-cache");
+    if (name == null) {
+      final PrintWriter out = resp.getWriter();
+      for (final DiagnosticsProvider provider : Diagnostics.all()) {
+        out.println(provider.getName());
+      }
+    } else {
+      final Optional<DiagnosticsProvider> provider = Diagnostics.get(name);
+      if (provider.isPresent()) {
+        provider.get().report(resp.getWriter());
+      } else {
+        resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      }
+    }
+  }
+}
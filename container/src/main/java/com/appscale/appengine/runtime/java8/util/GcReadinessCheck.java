@@ -0,0 +1,72 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import com.appscale.appengine.runtime.java8.util.Readiness.ReadinessCheck;
+import com.appscale.appengine.runtime.java8.util.Readiness.Status;
+
+/**
+ * Readiness check for the proportion of time spent in garbage collection
+ * since the previous check.
+ */
+public final class GcReadinessCheck implements ReadinessCheck {
+  private static final double DEGRADED_RATIO = 0.25;
+  private static final double UNREADY_RATIO = 0.5;
+
+  private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+  private final LongSupplier gcMillis;
+  private final LongSupplier clock;
+  private long lastGcMillis;
+  private long lastNanos;
+
+  public GcReadinessCheck() {
+    this.gcMillis = this::collectionMillis;
+    this.clock = System::nanoTime;
+    this.lastGcMillis = gcMillis.getAsLong();
+    this.lastNanos = clock.getAsLong();
+  }
+
+  GcReadinessCheck(final LongSupplier gcMillis, final LongSupplier clock) {
+    this.gcMillis = gcMillis;
+    this.clock = clock;
+    this.lastGcMillis = gcMillis.getAsLong();
+    this.lastNanos = clock.getAsLong();
+  }
+
+  @Override
+  public String getName() {
+    return "gc";
+  }
+
+  @Override
+  public Status check() {
+    final long nowGcMillis = gcMillis.getAsLong();
+    final long now = clock.getAsLong();
+    final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - lastNanos);
+    final double ratio = elapsedMillis <= 0L ? 0.0 : (nowGcMillis - lastGcMillis) / (double) elapsedMillis;
+    lastGcMillis = nowGcMillis;
+    lastNanos = now;
+    if (ratio >= UNREADY_RATIO) {
+      return Status.UNREADY;
+    } else if (ratio >= DEGRADED_RATIO) {
+      return Status.DEGRADED;
+    }
+    return Status.READY;
+  }
+
+  private long collectionMillis() {
+    long millis = 0L;
+    for (final GarbageCollectorMXBean gc : garbageCollectors) {
+      millis += Math.max(0L, gc.getCollectionTime());
+    }
+    return millis;
+  }
+}
@@ -9,25 +9,55 @@ import java.io.IOException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import com.appscale.appengine.runtime.java8.util.Readiness.Result;
+import com.appscale.appengine.runtime.java8.util.Readiness.Status;
 
 /**
+ * Serves the health check and readiness endpoints.
  *
+ * The health check reports that the instance is alive. Readiness reports
+ * ready or degraded with a 200 response and unready with a 503 response,
+ * with the names of the failing checks so traffic can be moved off
+ * instances that cannot serve it.
  */
 public class HealthCheckServlet extends HttpServlet {
   private static final long serialVersionUID = 1L;
 
+  public static final String READINESS_PATH = "/_ah/readiness";
+
   @Override
   protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
-    doHealth(resp);
+    doHealth(req, resp);
   }
 
   @Override
   protected void doPost(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
-    doHealth(resp);
+    doHealth(req, resp);
+  }
+
+  private void doHealth(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+    if (READINESS_PATH.equals(request.getServletPath())) {
+      writeReadiness(response);
+    } else {
+      response.setContentType("text/plain");
+      response.getWriter().write("ok");
+    }
   }
 
-  private void doHealth(HttpServletResponse response) throws IOException {
+  /**
+   * Write the current readiness, the result is cached so this is cheap.
+   */
+  public static void writeReadiness(final HttpServletResponse response) throws IOException {
+    final Result result = Readiness.get().getResult();
     response.setContentType("text/plain");
-    response.getWriter().write("ok");
+    response.setHeader("Cache-Control", "no-cache");
+    if (result.getStatus() == Status.UNREADY) {
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+    final StringBuilder body = new StringBuilder(result.getStatus().toString());
+    if (!result.getReasons().isEmpty()) {
+      body.append(' ').append(String.join(",", result.getReasons()));
+    }
+    response.getWriter().write(body.toString());
   }
 }
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed bucket latency histogram for metrics.
+ *
+ * Recording is a bucket search and two adder increments so it is suitable
+ * for the request path.
+ */
+public final class Histogram {
+  private static final double[] LATENCY_BOUNDS_SECONDS = {
+      0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 30.0, 60.0
+  };
+
+  private final double[] bounds;
+  private final long[] boundsNanos;
+  private final LongAdder[] buckets;
+  private final LongAdder sumNanos = new LongAdder();
+
+  public Histogram(final double... boundsSeconds) {
+    this.bounds = boundsSeconds.clone();
+    this.boundsNanos = new long[bounds.length];
+    for (int i = 0; i < bounds.length; i++) {
+      if (i > 0 && bounds[i] <= bounds[i - 1]) {
+        throw new IllegalArgumentException("Histogram bounds must increase");
+      }
+      boundsNanos[i] = (long) (bounds[i] * TimeUnit.SECONDS.toNanos(1));
+    }
+    this.buckets = new LongAdder[bounds.length + 1];
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Histogram with buckets from 1ms to 60s.
+   */
+  public static Histogram latency() {
+    return new Histogram(LATENCY_BOUNDS_SECONDS);
+  }
+
+  public void recordNanos(final long nanos) {
+    int bucket = 0;
+    while (bucket < boundsNanos.length && nanos > boundsNanos[bucket]) {
+      bucket++;
+    }
+    buckets[bucket].increment();
+    sumNanos.add(nanos);
+  }
+
+  public void recordMillis(final long millis) {
+    recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  /**
+   * The upper bounds for buckets in seconds, excluding the overflow bucket.
+   */
+  public double[] getBounds() {
+    return bounds.clone();
+  }
+
+  /**
+   * Non-cumulative counts for each bucket including the overflow bucket.
+   */
+  public long[] getCounts() {
+    final long[] counts = new long[buckets.length];
+    for (int i = 0; i < buckets.length; i++) {
+      counts[i] = buckets[i].sum();
+    }
+    return counts;
+  }
+
+  public double getSumSeconds() {
+    return sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import com.appscale.appengine.runtime.java8.util.Metrics.MetricsProvider;
+
+/**
+ * Garbage collection, memory pool and thread metrics for the JVM.
+ */
+public final class JvmMetrics implements MetricsProvider {
+  private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+  private final List<MemoryPoolMXBean> memoryPools = ManagementFactory.getMemoryPoolMXBeans();
+  private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  @Override
+  public String getName() {
+    return "jvm";
+  }
+
+  @Override
+  public void collect(final MetricsWriter out) {
+    out.family("jvm_gc_collections_total", MetricsWriter.COUNTER, "Garbage collections by collector");
+    for (final GarbageCollectorMXBean gc : garbageCollectors) {
+      out.sample("jvm_gc_collections_total", "gc", gc.getName(), gc.getCollectionCount());
+    }
+    out.family("jvm_gc_collection_seconds_total", MetricsWriter.COUNTER, "Garbage collection time by collector");
+    for (final GarbageCollectorMXBean gc : garbageCollectors) {
+      out.sample("jvm_gc_collection_seconds_total", "gc", gc.getName(), gc.getCollectionTime() / 1000.0);
+    }
+
+    final MemoryUsage heap = memory.getHeapMemoryUsage();
+    final MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+    out.family("jvm_memory_used_bytes", MetricsWriter.GAUGE, "Memory used by area");
+    out.sample("jvm_memory_used_bytes", "area", "heap", heap.getUsed());
+    out.sample("jvm_memory_used_bytes", "area", "nonheap", nonHeap.getUsed());
+    out.family("jvm_memory_committed_bytes", MetricsWriter.GAUGE, "Memory committed by area");
+    out.sample("jvm_memory_committed_bytes", "area", "heap", heap.getCommitted());
+    out.sample("jvm_memory_committed_bytes", "area", "nonheap", nonHeap.getCommitted());
+    out.gauge("jvm_memory_heap_max_bytes", "Maximum heap memory, -1 if undefined", heap.getMax());
+
+    out.family("jvm_memory_pool_used_bytes", MetricsWriter.GAUGE, "Memory used by pool");
+    for (final MemoryPoolMXBean pool : memoryPools) {
+      out.sample("jvm_memory_pool_used_bytes", "pool", pool.getName(), pool.getUsage().getUsed());
+    }
+    out.family("jvm_memory_pool_max_bytes", MetricsWriter.GAUGE, "Maximum memory by pool, -1 if undefined");
+    for (final MemoryPoolMXBean pool : memoryPools) {
+      out.sample("jvm_memory_pool_max_bytes", "pool", pool.getName(), pool.getUsage().getMax());
+    }
+
+    out.gauge("jvm_threads_current", "Current live threads", threads.getThreadCount());
+    out.gauge("jvm_threads_peak", "Peak live threads", threads.getPeakThreadCount());
+  }
+}
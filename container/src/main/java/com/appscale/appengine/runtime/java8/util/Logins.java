@@ -7,7 +7,10 @@ package com.appscale.appengine.runtime.java8.util;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.Cookie;
@@ -24,40 +27,74 @@ public class Logins {
   private static final String APPLICATION_ID_PROPERTY = "APPLICATION_ID";
   private static final String COOKIE_SECRET_PROPERTY  = "COOKIE_SECRET";
   private static final String CLOUD_ADMIN_MARKER      = "CLOUD_ADMIN";
+  private static final int    MAX_CACHED_COOKIES      = 1000;
 
   private static final Logger logger                  = Logger.getLogger( Logins.class.getName());
-  private static final String hextab                  = "0123456789abcdef";
+  private static volatile LoginState loginState;
 
   public static Optional<LoginCookie> cookie(final HttpServletRequest request) {
     final Cookie cookie = findCookie(request);
     if (cookie == null) {
       return Optional.empty();
     }
-    final LoginCookie cookieData = parseCookie(cookie);
-    if( !cookieData.isValid() ||
-        cookieData.getUserId() == null ||
-        cookieData.getEmail() == null ||
-        cookieData.getUserId().equals("") ||
-        cookieData.getEmail().equals("")) {
-      return Optional.empty();
-    } else {
-      return Optional.of(cookieData);
-    }
+    return verifiedCookie(cookie).login;
   }
 
   public static boolean isForceAdmin(final HttpServletRequest request, final String header) {
     final String secretHashHeader = request.getHeader(header);
     if(secretHashHeader != null) {
-      final byte[] secretHash = getSecretHash();
       return MessageDigest.isEqual(
-          secretHash,
+          refreshLoginState().secretHash,
           BaseEncoding.base16().lowerCase().decode(secretHashHeader.trim()));
     }
     return false;
   }
 
   static LoginCookie parseCookie(final Cookie cookie) {
-    String value = cookie.getValue();
+    return verifiedCookie(cookie).cookie;
+  }
+
+  /**
+   * Cookie verification results are cached by cookie value. The application
+   * id and cookie secret are checked for every cookie, if either has changed
+   * the cache is replaced so cached logins are verified again.
+   */
+  private static VerifiedCookie verifiedCookie(final Cookie cookie) {
+    final String value = cookie.getValue();
+    if (value == null) {
+      return new VerifiedCookie(new LoginCookie("", false, "", false));
+    }
+    final LoginState state = refreshLoginState();
+    VerifiedCookie verified = state.cookies.get(value);
+    if (verified == null) {
+      verified = new VerifiedCookie(parseCookie(value, state.appName, state.secret));
+      if (state.cookies.size() >= MAX_CACHED_COOKIES) {
+        final Iterator<String> keys = state.cookies.keySet().iterator();
+        if (keys.hasNext()) {
+          keys.next();
+          keys.remove();
+        }
+      }
+      state.cookies.put(value, verified);
+    }
+    return verified;
+  }
+
+  /**
+   * Properties are compared by reference, so the check is cheap unless they
+   * are set again.
+   */
+  private static LoginState refreshLoginState() {
+    final String appName = getAppName();
+    final String secret = getSecret();
+    LoginState state = loginState;
+    if (state == null || state.appName != appName || state.secret != secret) {
+      state = loginState = new LoginState(appName, secret);
+    }
+    return state;
+  }
+
+  private static LoginCookie parseCookie(String value, final String curApp, final String cookie_secret) {
 
     // replace chars
     value = value.replace("%3A", ":");
@@ -72,7 +109,6 @@ public class Logins {
     String nickname = parts[1];
     boolean admin = false;
     String[] adminList = parts[ 2 ].split( "," );
-    String curApp = getAppName();
     if (curApp == null) {
       logger.log(Level.FINE, "Current app is not set when placing cookie!");
     } else {
@@ -84,7 +120,6 @@ public class Logins {
     }
     String hsh = parts[3];
     boolean valid_cookie = true;
-    String cookie_secret = getSecret();
     if (cookie_secret == null || cookie_secret.isEmpty()) {
       return new LoginCookie("", false, "", false);
     }
@@ -95,16 +130,7 @@ public class Logins {
       try {
         MessageDigest sha = MessageDigest.getInstance(SHA);
         sha.update((email + nickname + parts[2] + cookie_secret).getBytes());
-        StringBuilder builder = new StringBuilder();
-        // padding 0
-        for (byte b : sha.digest()) {
-          byte tmphigh = (byte)(b >> 4);
-          tmphigh = (byte)(tmphigh & 0xf);
-          builder.append(hextab.charAt(tmphigh));
-          byte tmplow = (byte)(b & 0xf);
-          builder.append(hextab.charAt(tmplow));
-        }
-        String vhsh = builder.toString();
+        String vhsh = BaseEncoding.base16().lowerCase().encode(sha.digest());
         if (!vhsh.equals(hsh))
         {
           valid_cookie = false;
@@ -119,15 +145,12 @@ public class Logins {
       }
     }
     final LoginCookie cookieData = new LoginCookie(email, admin, nickname, valid_cookie);
-    logger.fine( "Login cookie: " + cookieData );
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine( "Login cookie: " + cookieData );
+    }
     return cookieData;
   }
 
-  private static byte[] getSecretHash() {
-    String secret = getAppName() + "/" + getSecret();
-    return toSHA1(secret.getBytes());
-  }
-
   private static byte[] toSHA1(byte[] convertme) {
     MessageDigest md;
     try {
@@ -158,6 +181,35 @@ public class Logins {
     return System.getProperty(COOKIE_SECRET_PROPERTY);
   }
 
+  private static final class LoginState {
+    private final String appName;
+    private final String secret;
+    private final byte[] secretHash;
+    private final ConcurrentMap<String, VerifiedCookie> cookies = new ConcurrentHashMap<>();
+
+    private LoginState(final String appName, final String secret) {
+      this.appName = appName;
+      this.secret = secret;
+      this.secretHash = toSHA1((appName + "/" + secret).getBytes());
+    }
+  }
+
+  private static final class VerifiedCookie {
+    private final LoginCookie cookie;
+    private final Optional<LoginCookie> login;
+
+    private VerifiedCookie(final LoginCookie cookie) {
+      this.cookie = cookie;
+      this.login = !cookie.isValid() ||
+          cookie.getUserId() == null ||
+          cookie.getEmail() == null ||
+          cookie.getUserId().equals("") ||
+          cookie.getEmail().equals("") ?
+          Optional.empty() :
+          Optional.of(cookie);
+    }
+  }
+
   public static final class LoginCookie {
     private final String  email;
     private final boolean isAdmin;
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry for runtime metrics in Prometheus text format.
+ *
+ * Providers read counters that are maintained on the request path, no work
+ * is done for metrics until they are collected.
+ */
+public final class Metrics {
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final Map<String, MetricsProvider> providers = new ConcurrentSkipListMap<>();
+
+  private Metrics() {
+  }
+
+  public static void register(final MetricsProvider provider) {
+    providers.put(provider.getName(), provider);
+  }
+
+  public static void unregister(final MetricsProvider provider) {
+    providers.remove(provider.getName(), provider);
+  }
+
+  /**
+   * Write metrics for all registered providers.
+   */
+  public static void write(final PrintWriter out) {
+    final MetricsWriter writer = new MetricsWriter(out);
+    for (final MetricsProvider provider : providers.values()) {
+      provider.collect(writer);
+    }
+    out.flush();
+  }
+
+  public interface MetricsProvider {
+
+    /**
+     * The name for the provider, metrics names should not depend on this.
+     */
+    String getName();
+
+    /**
+     * Write current metric values.
+     */
+    void collect(MetricsWriter out);
+  }
+}
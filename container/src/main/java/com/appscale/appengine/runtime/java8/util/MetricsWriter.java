@@ -0,0 +1,133 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.PrintWriter;
+
+/**
+ * Writer for metrics in the Prometheus text exposition format.
+ *
+ * Labelled samples must follow the family declaration for the metric.
+ */
+public final class MetricsWriter {
+  public static final String COUNTER = "counter";
+  public static final String GAUGE = "gauge";
+  public static final String HISTOGRAM = "histogram";
+
+  private final PrintWriter out;
+
+  MetricsWriter(final PrintWriter out) {
+    this.out = out;
+  }
+
+  public void counter(final String name, final String help, final long value) {
+    family(name, COUNTER, help);
+    sample(name, value);
+  }
+
+  public void counter(final String name, final String help, final double value) {
+    family(name, COUNTER, help);
+    sample(name, value);
+  }
+
+  public void gauge(final String name, final String help, final long value) {
+    family(name, GAUGE, help);
+    sample(name, value);
+  }
+
+  public void gauge(final String name, final String help, final double value) {
+    family(name, GAUGE, help);
+    sample(name, value);
+  }
+
+  public void histogram(final String name, final String help, final Histogram histogram) {
+    family(name, HISTOGRAM, help);
+    final double[] bounds = histogram.getBounds();
+    final long[] counts = histogram.getCounts();
+    long cumulative = 0L;
+    for (int i = 0; i < bounds.length; i++) {
+      cumulative += counts[i];
+      sample(name + "_bucket", "le", Double.toString(bounds[i]), cumulative);
+    }
+    cumulative += counts[bounds.length];
+    sample(name + "_bucket", "le", "+Inf", cumulative);
+    sample(name + "_sum", histogram.getSumSeconds());
+    sample(name + "_count", cumulative);
+  }
+
+  public void family(final String name, final String type, final String help) {
+    out.print("# HELP ");
+    out.print(name);
+    out.print(' ');
+    out.println(help.replace("\\", "\\\\").replace("\n", "\\n"));
+    out.print("# TYPE ");
+    out.print(name);
+    out.print(' ');
+    out.println(type);
+  }
+
+  public void sample(final String name, final long value) {
+    out.print(name);
+    out.print(' ');
+    out.println(value);
+  }
+
+  public void sample(final String name, final double value) {
+    out.print(name);
+    out.print(' ');
+    out.println(format(value));
+  }
+
+  public void sample(final String name, final String label, final String labelValue, final long value) {
+    labels(name, label, labelValue);
+    out.println(value);
+  }
+
+  public void sample(final String name, final String label, final String labelValue, final double value) {
+    labels(name, label, labelValue);
+    out.println(format(value));
+  }
+
+  public void sample(
+      final String name,
+      final String label,
+      final String labelValue,
+      final String label2,
+      final String labelValue2,
+      final long value
+  ) {
+    out.print(name);
+    out.print('{');
+    label(label, labelValue);
+    out.print(',');
+    label(label2, labelValue2);
+    out.print("} ");
+    out.println(value);
+  }
+
+  private void labels(final String name, final String label, final String labelValue) {
+    out.print(name);
+    out.print('{');
+    label(label, labelValue);
+    out.print("} ");
+  }
+
+  private void label(final String label, final String labelValue) {
+    out.print(label);
+    out.print("=\"");
+    out.print(labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+    out.print('"');
+  }
+
+  private static String format(final double value) {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    } else if (Double.isInfinite(value)) {
+      return value > 0 ? "+Inf" : "-Inf";
+    }
+    return Double.toString(value);
+  }
+}
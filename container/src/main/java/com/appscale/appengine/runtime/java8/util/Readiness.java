@@ -0,0 +1,186 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+
+/**
+ * Registry for readiness checks with a cached result.
+ *
+ * Checks are run at most once per interval by the first caller after the
+ * interval expires, other callers use the previous result so readiness
+ * requests do not wait on or repeat the checks.
+ *
+ * An instance is unready until startup completes and once draining.
+ */
+public final class Readiness implements DiagnosticsProvider {
+  public static final String PROPERTY_INTERVAL_MILLIS = "appscale.readiness.interval_ms";
+
+  private static final Readiness instance = new Readiness(System::nanoTime);
+
+  private final LongSupplier clock;
+  private final Map<String, ReadinessCheck> checks = new ConcurrentSkipListMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile long intervalNanos = TimeUnit.SECONDS.toNanos(1);
+  private volatile boolean started;
+  private volatile boolean draining;
+  private volatile Result result;
+
+  Readiness(final LongSupplier clock) {
+    this.clock = clock;
+    this.result = new Result(Status.UNREADY, Collections.singletonList("startup"), clock.getAsLong());
+  }
+
+  public static Readiness get() {
+    return instance;
+  }
+
+  /**
+   * Configure the check interval from service properties.
+   */
+  public void configure(final Map<String, String> properties) {
+    final String interval = properties.get(PROPERTY_INTERVAL_MILLIS);
+    if (interval != null) {
+      intervalNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(interval.trim()));
+    }
+  }
+
+  public void register(final ReadinessCheck check) {
+    checks.put(check.getName(), check);
+  }
+
+  public void unregister(final ReadinessCheck check) {
+    checks.remove(check.getName(), check);
+  }
+
+  /**
+   * Mark startup as complete.
+   */
+  public void started() {
+    started = true;
+    result = new Result(result.status, result.reasons, clock.getAsLong() - intervalNanos);
+  }
+
+  /**
+   * Mark the instance as draining, it is then unready without running checks.
+   */
+  public void drain() {
+    lock.lock();
+    try {
+      draining = true;
+      result = new Result(Status.UNREADY, Collections.singletonList("draining"), clock.getAsLong());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the current readiness, running the checks if the cached result has
+   * expired.
+   */
+  public Result getResult() {
+    final Result current = result;
+    if (started && !draining && clock.getAsLong() - current.timestampNanos >= intervalNanos && lock.tryLock()) {
+      try {
+        if (result == current && !draining) {
+          result = evaluate();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return result;
+  }
+
+  private Result evaluate() {
+    Status status = Status.READY;
+    final List<String> reasons = new ArrayList<>();
+    for (final ReadinessCheck check : checks.values()) {
+      final Status checkStatus = check.check();
+      if (checkStatus != Status.READY) {
+        reasons.add(check.getName());
+        if (checkStatus.compareTo(status) > 0) {
+          status = checkStatus;
+        }
+      }
+    }
+    return new Result(status, Collections.unmodifiableList(reasons), clock.getAsLong());
+  }
+
+  @Override
+  public String getName() {
+    return "readiness";
+  }
+
+  @Override
+  public void report(final PrintWriter out) {
+    final Result current = getResult();
+    out.println("started " + started);
+    out.println("draining " + draining);
+    out.println("status " + current.getStatus().toString());
+    out.println("reasons " + String.join(",", current.getReasons()));
+    out.println("interval_ms " + TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+    out.println("checks " + String.join(",", checks.keySet()));
+  }
+
+  public enum Status {
+    READY,
+    DEGRADED,
+    UNREADY;
+
+    @Override
+    public String toString() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  public static final class Result {
+    private final Status status;
+    private final List<String> reasons;
+    private final long timestampNanos;
+
+    private Result(final Status status, final List<String> reasons, final long timestampNanos) {
+      this.status = status;
+      this.reasons = reasons;
+      this.timestampNanos = timestampNanos;
+    }
+
+    public Status getStatus() {
+      return status;
+    }
+
+    /**
+     * The names of checks that are not ready.
+     */
+    public List<String> getReasons() {
+      return reasons;
+    }
+  }
+
+  public interface ReadinessCheck {
+
+    /**
+     * The name for the check, reported when not ready.
+     */
+    String getName();
+
+    /**
+     * Check readiness, called at most once per interval so a check can
+     * compare counters with those from the previous call.
+     */
+    Status check();
+  }
+}
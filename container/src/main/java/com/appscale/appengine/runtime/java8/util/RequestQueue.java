@@ -0,0 +1,525 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.io.PrintWriter;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import com.appscale.appengine.runtime.java8.util.Diagnostics.DiagnosticsProvider;
+
+/**
+ * Job queue for the server thread pool with a configurable discipline.
+ *
+ * With CoDel enabled the minimum queue sojourn time is tracked per interval,
+ * if it exceeded the target the queue is overloaded and jobs that waited
+ * longer than the target expire, otherwise jobs expire after the interval.
+ *
+ * With adaptive LIFO enabled the newest job is served first while the
+ * oldest job has waited longer than the target, so that requests that can
+ * still complete in time are served before those whose clients have likely
+ * given up.
+ *
+ * Expired jobs are still run, since they may be connection work that must
+ * not be discarded, but the first request handled while running an expired
+ * job is dropped if the request itself is older than the target (CoDel) or
+ * interval. Handlers check for this using {@link #takeDropReason(long)}.
+ */
+public class RequestQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>, DiagnosticsProvider {
+  public static final String PROPERTY_DISCIPLINE = "appscale.request_queue.discipline";
+  public static final String PROPERTY_CAPACITY = "appscale.request_queue.capacity";
+  public static final String PROPERTY_TARGET_MILLIS = "appscale.request_queue.target_ms";
+  public static final String PROPERTY_INTERVAL_MILLIS = "appscale.request_queue.interval_ms";
+  public static final String DISCIPLINE_FIFO = "fifo";
+  public static final String DISCIPLINE_CODEL = "codel";
+  public static final String DISCIPLINE_ADAPTIVE_LIFO = "adaptive_lifo";
+
+  private static final Logger logger = Logger.getLogger(RequestQueue.class.getName());
+  private static final ThreadLocal<ExpiredJob> expiredJob = new ThreadLocal<>();
+
+  public enum DropReason {
+    /**
+     * Sojourn time over target while the queue was overloaded
+     */
+    CODEL,
+
+    /**
+     * Sojourn time over interval
+     */
+    EXPIRED,
+
+    /**
+     * Job rejected as the queue was at capacity
+     */
+    QUEUE_FULL,
+  }
+
+  private final boolean codel;
+  private final boolean adaptiveLifo;
+  private final int capacity;
+  private final long targetNanos;
+  private final long intervalNanos;
+  private final LongSupplier nanoTime;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final ArrayDeque<Node> jobs = new ArrayDeque<>();
+  private final Map<DropReason, LongAdder> dropped = new EnumMap<>(DropReason.class);
+  private final LongAdder dispatched = new LongAdder();
+  private final LongAdder dispatchedLifo = new LongAdder();
+  private long minSojournNanos = Long.MAX_VALUE;
+  private long intervalEndNanos;
+  private boolean overloaded;
+  private volatile long sojournNanos;
+
+  public RequestQueue(
+      final boolean codel,
+      final boolean adaptiveLifo,
+      final int capacity,
+      final long targetMillis,
+      final long intervalMillis
+  ) {
+    this(codel, adaptiveLifo, capacity, targetMillis, intervalMillis, System::nanoTime);
+  }
+
+  RequestQueue(
+      final boolean codel,
+      final boolean adaptiveLifo,
+      final int capacity,
+      final long targetMillis,
+      final long intervalMillis,
+      final LongSupplier nanoTime
+  ) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+    }
+    if (targetMillis < 1 || intervalMillis < targetMillis) {
+      throw new IllegalArgumentException("Invalid queue target/interval: " + targetMillis + "/" + intervalMillis);
+    }
+    this.codel = codel;
+    this.adaptiveLifo = adaptiveLifo;
+    this.capacity = capacity;
+    this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.nanoTime = nanoTime;
+    this.intervalEndNanos = nanoTime.getAsLong() + intervalNanos;
+    for (final DropReason reason : DropReason.values()) {
+      dropped.put(reason, new LongAdder());
+    }
+  }
+
+  /**
+   * Create a queue for the given service properties.
+   *
+   * The discipline is a comma separated list of "codel" and "adaptive_lifo",
+   * or "fifo" for the default queue.
+   *
+   * @return The queue or null if the default queue should be used
+   */
+  public static RequestQueue fromProperties(final Map<String, String> properties) {
+    boolean codel = false;
+    boolean adaptiveLifo = false;
+    final String discipline = properties.getOrDefault(PROPERTY_DISCIPLINE, DISCIPLINE_FIFO);
+    for (final String option : discipline.toLowerCase(Locale.ROOT).split(",")) {
+      switch (option.trim()) {
+        case DISCIPLINE_FIFO:
+          break;
+        case DISCIPLINE_CODEL:
+          codel = true;
+          break;
+        case DISCIPLINE_ADAPTIVE_LIFO:
+          adaptiveLifo = true;
+          break;
+        default:
+          throw new IllegalArgumentException("Invalid request queue discipline: " + option);
+      }
+    }
+    if (!codel && !adaptiveLifo) {
+      return null;
+    }
+    final RequestQueue queue = new RequestQueue(
+        codel,
+        adaptiveLifo,
+        Integer.parseInt(properties.getOrDefault(PROPERTY_CAPACITY, String.valueOf(Integer.MAX_VALUE))),
+        Long.parseLong(properties.getOrDefault(PROPERTY_TARGET_MILLIS, "100")),
+        Long.parseLong(properties.getOrDefault(PROPERTY_INTERVAL_MILLIS, "1000")));
+    logger.info("Using request queue discipline " + discipline);
+    return queue;
+  }
+
+  /**
+   * Check if the current request should be dropped due to queueing.
+   *
+   * The age of the request is checked so that a request received after an
+   * expired job was dequeued is not dropped in place of a stale one. The
+   * result is only returned once per expired job, the drop is counted when
+   * returned.
+   *
+   * @param requestAgeMillis The time since the request was received
+   * @return The reason to drop the request or null
+   */
+  public static DropReason takeDropReason(final long requestAgeMillis) {
+    final ExpiredJob job = expiredJob.get();
+    if (job == null || job.taken ||
+        TimeUnit.MILLISECONDS.toNanos(requestAgeMillis) <= job.queue.dropAgeNanos(job.reason)) {
+      return null;
+    }
+    job.taken = true;
+    job.queue.dropped.get(job.reason).increment();
+    return job.reason;
+  }
+
+  @Override
+  public String getName() {
+    return "request_queue";
+  }
+
+  private long dropAgeNanos(final DropReason reason) {
+    return reason == DropReason.CODEL ? targetNanos : intervalNanos;
+  }
+
+  @Override
+  public boolean offer(final Runnable job) {
+    Objects.requireNonNull(job);
+    lock.lock();
+    try {
+      if (jobs.size() >= capacity) {
+        dropped.get(DropReason.QUEUE_FULL).increment();
+        return false;
+      }
+      enqueue(job);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(final Runnable job, final long timeout, final TimeUnit unit) throws InterruptedException {
+    Objects.requireNonNull(job);
+    long remaining = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (jobs.size() >= capacity) {
+        if (remaining <= 0L) {
+          dropped.get(DropReason.QUEUE_FULL).increment();
+          return false;
+        }
+        remaining = notFull.awaitNanos(remaining);
+      }
+      enqueue(job);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(final Runnable job) throws InterruptedException {
+    Objects.requireNonNull(job);
+    lock.lockInterruptibly();
+    try {
+      while (jobs.size() >= capacity) {
+        notFull.await();
+      }
+      enqueue(job);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll() {
+    lock.lock();
+    try {
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+    long remaining = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (jobs.isEmpty()) {
+        if (remaining <= 0L) {
+          return null;
+        }
+        remaining = notEmpty.awaitNanos(remaining);
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (jobs.isEmpty()) {
+        notEmpty.await();
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable peek() {
+    lock.lock();
+    try {
+      final Node node = jobs.peekFirst();
+      return node == null ? null : node.job;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return jobs.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    lock.lock();
+    try {
+      return capacity - jobs.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(final Object job) {
+    lock.lock();
+    try {
+      final boolean removed = jobs.removeIf(node -> node.job.equals(job));
+      if (removed) {
+        notFull.signal();
+      }
+      return removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      jobs.clear();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(final Collection<? super Runnable> target) {
+    return drainTo(target, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(final Collection<? super Runnable> target, final int maxElements) {
+    lock.lock();
+    try {
+      int count = 0;
+      Node node;
+      while (count < maxElements && (node = jobs.pollFirst()) != null) {
+        target.add(node.job);
+        count++;
+      }
+      if (count > 0) {
+        notFull.signalAll();
+      }
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Snapshot iterator over the queued jobs.
+   */
+  @Override
+  public Iterator<Runnable> iterator() {
+    final List<Runnable> snapshot;
+    lock.lock();
+    try {
+      snapshot = new ArrayList<>(jobs.size());
+      for (final Node node : jobs) {
+        snapshot.add(node.job);
+      }
+    } finally {
+      lock.unlock();
+    }
+    final Iterator<Runnable> iterator = snapshot.iterator();
+    return new Iterator<Runnable>() {
+      private Runnable last;
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Runnable next() {
+        return last = iterator.next();
+      }
+
+      @Override
+      public void remove() {
+        if (last == null) {
+          throw new IllegalStateException();
+        }
+        RequestQueue.this.remove(last);
+        last = null;
+      }
+    };
+  }
+
+  public long getDropped(final DropReason reason) {
+    return dropped.get(reason).sum();
+  }
+
+  public long getDispatched() {
+    return dispatched.sum();
+  }
+
+  public long getDispatchedLifo() {
+    return dispatchedLifo.sum();
+  }
+
+  public boolean isOverloaded() {
+    lock.lock();
+    try {
+      return overloaded;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void report(final PrintWriter out) {
+    out.println("codel " + codel);
+    out.println("adaptive_lifo " + adaptiveLifo);
+    out.println("target_ms " + TimeUnit.NANOSECONDS.toMillis(targetNanos));
+    out.println("interval_ms " + TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+    out.println("size " + size());
+    out.println("overloaded " + isOverloaded());
+    out.println("dispatched " + getDispatched());
+    out.println("dispatched_lifo " + getDispatchedLifo());
+    out.println("last_sojourn_ms " + TimeUnit.NANOSECONDS.toMillis(sojournNanos));
+    for (final DropReason reason : DropReason.values()) {
+      out.println("dropped_" + reason.name().toLowerCase(Locale.ROOT) + " " + getDropped(reason));
+    }
+  }
+
+  /**
+   * Dequeue the next job, caller must hold the lock.
+   */
+  private void enqueue(final Runnable job) {
+    jobs.addLast(new Node(job, nanoTime.getAsLong()));
+    notEmpty.signal();
+  }
+
+  private Runnable dequeue() {
+    final long now = nanoTime.getAsLong();
+    Node node = jobs.peekFirst();
+    if (node == null) {
+      // an empty queue is not a standing queue
+      minSojournNanos = 0L;
+      return null;
+    }
+    if (adaptiveLifo && jobs.size() > 1 && now - node.enqueuedNanos > targetNanos) {
+      node = jobs.pollLast();
+      dispatchedLifo.increment();
+    } else {
+      jobs.pollFirst();
+    }
+    notFull.signal();
+    dispatched.increment();
+    final long sojourn = now - node.enqueuedNanos;
+    this.sojournNanos = sojourn;
+    if (!codel) {
+      return node.job;
+    }
+    minSojournNanos = Math.min(minSojournNanos, sojourn);
+    if (now - intervalEndNanos >= 0L) {
+      overloaded = minSojournNanos > targetNanos;
+      minSojournNanos = jobs.isEmpty() ? 0L : Long.MAX_VALUE;
+      intervalEndNanos = now + intervalNanos;
+    }
+    if (overloaded && sojourn > targetNanos) {
+      return new ExpiredJob(this, node.job, DropReason.CODEL);
+    } else if (sojourn > intervalNanos) {
+      return new ExpiredJob(this, node.job, DropReason.EXPIRED);
+    }
+    return node.job;
+  }
+
+  private static final class Node {
+    private final Runnable job;
+    private final long enqueuedNanos;
+
+    private Node(final Runnable job, final long enqueuedNanos) {
+      this.job = job;
+      this.enqueuedNanos = enqueuedNanos;
+    }
+  }
+
+  private static final class ExpiredJob implements Runnable {
+    private final RequestQueue queue;
+    private final Runnable job;
+    private final DropReason reason;
+    private boolean taken;
+
+    private ExpiredJob(final RequestQueue queue, final Runnable job, final DropReason reason) {
+      this.queue = queue;
+      this.job = job;
+      this.reason = reason;
+    }
+
+    @Override
+    public void run() {
+      expiredJob.set(this);
+      try {
+        job.run();
+      } finally {
+        expiredJob.remove();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return job.toString();
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent attribute map for request environments.
+ *
+ * Attributes set for every request are held in a fixed slot table, other
+ * attributes go to a map that is only created when first used. As with
+ * ConcurrentHashMap null keys and values are not permitted.
+ */
+final class RuntimeAttributes extends AbstractMap<String, Object> implements ConcurrentMap<String, Object> {
+  static final String REQUEST_LOG_ID = "com.google.appengine.runtime.request_log_id";
+  static final String LISTENERS = "com.google.appengine.runtime.environment.listeners";
+  static final String REQUEST_THREAD_FACTORY = "com.google.appengine.api.ThreadManager.REQUEST_THREAD_FACTORY";
+  static final String BACKGROUND_THREAD_FACTORY = "com.google.appengine.api.ThreadManager.BACKGROUND_THREAD_FACTORY";
+  static final String START_TIME = "com.google.appengine.request.start_time";
+  static final String HTTP_SERVLET_REQUEST = "com.google.appengine.http_servlet_request";
+  static final String OFFLINE = "com.google.appengine.request.offline";
+  static final String INSTANCE_ID = "com.google.appengine.instance.id";
+  static final String INSTANCE_PORT = "com.google.appengine.instance.port";
+  static final String USER_ID = "com.google.appengine.api.users.UserService.user_id_key";
+  static final String USER_ORGANIZATION = "com.google.appengine.api.users.UserService.user_organization";
+  static final String API_CALL_TRACKER = "com.appscale.appengine.runtime.api_call_tracker";
+  static final String DEFAULT_VERSION_HOSTNAME = "com.google.appengine.runtime.default_version_hostname";
+  static final String FILESAPI_WAS_USED = "com.google.appengine.api.files.filesapi_was_used";
+  static final String API_DEADLINE = "com.google.apphosting.api.ApiProxy.api_deadline_key";
+
+  private static final String[] SLOT_KEYS = {
+      REQUEST_LOG_ID,
+      LISTENERS,
+      REQUEST_THREAD_FACTORY,
+      BACKGROUND_THREAD_FACTORY,
+      START_TIME,
+      HTTP_SERVLET_REQUEST,
+      OFFLINE,
+      INSTANCE_ID,
+      INSTANCE_PORT,
+      USER_ID,
+      USER_ORGANIZATION,
+      API_CALL_TRACKER,
+      DEFAULT_VERSION_HOSTNAME,
+      FILESAPI_WAS_USED,
+      API_DEADLINE,
+  };
+
+  private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(SLOT_KEYS.length);
+  private volatile ConcurrentMap<String, Object> extras;
+
+  private static int slot(final Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    switch ((String) key) {
+      case REQUEST_LOG_ID: return 0;
+      case LISTENERS: return 1;
+      case REQUEST_THREAD_FACTORY: return 2;
+      case BACKGROUND_THREAD_FACTORY: return 3;
+      case START_TIME: return 4;
+      case HTTP_SERVLET_REQUEST: return 5;
+      case OFFLINE: return 6;
+      case INSTANCE_ID: return 7;
+      case INSTANCE_PORT: return 8;
+      case USER_ID: return 9;
+      case USER_ORGANIZATION: return 10;
+      case API_CALL_TRACKER: return 11;
+      case DEFAULT_VERSION_HOSTNAME: return 12;
+      case FILESAPI_WAS_USED: return 13;
+      case API_DEADLINE: return 14;
+      default: return -1;
+    }
+  }
+
+  private ConcurrentMap<String, Object> extras() {
+    ConcurrentMap<String, Object> map = extras;
+    if (map == null) {
+      synchronized (this) {
+        map = extras;
+        if (map == null) {
+          map = extras = new ConcurrentHashMap<>(8);
+        }
+      }
+    }
+    return map;
+  }
+
+  @Override
+  public Object get(final Object key) {
+    final int slot = slot(key);
+    if (slot >= 0) {
+      return slots.get(slot);
+    }
+    final Map<String, Object> map = extras;
+    return map == null || key == null ? null : map.get(key);
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public Object put(final String key, final Object value) {
+    Objects.requireNonNull(value);
+    final int slot = slot(key);
+    return slot >= 0 ? slots.getAndSet(slot, value) : extras().put(key, value);
+  }
+
+  @Override
+  public Object remove(final Object key) {
+    final int slot = slot(key);
+    if (slot >= 0) {
+      return slots.getAndSet(slot, null);
+    }
+    final Map<String, Object> map = extras;
+    return map == null || key == null ? null : map.remove(key);
+  }
+
+  @Override
+  public Object putIfAbsent(final String key, final Object value) {
+    Objects.requireNonNull(value);
+    final int slot = slot(key);
+    if (slot >= 0) {
+      while (true) {
+        final Object current = slots.get(slot);
+        if (current != null || slots.compareAndSet(slot, null, value)) {
+          return current;
+        }
+      }
+    }
+    return extras().putIfAbsent(key, value);
+  }
+
+  @Override
+  public boolean remove(final Object key, final Object value) {
+    final int slot = slot(key);
+    if (slot >= 0) {
+      final Object current = slots.get(slot);
+      return current != null && current.equals(value) && slots.compareAndSet(slot, current, null);
+    }
+    final Map<String, Object> map = extras;
+    return map != null && key != null && value != null && map.remove(key, value);
+  }
+
+  @Override
+  public boolean replace(final String key, final Object oldValue, final Object newValue) {
+    Objects.requireNonNull(oldValue);
+    Objects.requireNonNull(newValue);
+    final int slot = slot(key);
+    if (slot >= 0) {
+      final Object current = slots.get(slot);
+      return current != null && current.equals(oldValue) && slots.compareAndSet(slot, current, newValue);
+    }
+    final Map<String, Object> map = extras;
+    return map != null && map.replace(key, oldValue, newValue);
+  }
+
+  @Override
+  public Object replace(final String key, final Object value) {
+    Objects.requireNonNull(value);
+    final int slot = slot(key);
+    if (slot >= 0) {
+      while (true) {
+        final Object current = slots.get(slot);
+        if (current == null || slots.compareAndSet(slot, current, value)) {
+          return current;
+        }
+      }
+    }
+    final Map<String, Object> map = extras;
+    return map == null ? null : map.replace(key, value);
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < SLOT_KEYS.length; i++) {
+      slots.set(i, null);
+    }
+    final Map<String, Object> map = extras;
+    if (map != null) {
+      map.clear();
+    }
+  }
+
+  /**
+   * Weakly consistent view of the attributes, as for ConcurrentHashMap.
+   */
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        int size = 0;
+        for (int i = 0; i < SLOT_KEYS.length; i++) {
+          if (slots.get(i) != null) {
+            size++;
+          }
+        }
+        final Map<String, Object> map = extras;
+        return map == null ? size : size + map.size();
+      }
+    };
+  }
+
+  private final class EntryIterator implements Iterator<Entry<String, Object>> {
+    private final List<Entry<String, Object>> entries = new ArrayList<>();
+    private int index;
+    private Entry<String, Object> last;
+
+    private EntryIterator() {
+      for (int i = 0; i < SLOT_KEYS.length; i++) {
+        final Object value = slots.get(i);
+        if (value != null) {
+          entries.add(new SimpleImmutableEntry<>(SLOT_KEYS[i], value));
+        }
+      }
+      final Map<String, Object> map = extras;
+      if (map != null) {
+        for (final Entry<String, Object> entry : map.entrySet()) {
+          entries.add(new SimpleImmutableEntry<>(entry));
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < entries.size();
+    }
+
+    @Override
+    public Entry<String, Object> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return last = entries.get(index++);
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      RuntimeAttributes.this.remove(last.getKey(), last.getValue());
+      last = null;
+    }
+  }
+}
@@ -5,28 +5,24 @@
  */
 package com.appscale.appengine.runtime.java8.util;
 
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
 import com.appscale.appengine.runtime.java8.util.Logins.LoginCookie;
 import com.google.appengine.repackaged.com.google.common.base.MoreObjects;
 import com.google.appengine.repackaged.com.google.common.base.Strings;
-import com.google.appengine.repackaged.com.google.common.collect.ImmutableMap;
 import com.google.appengine.repackaged.com.google.common.collect.ImmutableSet;
-import com.google.appengine.repackaged.com.google.common.collect.Maps;
 import com.google.apphosting.api.ApiProxy;
 import com.google.apphosting.api.ApiProxy.Environment;
 
@@ -41,15 +37,19 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
       AttributeKey.of("com.google.appengine.request.offline", Boolean.class);
   public static final AttributeKey<HttpServletRequest> ATTR_REQUEST =
       AttributeKey.of("com.google.appengine.http_servlet_request", HttpServletRequest.class);
+  public static final AttributeKey<ApiCallTracker> ATTR_API_CALL_TRACKER =
+      AttributeKey.of(RuntimeAttributes.API_CALL_TRACKER, ApiCallTracker.class);
 
   private static final Logger logger = Logger.getLogger(RuntimeEnvironment.class.getName());
-  private static final AtomicInteger requestID = new AtomicInteger();
+  private static final AtomicLong lastRequestId = new AtomicLong();
+  private static final CurrentRequestThreadFactory requestThreadFactory = new CurrentRequestThreadFactory();
+  private static final BackgroundThreadFactory backgroundThreadFactory = new BackgroundThreadFactory();
 
   private static final Set<String> COPY_ATTRS = ImmutableSet.of(
-      "com.google.appengine.instance.id",
-      "com.google.appengine.instance.port",
-      "com.google.appengine.runtime.request_log_id",
-      "com.google.appengine.request.offline"
+      RuntimeAttributes.INSTANCE_ID,
+      RuntimeAttributes.INSTANCE_PORT,
+      RuntimeAttributes.REQUEST_LOG_ID,
+      RuntimeAttributes.OFFLINE
   );
 
   private final String appId;
@@ -71,7 +71,7 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
       final Integer port,
       final Long deadlineMillis
   ) {
-    this.attributes = new ConcurrentHashMap<>();
+    this.attributes = new RuntimeAttributes();
     this.appId = appId;
     this.moduleId = moduleName;
     this.versionId = MoreObjects.firstNonNull(majorVersionId, "no_version");
@@ -88,27 +88,30 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
     this.admin = reRequest.isAdmin();
     setInstance( this.attributes, instance );
     setPort( this.attributes, port );
-    this.listeners = Collections.newSetFromMap( new ConcurrentHashMap<>( 10 ) );
-    this.attributes.put( "com.google.appengine.runtime.request_log_id", this.generateRequestId( ) );
-    this.attributes.put( "com.google.appengine.runtime.environment.listeners", this.listeners );
-    this.attributes.put( "com.google.appengine.api.ThreadManager.REQUEST_THREAD_FACTORY",
-        new CurrentRequestThreadFactory() );
-    this.attributes.put( "com.google.appengine.api.ThreadManager.BACKGROUND_THREAD_FACTORY",
-        new BackgroundThreadFactory() );
+    this.listeners = new ConcurrentLinkedQueue<>( );
+    this.attributes.put( RuntimeAttributes.REQUEST_LOG_ID, generateRequestId( ) );
+    this.attributes.put( RuntimeAttributes.LISTENERS, this.listeners );
+    this.attributes.put( RuntimeAttributes.REQUEST_THREAD_FACTORY, requestThreadFactory );
+    this.attributes.put( RuntimeAttributes.BACKGROUND_THREAD_FACTORY, backgroundThreadFactory );
     if (reRequest.isLoggedIn() && !Strings.isNullOrEmpty(reRequest.getUserId())) {
-      this.attributes.put("com.google.appengine.api.users.UserService.user_id_key", reRequest.getUserId());
-      this.attributes.put("com.google.appengine.api.users.UserService.user_organization", "");
+      this.attributes.put(RuntimeAttributes.USER_ID, reRequest.getUserId());
+      this.attributes.put(RuntimeAttributes.USER_ORGANIZATION, "");
     }
-    this.attributes.put("com.google.appengine.request.start_time", new Date());
-    this.attributes.putAll(reRequest.getAttributes());
+    this.attributes.put(RuntimeAttributes.START_TIME, new Date());
+    if (reRequest.isOffline()) {
+      this.attributes.put(RuntimeAttributes.OFFLINE, Boolean.TRUE);
+    }
+    this.attributes.put(RuntimeAttributes.HTTP_SERVLET_REQUEST, reRequest.getRequest());
 
-    logger.log( Level.FINE, () -> "Request environment: " + this );
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine("Request environment: " + this);
+    }
   }
 
   public RuntimeEnvironment(
       final RuntimeEnvironment environment
   ) {
-    this.attributes = new ConcurrentHashMap<>();
+    this.attributes = new RuntimeAttributes();
     this.appId = environment.appId;
     this.moduleId = environment.moduleId;
     this.versionId = environment.versionId;
@@ -117,15 +120,18 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
     this.email = null;
     this.admin = false;
 
-    this.listeners = Collections.newSetFromMap( new ConcurrentHashMap<>( 10 ) );
-    this.attributes.put( "com.google.appengine.runtime.environment.listeners", this.listeners );
-    this.attributes.put( "com.google.appengine.request.start_time", new Date( ) );
+    this.listeners = new ConcurrentLinkedQueue<>( );
+    this.attributes.put( RuntimeAttributes.LISTENERS, this.listeners );
+    this.attributes.put( RuntimeAttributes.START_TIME, new Date( ) );
     for (final String attrName : COPY_ATTRS) {
-      if (environment.attributes.containsKey(attrName)) {
-        this.attributes.put(attrName, environment.attributes.get(attrName));
+      final Object value = environment.attributes.get(attrName);
+      if (value != null) {
+        this.attributes.put(attrName, value);
       }
     }
-    logger.log( Level.FINE, () -> "Request environment: " + this );
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine("Request environment: " + this);
+    }
   }
 
   public static RuntimeEnvironment unauthChild(final Environment environment) {
@@ -153,17 +159,17 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
   }
 
   static void setInstance(Map<String, Object> attributes, int instance) {
-    attributes.remove("com.google.appengine.instance.id");
+    attributes.remove(RuntimeAttributes.INSTANCE_ID);
     if (instance != -1) {
-      attributes.put("com.google.appengine.instance.id", Integer.toString(instance));
+      attributes.put(RuntimeAttributes.INSTANCE_ID, Integer.toString(instance));
     }
   }
 
   static void setPort(Map<String, Object> attributes, Integer port) {
     if (port == null) {
-      attributes.remove("com.google.appengine.instance.port");
+      attributes.remove(RuntimeAttributes.INSTANCE_PORT);
     } else {
-      attributes.put("com.google.appengine.instance.port", port);
+      attributes.put(RuntimeAttributes.INSTANCE_PORT, port);
     }
   }
 
@@ -226,19 +232,19 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
     return this.endTime != null ? this.endTime - System.currentTimeMillis() : Long.MAX_VALUE;
   }
 
-  private String generateRequestId( ) {
-    try {
-      ByteBuffer buf = ByteBuffer.allocate(12);
-      long now = System.currentTimeMillis();
-      buf.putInt((int)(now / 1000L));
-      buf.putInt((int)(now * 1000L % 1000000L));
-      String nextID = Integer.toString(requestID.getAndIncrement());
-      byte[] hashBytes = MessageDigest.getInstance("SHA-1").digest(nextID.getBytes(StandardCharsets.US_ASCII));
-      buf.put(hashBytes, 0, 4);
-      return String.format("%x", new BigInteger(buf.array()));
-    } catch (Exception var6) {
-      return "";
-    }
+  /**
+   * Request identifiers are the request time in microseconds, incremented as
+   * necessary so identifiers are unique and increasing.
+   */
+  static String generateRequestId( ) {
+    final long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    long last;
+    long next;
+    do {
+      last = lastRequestId.get();
+      next = Math.max(now, last + 1);
+    } while (!lastRequestId.compareAndSet(last, next));
+    return Long.toHexString(next);
   }
 
   @Override
@@ -261,7 +267,8 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
     private final String userId;
     private final boolean loggedIn;
     private final boolean admin;
-    private final Map<String,Object> attributes;
+    private final boolean offline;
+    private final HttpServletRequest request;
 
     public static RuntimeEnvironmentRequest forRequest(final HttpServletRequest request) {
       return new RuntimeEnvironmentRequest(request);
@@ -273,13 +280,13 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
       final boolean loggedIn;
       final boolean admin;
 
-      final Optional<LoginCookie> loginCookie = Logins.cookie(request);
+      final Optional<LoginCookie> loginCookie;
       if (Logins.isForceAdmin(request, HEADER_FAKE_IS_ADMIN)) {
         loggedIn = true;
         userId = null;
         email = "admin@admin.com";
         admin = true;
-      } else if (loginCookie.isPresent()) {
+      } else if ((loginCookie = Logins.cookie(request)).isPresent()) {
         loggedIn = true;
         email = loginCookie.get().getEmail();
         userId = loginCookie.get().getUserId();
@@ -291,17 +298,12 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
         admin = false;
       }
 
-      final Map<String,Object> attributes = Maps.newLinkedHashMap();
-      if (request.getHeader(HEADER_QUEUE_NAME) != null) {
-        attributes.put("com.google.appengine.request.offline", Boolean.TRUE);
-      }
-      attributes.put("com.google.appengine.http_servlet_request", request);
-
       this.email = email;
       this.userId = userId;
       this.loggedIn = loggedIn;
       this.admin = admin;
-      this.attributes = ImmutableMap.copyOf(attributes);
+      this.offline = request.getHeader(HEADER_QUEUE_NAME) != null;
+      this.request = request;
     }
 
     public String getEmail() {
@@ -320,8 +322,26 @@ public class RuntimeEnvironment implements ApiProxy.Environment {
       return admin;
     }
 
+    public boolean isOffline() {
+      return offline;
+    }
+
+    public HttpServletRequest getRequest() {
+      return request;
+    }
+
+    /**
+     * @deprecated Use {@link #isOffline()} and {@link #getRequest()}, the map is
+     * built on each call.
+     */
+    @Deprecated
     public Map<String,Object> getAttributes( ) {
-      return this.attributes;
+      final Map<String,Object> attributes = new LinkedHashMap<>(4);
+      if (offline) {
+        attributes.put(RuntimeAttributes.OFFLINE, Boolean.TRUE);
+      }
+      attributes.put(RuntimeAttributes.HTTP_SERVLET_REQUEST, request);
+      return Collections.unmodifiableMap(attributes);
     }
   }
 
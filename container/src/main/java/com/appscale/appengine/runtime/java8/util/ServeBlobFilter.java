@@ -8,6 +8,7 @@ package com.appscale.appengine.runtime.java8.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -19,6 +20,7 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
+import com.appscale.appengine.runtime.java8.util.Metrics.MetricsProvider;
 import com.google.appengine.api.blobstore.BlobInfo;
 import com.google.appengine.api.blobstore.BlobKey;
 import com.google.appengine.api.blobstore.ByteRange;
@@ -44,6 +46,20 @@ public class ServeBlobFilter implements Filter {
   private static final String CONTENT_TYPE_HEADER = "Content-Type";
   private static final String CONTENT_RANGE_FORMAT = "bytes %d-%d/%d";
   private static final int BUF_SIZE = 4096;
+  private static final LongAdder blobsServed = new LongAdder();
+  private static final LongAdder bytesServed = new LongAdder();
+  private static final MetricsProvider metricsProvider = new MetricsProvider() {
+    @Override
+    public String getName() {
+      return "blob";
+    }
+
+    @Override
+    public void collect(final MetricsWriter out) {
+      out.counter("appscale_blob_served_total", "Blobs served", blobsServed.sum());
+      out.counter("appscale_blob_served_bytes_total", "Blob bytes served", bytesServed.sum());
+    }
+  };
 
   private BlobStorage blobStorage;
   private BlobInfoStorage blobInfoStorage;
@@ -52,6 +68,7 @@ public class ServeBlobFilter implements Filter {
   public void init(final FilterConfig config) {
     this.blobInfoStorage = BlobStorageFactory.getBlobInfoStorage();
     this.apiProxyLocal = (ApiProxyLocal)config.getServletContext().getAttribute(CONTEXT_ATTR_APIPROXY);
+    Metrics.register(metricsProvider);
   }
 
   public void doFilter(
@@ -133,6 +150,7 @@ public class ServeBlobFilter implements Filter {
       }
 
       to.write(buf, 0, (int)Math.min((long)r, size));
+      bytesServed.add(Math.min((long)r, size));
     }
   }
 
@@ -182,6 +200,7 @@ public class ServeBlobFilter implements Filter {
             final ServletOutputStream outStream = response.getOutputStream();
             try {
               inStream.skip(start);
+              blobsServed.increment();
               copy(inStream, outStream, contentLength);
               swallowDueToThrow = false;
             } finally {
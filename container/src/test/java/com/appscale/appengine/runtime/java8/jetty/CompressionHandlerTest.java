@@ -0,0 +1,95 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class CompressionHandlerTest {
+
+  @Test
+  public void testDisabled() {
+    assertNull(CompressionHandler.fromProperties(Collections.emptyMap()), "disabled by default");
+  }
+
+  @Test
+  public void testCompression() throws Exception {
+    final Map<String, String> properties = new HashMap<>();
+    properties.put(CompressionHandler.PROPERTY_ENABLED, "true");
+    properties.put(CompressionHandler.PROPERTY_EXCLUDED_PATHS, "/excluded/*");
+    final CompressionHandler handler = CompressionHandler.fromProperties(properties);
+    assertNotNull(handler, "enabled");
+    handler.setHandler(new TextHandler());
+    final Server server = new Server();
+    final LocalConnector connector = new LocalConnector(server);
+    server.addConnector(connector);
+    server.setHandler(handler);
+    server.start();
+    try {
+      assertEquals("gzip", get(connector, "/text", null).get("Content-Encoding"), "text");
+      assertNull(get(connector, "/image", null).get("Content-Encoding"), "image");
+      assertNull(get(connector, "/excluded/text", null).get("Content-Encoding"), "excluded path");
+      assertNull(get(connector, "/text", "bytes=0-99").get("Content-Encoding"), "range request");
+      final HttpTester.Response blobRange = get(connector, "/blob-range", null);
+      assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, blobRange.getStatus(), "blob range status");
+      assertNull(blobRange.get("Content-Encoding"), "blob range");
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static HttpTester.Response get(
+      final LocalConnector connector,
+      final String path,
+      final String range
+  ) throws Exception {
+    return HttpTester.parseResponse(connector.getResponse(
+        "GET " + path + " HTTP/1.1\r\n" +
+        "Host: localhost\r\n" +
+        "Accept-Encoding: gzip\r\n" +
+        (range != null ? "Range: " + range + "\r\n" : "") +
+        "Connection: close\r\n" +
+        "\r\n"));
+  }
+
+  private static final class TextHandler extends AbstractHandler {
+    @Override
+    public void handle(
+        final String target,
+        final Request baseRequest,
+        final HttpServletRequest request,
+        final HttpServletResponse response
+    ) throws IOException {
+      baseRequest.setHandled(true);
+      final byte[] body = new byte[4096];
+      Arrays.fill(body, (byte) 'a');
+      response.setContentType(target.startsWith("/image") ? "image/png" : "text/html");
+      if (target.startsWith("/blob-range")) {
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", "bytes 0-4095/8192");
+      }
+      response.setContentLength(body.length);
+      response.getOutputStream().write(body);
+    }
+  }
+}
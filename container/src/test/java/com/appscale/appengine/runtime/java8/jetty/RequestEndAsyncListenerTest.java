@@ -0,0 +1,165 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.util.CurrentRequestThreadFactory;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironment.RuntimeEnvironmentRequest;
+import com.appscale.appengine.runtime.java8.util.RuntimeEnvironmentListener;
+import com.google.apphosting.api.ApiProxy;
+
+/**
+ *
+ */
+public class RequestEndAsyncListenerTest {
+
+  @Test
+  public void testCompleteFromRequestThread() throws Exception {
+    final CountDownLatch ended = new CountDownLatch(1);
+    final AtomicReference<Thread> endThread = new AtomicReference<>();
+    final AtomicReference<Thread> completeThread = new AtomicReference<>();
+    final AtomicReference<Thread> workerThread = new AtomicReference<>();
+
+    final Server server = new Server();
+    final LocalConnector connector = new LocalConnector(server);
+    server.addConnector(connector);
+    final ServletContextHandler context = new ServletContextHandler();
+    final ServletHolder holder = new ServletHolder(new FanOutServlet(completeThread, workerThread));
+    holder.setAsyncSupported(true);
+    context.addServlet(holder, "/fan-out");
+    final RequestEndHandler handler = new RequestEndHandler(server, () -> {
+      endThread.set(Thread.currentThread());
+      ended.countDown();
+    });
+    handler.setHandler(context);
+    server.setHandler(handler);
+    server.start();
+    try {
+      final HttpTester.Response response = HttpTester.parseResponse(connector.getResponse(
+          "GET /fan-out HTTP/1.1\r\n" +
+          "Host: localhost\r\n" +
+          "Connection: close\r\n" +
+          "\r\n", 10, TimeUnit.SECONDS));
+      assertEquals(HttpServletResponse.SC_OK, response.getStatus(), "status");
+      assertEquals("done", response.getContent(), "content");
+      assertTrue(ended.await(10, TimeUnit.SECONDS), "request ended");
+      assertNotNull(completeThread.get(), "completed");
+      assertNotSame(completeThread.get(), endThread.get(), "request end thread");
+      workerThread.get().join(TimeUnit.SECONDS.toMillis(10));
+      assertFalse(workerThread.get().isAlive(), "worker thread terminated at request end");
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * Sets up the request environment and ends the request using the container
+   * service request end deferral.
+   */
+  private static final class RequestEndHandler extends HandlerWrapper {
+    private final Server server;
+    private final Runnable onEnd;
+
+    RequestEndHandler(final Server server, final Runnable onEnd) {
+      this.server = server;
+      this.onEnd = onEnd;
+    }
+
+    @Override
+    public void handle(
+        final String target,
+        final Request baseRequest,
+        final HttpServletRequest request,
+        final HttpServletResponse response
+    ) throws IOException, ServletException {
+      if (baseRequest.getDispatcherType() != DispatcherType.REQUEST) {
+        super.handle(target, baseRequest, request, response);
+        return;
+      }
+      final RuntimeEnvironment env = new RuntimeEnvironment("test", "default", "1",
+          RuntimeEnvironmentRequest.forRequest(request), 0, 8080, 60_000L);
+      final Runnable requestEnd = () -> {
+        RuntimeEnvironmentListener.requestEnd(env);
+        onEnd.run();
+      };
+      ApiProxy.setEnvironmentForCurrentThread(env);
+      try {
+        super.handle(target, baseRequest, request, response);
+      } finally {
+        if (!RequestEndAsyncListener.deferRequestEnd(request, env, server.getThreadPool(), requestEnd)) {
+          requestEnd.run();
+          ApiProxy.clearEnvironmentForCurrentThread();
+        }
+      }
+    }
+  }
+
+  /**
+   * Starts a long running worker thread for the request and completes the
+   * request from another request thread.
+   */
+  private static final class FanOutServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicReference<Thread> completeThread;
+    private final AtomicReference<Thread> workerThread;
+
+    FanOutServlet(
+        final AtomicReference<Thread> completeThread,
+        final AtomicReference<Thread> workerThread
+    ) {
+      this.completeThread = completeThread;
+      this.workerThread = workerThread;
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) {
+      final AsyncContext asyncContext = request.startAsync();
+      final CurrentRequestThreadFactory threadFactory = new CurrentRequestThreadFactory();
+      final Thread worker = threadFactory.newThread(() -> {
+        try {
+          Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+        } catch (final InterruptedException e) {
+          // request ended
+        }
+      });
+      workerThread.set(worker);
+      worker.start();
+      threadFactory.newThread(() -> {
+        try {
+          asyncContext.getResponse().getWriter().print("done");
+        } catch (final IOException e) {
+          throw new RuntimeException(e);
+        }
+        completeThread.set(Thread.currentThread());
+        asyncContext.complete();
+      }).start();
+    }
+  }
+}
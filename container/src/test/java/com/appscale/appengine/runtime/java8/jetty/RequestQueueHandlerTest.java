@@ -0,0 +1,121 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.util.RequestQueue;
+import com.appscale.appengine.runtime.java8.util.RequestQueue.DropReason;
+
+/**
+ *
+ */
+public class RequestQueueHandlerTest {
+
+  @Test
+  public void testStaleRequestDropped() throws Exception {
+    final RequestQueue queue = new RequestQueue(true, false, 10, 1L, 10L);
+    final HttpTester.Response response = get(queue, 1000L);
+    assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus(), "status");
+    assertEquals("1", response.get("Retry-After"), "retry after");
+    assertEquals(1, queue.getDropped(DropReason.CODEL), "codel drops");
+  }
+
+  @Test
+  public void testNewerRequestNotDropped() throws Exception {
+    final RequestQueue queue = new RequestQueue(true, false, 10, 1L, 10L);
+    final HttpTester.Response response = get(queue, 0L);
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus(), "status");
+    assertEquals("ok", response.getContent(), "content");
+    assertEquals(0, queue.getDropped(DropReason.CODEL), "codel drops");
+  }
+
+  /**
+   * Handle a request of the given age while running a job that expired in
+   * the queue.
+   */
+  private static HttpTester.Response get(final RequestQueue queue, final long requestAgeMillis) throws Exception {
+    final Server server = new Server();
+    final LocalConnector connector = new LocalConnector(server);
+    server.addConnector(connector);
+    final RequestQueueHandler queueHandler = new RequestQueueHandler();
+    queueHandler.setHandler(new OkHandler());
+    final ExpiredJobHandler handler = new ExpiredJobHandler(queue, requestAgeMillis);
+    handler.setHandler(queueHandler);
+    server.setHandler(handler);
+    server.start();
+    try {
+      return HttpTester.parseResponse(connector.getResponse(
+          "GET / HTTP/1.1\r\n" +
+          "Host: localhost\r\n" +
+          "Connection: close\r\n" +
+          "\r\n", 10, TimeUnit.SECONDS));
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * Passes the request on from a job that waited in the queue beyond the
+   * interval, as when connection work for a newer request is run late.
+   */
+  private static final class ExpiredJobHandler extends HandlerWrapper {
+    private final RequestQueue queue;
+    private final long requestAgeMillis;
+
+    ExpiredJobHandler(final RequestQueue queue, final long requestAgeMillis) {
+      this.queue = queue;
+      this.requestAgeMillis = requestAgeMillis;
+    }
+
+    @Override
+    public void handle(
+        final String target,
+        final Request baseRequest,
+        final HttpServletRequest request,
+        final HttpServletResponse response
+    ) throws IOException, ServletException {
+      queue.offer(() -> {
+        baseRequest.setTimeStamp(System.currentTimeMillis() - requestAgeMillis);
+        try {
+          getHandler().handle(target, baseRequest, request, response);
+        } catch (final IOException | ServletException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      try {
+        Thread.sleep(50L);
+      } catch (final InterruptedException e) {
+        throw new ServletException(e);
+      }
+      queue.poll().run();
+    }
+  }
+
+  private static final class OkHandler extends AbstractHandler {
+    @Override
+    public void handle(
+        final String target,
+        final Request baseRequest,
+        final HttpServletRequest request,
+        final HttpServletResponse response
+    ) throws IOException {
+      baseRequest.setHandled(true);
+      response.getWriter().print("ok");
+    }
+  }
+}
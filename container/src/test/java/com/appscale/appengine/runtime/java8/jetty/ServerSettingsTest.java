@@ -0,0 +1,87 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.jetty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class ServerSettingsTest {
+
+  @Test
+  public void testDefaults() {
+    final ServerSettings settings = ServerSettings.fromProperties(Collections.emptyMap());
+    final QueuedThreadPool threadPool = settings.buildThreadPool(null);
+    assertEquals(200, threadPool.getMaxThreads(), "max threads");
+    assertEquals(8, threadPool.getMinThreads(), "min threads");
+  }
+
+  @Test
+  public void testProperties() {
+    final Map<String, String> properties = new HashMap<>();
+    properties.put(ServerSettings.PROPERTY_MAX_THREADS, "32");
+    properties.put(ServerSettings.PROPERTY_MIN_THREADS, "4");
+    properties.put(ServerSettings.PROPERTY_RESERVED_THREADS, "0");
+    properties.put(ServerSettings.PROPERTY_OUTPUT_BUFFER_SIZE, "8192");
+    final ServerSettings settings = ServerSettings.fromProperties(properties);
+    final QueuedThreadPool threadPool = settings.buildThreadPool(null);
+    assertEquals(32, threadPool.getMaxThreads(), "max threads");
+    assertEquals(4, threadPool.getMinThreads(), "min threads");
+    assertEquals(0, threadPool.getReservedThreads(), "reserved threads");
+    final HttpConfiguration httpConfiguration = new HttpConfiguration();
+    settings.configure(httpConfiguration);
+    assertEquals(8192, httpConfiguration.getOutputBufferSize(), "output buffer size");
+  }
+
+  @Test
+  public void testH2c() {
+    final HttpConfiguration httpConfiguration = new HttpConfiguration();
+    assertEquals(1, ServerSettings.fromProperties(Collections.emptyMap())
+        .buildConnectionFactories(httpConfiguration).length, "http/1.1 only");
+    final Map<String, String> properties = new HashMap<>();
+    properties.put(ServerSettings.PROPERTY_H2C, "true");
+    properties.put(ServerSettings.PROPERTY_H2C_MAX_CONCURRENT_STREAMS, "64");
+    final ConnectionFactory[] factories =
+        ServerSettings.fromProperties(properties).buildConnectionFactories(httpConfiguration);
+    assertEquals(2, factories.length, "factories");
+    assertEquals("HTTP/1.1", factories[0].getProtocol(), "default protocol");
+    assertEquals("h2c", factories[1].getProtocol(), "h2c protocol");
+  }
+
+  @Test
+  public void testAdminServer() {
+    assertNull(ServerSettings.fromProperties(Collections.emptyMap()).buildAdminServer(), "no admin server");
+    final Server adminServer = ServerSettings.fromProperties(
+        Collections.singletonMap(ServerSettings.PROPERTY_ADMIN_PORT, "0")).buildAdminServer();
+    assertNotNull(adminServer, "admin server");
+    assertEquals(1, adminServer.getConnectors().length, "admin connectors");
+    assertEquals(4, ((QueuedThreadPool) adminServer.getThreadPool()).getMaxThreads(), "admin threads");
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromProperties(
+        Collections.singletonMap(ServerSettings.PROPERTY_MAX_THREADS, "none")));
+    final Map<String, String> properties = new HashMap<>();
+    properties.put(ServerSettings.PROPERTY_MAX_THREADS, "4");
+    properties.put(ServerSettings.PROPERTY_MIN_THREADS, "8");
+    assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromProperties(properties));
+    assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromProperties(
+        Collections.singletonMap(ServerSettings.PROPERTY_UNIX_SOCKET_ONLY, "true")));
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.appscale.appengine.runtime.java8.server.RepeatedCallDetectorTest.TestEnvironment;
+
+/**
+ *
+ */
+public class ApiCallCaptureTest {
+
+  @TempDir
+  File captureDir;
+
+  @Test
+  public void testCaptureRoundTrip() throws IOException {
+    final ApiCallCapture capture = new ApiCallCapture(captureDir, 1.0, 1024 * 1024, 2);
+    capture.onCallComplete(new TestEnvironment(), "memcache", "Get",
+        new byte[]{1, 2, 3}, new byte[]{4, 5}, null, TimeUnit.MILLISECONDS.toNanos(3));
+    capture.onCallComplete(new TestEnvironment(), "datastore_v3", "Commit",
+        new byte[]{6}, null, new RuntimeException("failed"), TimeUnit.MILLISECONDS.toNanos(7));
+    capture.close();
+
+    final List<ApiCallRecord> records = readAll();
+    assertEquals(2, records.size(), "record count");
+    assertEquals("memcache", records.get(0).getPackageName(), "package");
+    assertEquals("Get", records.get(0).getMethodName(), "method");
+    assertEquals(3000, records.get(0).getLatencyMicros(), "latency");
+    assertArrayEquals(new byte[]{1, 2, 3}, records.get(0).getRequestBytes(), "request");
+    assertArrayEquals(new byte[]{4, 5}, records.get(0).getResponseBytes(), "response");
+    assertEquals("Commit", records.get(1).getMethodName(), "method");
+    assertNull(records.get(1).getResponseBytes(), "failed response");
+  }
+
+  @Test
+  public void testRotation() throws IOException {
+    final ApiCallCapture capture = new ApiCallCapture(captureDir, 1.0, 100, 2);
+    for (int i = 0; i < 20; i++) {
+      capture.onCallComplete(new TestEnvironment(), "memcache", "Set",
+          new byte[64], new byte[0], null, 0L);
+    }
+    capture.close();
+
+    final File[] files = captureDir.listFiles();
+    assertNotNull(files, "files");
+    assertEquals(2, files.length, "retained files");
+    assertEquals(20, capture.getCaptured() + capture.getDropped(), "calls");
+  }
+
+  @Test
+  public void testRotationBySequence() throws IOException {
+    final File older = new File(captureDir, "api-capture-20190101-000000-5.bin");
+    assertTrue(older.createNewFile(), "created");
+    assertTrue(older.setLastModified(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)), "modified");
+
+    final ApiCallCapture capture = new ApiCallCapture(captureDir, 1.0, 1024 * 1024, 1);
+    capture.onCallComplete(new TestEnvironment(), "memcache", "Get",
+        new byte[0], new byte[0], null, 0L);
+    capture.close();
+
+    final File[] files = captureDir.listFiles();
+    assertNotNull(files, "files");
+    assertEquals(1, files.length, "retained files");
+    assertEquals(6L, ApiCallCapture.fileSequence(files[0]), "sequence continued and newest retained");
+  }
+
+  private List<ApiCallRecord> readAll() throws IOException {
+    final List<ApiCallRecord> records = new ArrayList<>();
+    final File[] files = captureDir.listFiles();
+    assertNotNull(files, "files");
+    for (final File file : files) {
+      try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        ApiCallRecord.readHeader(in);
+        ApiCallRecord record;
+        while ((record = ApiCallRecord.read(in)) != null) {
+          records.add(record);
+        }
+      }
+    }
+    return records;
+  }
+}
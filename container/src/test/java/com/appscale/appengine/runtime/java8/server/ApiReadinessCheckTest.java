@@ -0,0 +1,40 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.util.Readiness.Status;
+
+/**
+ *
+ */
+public class ApiReadinessCheckTest {
+
+  @Test
+  public void testCheck() {
+    final AtomicLong calls = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final ApiReadinessCheck check = new ApiReadinessCheck(calls::get, errors::get, () -> 0.0);
+    assertEquals(Status.READY, check.check(), "no calls");
+
+    calls.addAndGet(2);
+    errors.addAndGet(2);
+    assertEquals(Status.DEGRADED, check.check(), "few calls all failed");
+
+    calls.addAndGet(10);
+    errors.addAndGet(6);
+    assertEquals(Status.UNREADY, check.check(), "high error rate");
+
+    calls.addAndGet(10);
+    errors.addAndGet(1);
+    assertEquals(Status.DEGRADED, check.check(), "some errors");
+
+    calls.addAndGet(10);
+    assertEquals(Status.READY, check.check(), "no errors");
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.server.RepeatedCallDetector.RouteCallCounts;
+import com.google.apphosting.api.ApiProxy.Environment;
+
+/**
+ *
+ */
+public class RepeatedCallDetectorTest {
+
+  @Test
+  public void testSerialCalls() {
+    final RepeatedCallDetector detector = new RepeatedCallDetector(3);
+    final Environment environment = new TestEnvironment();
+    for (int i = 0; i < 5; i++) {
+      serialCall(detector, environment, "datastore_v3", "Get", i);
+    }
+
+    final List<RouteCallCounts> counts = detector.getRouteCallCounts();
+    assertEquals(1, counts.size(), "route count");
+    assertEquals("datastore_v3.Get", counts.get(0).getMethod(), "method");
+    assertEquals(1, counts.get(0).getRequests(), "requests");
+    assertEquals(5, counts.get(0).getCalls(), "calls");
+    assertEquals(5, counts.get(0).getMaxRun(), "max run");
+  }
+
+  @Test
+  public void testIdenticalCalls() {
+    final RepeatedCallDetector detector = new RepeatedCallDetector(3);
+    final Environment environment = new TestEnvironment();
+    for (int i = 0; i < 5; i++) {
+      serialCall(detector, environment, "memcache", "Get", 1);
+    }
+
+    assertTrue(detector.getRouteCallCounts().isEmpty(), "no repeated calls");
+  }
+
+  @Test
+  public void testConcurrentCalls() {
+    final RepeatedCallDetector detector = new RepeatedCallDetector(3);
+    final Environment environment = new TestEnvironment();
+    for (int i = 0; i < 5; i++) {
+      detector.onCallStart(environment, "datastore_v3", "Get", new byte[]{(byte) i});
+    }
+
+    assertTrue(detector.getRouteCallCounts().isEmpty(), "no repeated calls");
+  }
+
+  @Test
+  public void testSeparateRequests() {
+    final RepeatedCallDetector detector = new RepeatedCallDetector(3);
+    for (int r = 0; r < 4; r++) {
+      final Environment environment = new TestEnvironment();
+      for (int i = 0; i < 3; i++) {
+        serialCall(detector, environment, "datastore_v3", "Get", i);
+      }
+    }
+
+    final List<RouteCallCounts> counts = detector.getRouteCallCounts();
+    assertEquals(1, counts.size(), "route count");
+    assertEquals(4, counts.get(0).getRequests(), "requests");
+    assertEquals(12, counts.get(0).getCalls(), "calls");
+    assertEquals(3, counts.get(0).getMaxRun(), "max run");
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    assertNull(RepeatedCallDetector.fromProperties(Collections.emptyMap()), "detector");
+    assertNull(RepeatedCallDetector.fromProperties(
+        Collections.singletonMap(RepeatedCallDetector.PROPERTY_THRESHOLD, "0")), "detector");
+  }
+
+  private static void serialCall(
+      final RepeatedCallDetector detector,
+      final Environment environment,
+      final String packageName,
+      final String methodName,
+      final int key
+  ) {
+    final byte[] request = new byte[]{(byte) key};
+    detector.onCallStart(environment, packageName, methodName, request);
+    detector.onCallComplete(environment, packageName, methodName, request, new byte[0], null, 0L);
+  }
+
+  static class TestEnvironment implements Environment {
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    public String getAppId() {
+      return "test";
+    }
+
+    public String getModuleId() {
+      return "default";
+    }
+
+    public String getVersionId() {
+      return "1";
+    }
+
+    public String getEmail() {
+      return null;
+    }
+
+    public boolean isLoggedIn() {
+      return false;
+    }
+
+    public boolean isAdmin() {
+      return false;
+    }
+
+    public String getAuthDomain() {
+      return "gmail.com";
+    }
+
+    @Deprecated
+    public String getRequestNamespace() {
+      return "";
+    }
+
+    public Map<String, Object> getAttributes() {
+      return attributes;
+    }
+
+    public long getRemainingMillis() {
+      return Long.MAX_VALUE;
+    }
+  }
+}
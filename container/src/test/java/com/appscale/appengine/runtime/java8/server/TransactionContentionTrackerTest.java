@@ -0,0 +1,118 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.server.RepeatedCallDetectorTest.TestEnvironment;
+import com.appscale.appengine.runtime.java8.server.TransactionContentionTracker.GroupContention;
+import com.google.apphosting.api.ApiProxy.ApplicationException;
+import com.google.apphosting.api.ApiProxy.Environment;
+import com.google.apphosting.datastore.DatastoreV3Pb.GetRequest;
+import com.google.apphosting.datastore.DatastoreV3Pb.PutRequest;
+import com.google.apphosting.datastore.DatastoreV3Pb.Transaction;
+import com.google.storage.onestore.v3.OnestoreEntity.EntityProto;
+import com.google.storage.onestore.v3.OnestoreEntity.Reference;
+
+/**
+ *
+ */
+public class TransactionContentionTrackerTest {
+  private final Environment environment = new TestEnvironment();
+
+  @Test
+  public void testCommitOutcomes() {
+    final TransactionContentionTracker tracker = new TransactionContentionTracker(10);
+
+    runTransaction(tracker, 1L, key("Counter", 1, null), null);
+    runTransaction(tracker, 2L, key("Counter", 1, null), new ApplicationException(2, "Concurrency exception."));
+    runTransaction(tracker, 3L, key("Counter", 1, "Shard", 7), null);
+    runTransaction(tracker, 4L, key("Counter", 2, null), null);
+
+    final List<GroupContention> groups = tracker.getTopGroups(10);
+    assertEquals(2, groups.size(), "group count");
+    final GroupContention hot = groups.get(0);
+    assertEquals("Counter", hot.getKind(), "kind");
+    assertEquals(3, hot.getTransactions(), "transactions");
+    assertEquals(3, hot.getCommits(), "commits");
+    assertEquals(1, hot.getCommitFailures(), "commit failures");
+    assertEquals(1, hot.getConcurrentFailures(), "concurrent failures");
+    assertEquals(1.0 / 3, hot.getCommitFailureRate(), 0.0001, "failure rate");
+    assertNotEquals(hot.getGroupHash(), groups.get(1).getGroupHash(), "distinct groups");
+    assertEquals(0, groups.get(1).getCommitFailures(), "commit failures");
+  }
+
+  @Test
+  public void testPutAndRollback() {
+    final TransactionContentionTracker tracker = new TransactionContentionTracker(10);
+    final Transaction transaction = transaction(5L);
+    tracker.onCallComplete(environment, "datastore_v3", "BeginTransaction",
+        new byte[0], transaction.toByteArray(), null, 0L);
+    final PutRequest put = new PutRequest();
+    put.setTransaction(transaction);
+    final EntityProto entity = new EntityProto();
+    entity.setKey(key("Account", 9, null));
+    entity.getMutableEntityGroup().addElement().setType("Account").setId(9);
+    put.addEntity(entity);
+    tracker.onCallComplete(environment, "datastore_v3", "Put", put.toByteArray(), new byte[0], null, 0L);
+    tracker.onCallComplete(environment, "datastore_v3", "Rollback", transaction.toByteArray(), new byte[0], null, 0L);
+
+    final List<GroupContention> groups = tracker.getTopGroups(10);
+    assertEquals(1, groups.size(), "group count");
+    assertEquals("Account", groups.get(0).getKind(), "kind");
+    assertEquals(1, groups.get(0).getRollbacks(), "rollbacks");
+    assertEquals(0, groups.get(0).getCommits(), "commits");
+  }
+
+  @Test
+  public void testNonTransactionalCalls() {
+    final TransactionContentionTracker tracker = new TransactionContentionTracker(10);
+    final GetRequest get = new GetRequest();
+    get.addKey(key("Counter", 1, null));
+    tracker.onCallComplete(environment, "datastore_v3", "Get", get.toByteArray(), new byte[0], null, 0L);
+    tracker.onCallComplete(environment, "datastore_v3", "Commit", transaction(99L).toByteArray(), null,
+        new ApplicationException(2, "Concurrency exception."), 0L);
+
+    assertTrue(tracker.getTopGroups(10).isEmpty(), "no groups");
+  }
+
+  private void runTransaction(
+      final TransactionContentionTracker tracker,
+      final long handle,
+      final Reference key,
+      final Throwable commitError
+  ) {
+    final Transaction transaction = transaction(handle);
+    tracker.onCallComplete(environment, "datastore_v3", "BeginTransaction",
+        new byte[0], transaction.toByteArray(), null, 0L);
+    final GetRequest get = new GetRequest();
+    get.setTransaction(transaction);
+    get.addKey(key);
+    tracker.onCallComplete(environment, "datastore_v3", "Get", get.toByteArray(), new byte[0], null, 0L);
+    tracker.onCallComplete(environment, "datastore_v3", "Commit", transaction.toByteArray(),
+        commitError == null ? new byte[0] : null, commitError, 0L);
+  }
+
+  private static Transaction transaction(final long handle) {
+    final Transaction transaction = new Transaction();
+    transaction.setHandle(handle);
+    transaction.setApp("test");
+    return transaction;
+  }
+
+  private static Reference key(final String kind, final long id, final String childKind, final long... childId) {
+    final Reference reference = new Reference();
+    reference.setApp("test");
+    reference.getMutablePath().addElement().setType(kind).setId(id);
+    if (childKind != null) {
+      reference.getMutablePath().addElement().setType(childKind).setId(childId[0]);
+    }
+    return reference;
+  }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class AdmissionControllerTest {
+
+  @Test
+  public void testStaticLimit() {
+    final AdmissionController controller = new AdmissionController(1, false, 0, 0L, 1);
+    assertTrue(controller.acquire(), "first admitted");
+    assertFalse(controller.acquire(), "second rejected");
+    assertEquals(1, controller.getRejectedQueueFull(), "rejected queue full");
+    controller.release(-1L);
+    assertTrue(controller.acquire(), "admitted after release");
+    assertEquals(2, controller.getAdmitted(), "admitted");
+  }
+
+  @Test
+  public void testQueueTimeout() {
+    final AdmissionController controller = new AdmissionController(1, false, 1, 10L, 1);
+    assertTrue(controller.acquire(), "first admitted");
+    assertFalse(controller.acquire(), "queued then rejected");
+    assertEquals(1, controller.getQueuedTotal(), "queued");
+    assertEquals(1, controller.getRejectedTimeout(), "rejected timeout");
+    assertEquals(0, controller.getQueued(), "queue length");
+  }
+
+  @Test
+  public void testAdaptiveLimitDecrease() throws InterruptedException {
+    final AdmissionController controller = new AdmissionController(10, true, 0, 0L, 1);
+    assertTrue(controller.acquire());
+    controller.release(TimeUnit.MILLISECONDS.toNanos(1));
+    Thread.sleep(5L);
+    assertTrue(controller.acquire());
+    controller.release(TimeUnit.MILLISECONDS.toNanos(3));
+    assertEquals(9, controller.getLimit(), "limit after slow request");
+  }
+
+  @Test
+  public void testFromConfiguration() {
+    assertNull(AdmissionController.fromConfiguration(null, Collections.emptyMap()), "unlimited");
+    final AdmissionController controller = AdmissionController.fromConfiguration(null,
+        Collections.singletonMap(AdmissionController.PROPERTY_MAX_CONCURRENT_REQUESTS, "8"));
+    assertEquals(8, controller.getLimit(), "limit");
+  }
+
+  @Test
+  public void testOfflineRequests() {
+    assertNull(AdmissionController.forOfflineRequests(
+        Collections.singletonMap(AdmissionController.PROPERTY_OFFLINE_MAX_CONCURRENT_REQUESTS, "0"), 10),
+        "disabled");
+    final AdmissionController controller = AdmissionController.forOfflineRequests(Collections.emptyMap(), 2);
+    assertEquals("admission_offline", controller.getName(), "name");
+    assertEquals(2, controller.getLimit(), "default limit");
+    assertTrue(controller.acquire(), "first admitted");
+    assertTrue(controller.acquire(), "second admitted");
+    assertFalse(controller.acquire(), "third rejected without queueing");
+    assertEquals(0, controller.getQueuedTotal(), "not queued");
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class ApiCallTrackerTest {
+
+  @Test
+  public void testCompletedCalls() throws InterruptedException {
+    final ApiCallTracker tracker = new ApiCallTracker(2);
+    final FutureTask<String> call = new FutureTask<>(() -> "done");
+    tracker.acquire(call);
+    assertEquals(1, tracker.getInFlight(), "in-flight");
+    call.run();
+    tracker.release(call);
+    tracker.release(call);
+    assertEquals(0, tracker.getInFlight(), "in-flight after release");
+    assertEquals(0, tracker.awaitCompletion(0L), "cancelled");
+  }
+
+  @Test
+  public void testAbandonedCallsCancelled() throws InterruptedException {
+    final long cancelledBefore = ApiCallTracker.getCancelledCalls();
+    final ApiCallTracker tracker = new ApiCallTracker(2);
+    final CompletableFuture<String> call1 = new CompletableFuture<>();
+    final CompletableFuture<String> call2 = new CompletableFuture<>();
+    tracker.acquire(call1);
+    tracker.acquire(call2);
+
+    assertEquals(2, tracker.awaitCompletion(10L), "cancelled");
+    assertTrue(call1.isCancelled(), "call cancelled");
+    assertTrue(call2.isCancelled(), "call cancelled");
+    assertEquals(0, tracker.getInFlight(), "in-flight after cancel");
+    assertEquals(cancelledBefore + 2, ApiCallTracker.getCancelledCalls(), "cancelled count");
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class BackgroundThreadsTest {
+
+  @Test
+  public void testLimit() throws Exception {
+    final BackgroundThreads backgroundThreads = new BackgroundThreads(1, 1, 10_000L);
+    backgroundThreads.acquire();
+    assertEquals(1, backgroundThreads.getRunning(), "running");
+    final CountDownLatch acquired = new CountDownLatch(1);
+    final Thread waiter = new Thread(() -> {
+      backgroundThreads.acquire();
+      acquired.countDown();
+    });
+    waiter.start();
+    while (backgroundThreads.getQueued() == 0) {
+      Thread.sleep(10L);
+    }
+    assertThrows(IllegalStateException.class, backgroundThreads::acquire, "queue full");
+    assertEquals(1, backgroundThreads.getRejected(), "rejected");
+    backgroundThreads.release();
+    assertEquals(true, acquired.await(10, TimeUnit.SECONDS), "queued acquire");
+    waiter.join();
+    assertEquals(1, backgroundThreads.getRunning(), "running after release");
+    assertEquals(0, backgroundThreads.getQueued(), "queued after release");
+  }
+
+  @Test
+  public void testTimeout() {
+    final BackgroundThreads backgroundThreads = new BackgroundThreads(1, 1, 10L);
+    backgroundThreads.acquire();
+    assertThrows(IllegalStateException.class, backgroundThreads::acquire, "timeout");
+    assertEquals(0, backgroundThreads.getQueued(), "queued after timeout");
+    assertEquals(1, backgroundThreads.getRunning(), "running");
+  }
+}
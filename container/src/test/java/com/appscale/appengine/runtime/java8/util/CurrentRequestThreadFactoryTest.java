@@ -0,0 +1,70 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.util.CurrentRequestThreadFactory.RequestThreads;
+
+/**
+ *
+ */
+public class CurrentRequestThreadFactoryTest {
+
+  @Test
+  public void testTerminate() throws Exception {
+    final RequestThreads requestThreads = new RequestThreads();
+    final Thread first = sleeper();
+    final Thread second = sleeper();
+    requestThreads.add(first);
+    requestThreads.add(second);
+    first.start();
+    second.start();
+    final long start = System.nanoTime();
+    assertEquals(0, requestThreads.terminate(() -> 60_000L), "threads left running");
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000L, "terminated promptly");
+    assertFalse(first.isAlive(), "first terminated");
+    assertFalse(second.isAlive(), "second terminated");
+  }
+
+  @Test
+  public void testLeftRunning() throws Exception {
+    final RequestThreads requestThreads = new RequestThreads();
+    final CountDownLatch release = new CountDownLatch(1);
+    final Thread stubborn = new Thread(() -> {
+      while (release.getCount() > 0) {
+        try {
+          release.await();
+        } catch (final InterruptedException e) {
+          // ignore interrupts
+        }
+      }
+    });
+    requestThreads.add(stubborn);
+    stubborn.start();
+    try {
+      assertEquals(1, requestThreads.terminate(() -> 0L), "threads left running");
+    } finally {
+      release.countDown();
+      stubborn.join();
+    }
+    assertEquals(0, requestThreads.terminate(() -> 0L), "no threads after completion");
+  }
+
+  private static Thread sleeper() {
+    return new Thread(() -> {
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (final InterruptedException e) {
+        // done
+      }
+    });
+  }
+}
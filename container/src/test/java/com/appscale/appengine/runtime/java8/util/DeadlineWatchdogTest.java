@@ -0,0 +1,47 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.util.DeadlineWatchdog.Deadline;
+
+/**
+ *
+ */
+public class DeadlineWatchdogTest {
+
+  @Test
+  public void testDeadlines() {
+    final AtomicLong now = new AtomicLong();
+    final DeadlineWatchdog watchdog = new DeadlineWatchdog(1000L, now::get);
+    final Deadline deadline = watchdog.watch("/slow", 500L);
+    watchdog.advance(0L, 4L);
+    assertFalse(Thread.currentThread().isInterrupted(), "before soft deadline");
+    watchdog.advance(4L, 5L);
+    assertTrue(Thread.interrupted(), "interrupted at soft deadline");
+    assertEquals(1, watchdog.getSoftDeadlines(), "soft deadlines");
+    watchdog.advance(5L, 14L);
+    assertEquals(0, watchdog.getHardDeadlines(), "before hard deadline");
+    watchdog.advance(14L, 15L);
+    assertEquals(1, watchdog.getHardDeadlines(), "hard deadlines");
+    deadline.cancel();
+    assertFalse(Thread.currentThread().isInterrupted(), "interrupt cleared on cancel");
+  }
+
+  @Test
+  public void testCancel() {
+    final AtomicLong now = new AtomicLong();
+    final DeadlineWatchdog watchdog = new DeadlineWatchdog(1000L, now::get);
+    watchdog.watch("/fast", 500L).cancel();
+    watchdog.advance(0L, 1000L);
+    assertFalse(Thread.currentThread().isInterrupted(), "not interrupted");
+    assertEquals(0, watchdog.getSoftDeadlines(), "soft deadlines");
+  }
+}
@@ -7,8 +7,10 @@ package com.appscale.appengine.runtime.java8.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import javax.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import com.appscale.appengine.runtime.java8.util.Logins.LoginCookie;
@@ -77,4 +79,31 @@ public class LoginsTest {
     assertEquals("", lc.getEmail(), "Email");
     assertEquals("", lc.getUserId(), "User Id");
   }
+
+  @Test
+  public void testCachedLoginCookie() {
+    System.setProperty("APPLICATION_ID", "test");
+    System.setProperty("COOKIE_SECRET", "5a5db44769184e83a6f9d582fe8b22b4");
+    final String cookie = "example@appscale.internal:example::6d5e52015d3752026ba46e3670d4c58740914d20";
+
+    final LoginCookie lc = Logins.parseCookie(new Cookie("dev_appserver_login", cookie));
+
+    assertTrue(lc.isValid(), "Valid login");
+    assertSame(lc, Logins.parseCookie(new Cookie("dev_appserver_login", cookie)), "Cached login");
+  }
+
+  @Test
+  public void testCachedLoginCookieSecretChange() {
+    System.setProperty("APPLICATION_ID", "test");
+    System.setProperty("COOKIE_SECRET", "5a5db44769184e83a6f9d582fe8b22b4");
+    final String cookie = "example@appscale.internal:example::6d5e52015d3752026ba46e3670d4c58740914d20";
+    assertTrue(Logins.parseCookie(new Cookie("dev_appserver_login", cookie)).isValid(), "Valid login");
+
+    System.setProperty("COOKIE_SECRET", "00000000000000000000000000000000");
+    try {
+      assertFalse(Logins.parseCookie(new Cookie("dev_appserver_login", cookie)).isValid(), "Valid login");
+    } finally {
+      System.setProperty("COOKIE_SECRET", "5a5db44769184e83a6f9d582fe8b22b4");
+    }
+  }
 }
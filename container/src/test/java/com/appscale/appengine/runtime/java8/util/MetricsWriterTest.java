@@ -0,0 +1,53 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class MetricsWriterTest {
+
+  @Test
+  public void testCounter() {
+    final StringWriter out = new StringWriter();
+    final MetricsWriter writer = new MetricsWriter(new PrintWriter(out));
+    writer.counter("test_total", "Test counter", 3L);
+    writer.family("test_by_code", MetricsWriter.COUNTER, "Test by code");
+    writer.sample("test_by_code", "code", "a\"b", 1L);
+    assertEquals(
+        "# HELP test_total Test counter\n" +
+        "# TYPE test_total counter\n" +
+        "test_total 3\n" +
+        "# HELP test_by_code Test by code\n" +
+        "# TYPE test_by_code counter\n" +
+        "test_by_code{code=\"a\\\"b\"} 1\n",
+        out.toString().replace(System.lineSeparator(), "\n"),
+        "text format");
+  }
+
+  @Test
+  public void testHistogram() {
+    final Histogram histogram = new Histogram(0.1, 1.0);
+    histogram.recordMillis(50);
+    histogram.recordMillis(100);
+    histogram.recordMillis(500);
+    histogram.recordMillis(5000);
+    final StringWriter out = new StringWriter();
+    new MetricsWriter(new PrintWriter(out)).histogram("test_seconds", "Test histogram", histogram);
+    final String text = out.toString();
+    assertTrue(text.contains("test_seconds_bucket{le=\"0.1\"} 2"), "bound inclusive");
+    assertTrue(text.contains("test_seconds_bucket{le=\"1.0\"} 3"), "cumulative bucket");
+    assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 4"), "overflow bucket");
+    assertTrue(text.contains("test_seconds_sum 5.65"), "sum");
+    assertTrue(text.contains("test_seconds_count 4"), "count");
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.util.Readiness.ReadinessCheck;
+import com.appscale.appengine.runtime.java8.util.Readiness.Status;
+
+/**
+ *
+ */
+public class ReadinessTest {
+
+  @Test
+  public void testCachedResult() {
+    final AtomicLong now = new AtomicLong();
+    final AtomicInteger checks = new AtomicInteger();
+    final AtomicReference<Status> status = new AtomicReference<>(Status.READY);
+    final Readiness readiness = new Readiness(now::get);
+    readiness.register(new ReadinessCheck() {
+      @Override
+      public String getName() {
+        return "test";
+      }
+
+      @Override
+      public Status check() {
+        checks.incrementAndGet();
+        return status.get();
+      }
+    });
+    assertEquals(Status.UNREADY, readiness.getResult().getStatus(), "unready before startup");
+    assertEquals(Collections.singletonList("startup"), readiness.getResult().getReasons(), "startup reason");
+    readiness.started();
+    assertEquals(Status.READY, readiness.getResult().getStatus(), "ready after startup");
+    status.set(Status.DEGRADED);
+    assertEquals(Status.READY, readiness.getResult().getStatus(), "cached result");
+    assertEquals(1, checks.get(), "checks within interval");
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertEquals(Status.DEGRADED, readiness.getResult().getStatus(), "degraded after interval");
+    assertEquals(Collections.singletonList("test"), readiness.getResult().getReasons(), "degraded reason");
+    assertEquals(2, checks.get(), "checks after interval");
+  }
+
+  @Test
+  public void testGcCheck() {
+    final AtomicLong gcMillis = new AtomicLong();
+    final AtomicLong now = new AtomicLong();
+    final GcReadinessCheck check = new GcReadinessCheck(gcMillis::get, now::get);
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    gcMillis.addAndGet(100);
+    assertEquals(Status.READY, check.check(), "low gc ratio");
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    gcMillis.addAndGet(300);
+    assertEquals(Status.DEGRADED, check.check(), "gc ratio degraded");
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    gcMillis.addAndGet(800);
+    assertEquals(Status.UNREADY, check.check(), "gc ratio unready");
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import com.appscale.appengine.runtime.java8.util.RequestQueue.DropReason;
+
+/**
+ *
+ */
+public class RequestQueueTest {
+
+  @Test
+  public void testAdaptiveLifo() {
+    final AtomicLong now = new AtomicLong();
+    final RequestQueue queue = new RequestQueue(false, true, 10, 10L, 100L, now::get);
+    final Runnable first = () -> { };
+    final Runnable second = () -> { };
+    final Runnable third = () -> { };
+    queue.offer(first);
+    queue.offer(second);
+    assertSame(first, queue.poll(), "fifo when not congested");
+    queue.offer(third);
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+    assertSame(third, queue.poll(), "lifo when congested");
+    assertSame(second, queue.poll(), "last job");
+    assertEquals(1, queue.getDispatchedLifo(), "lifo dispatched");
+  }
+
+  @Test
+  public void testCodelDrop() {
+    final AtomicLong now = new AtomicLong();
+    final RequestQueue queue = new RequestQueue(true, false, 10, 10L, 100L, now::get);
+    final AtomicReference<DropReason> reason = new AtomicReference<>();
+    final AtomicLong requestAgeMillis = new AtomicLong(1000L);
+    final Runnable job = () -> reason.set(RequestQueue.takeDropReason(requestAgeMillis.get()));
+    for (int i = 0; i < 3; i++) {
+      queue.offer(job);
+    }
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+    queue.poll().run();
+    assertNull(reason.get(), "not dropped within interval");
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+    queue.poll().run();
+    assertEquals(DropReason.CODEL, reason.get(), "dropped when overloaded");
+    assertTrue(queue.isOverloaded(), "overloaded");
+    assertNull(RequestQueue.takeDropReason(1000L), "drop reason scoped to job");
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    requestAgeMillis.set(5L);
+    queue.poll().run();
+    assertNull(reason.get(), "newer request not dropped for expired job");
+    assertEquals(1, queue.getDropped(DropReason.CODEL), "codel drops");
+    assertNull(queue.poll(), "empty");
+  }
+
+  @Test
+  public void testCapacity() {
+    final RequestQueue queue = new RequestQueue(true, false, 1, 10L, 100L);
+    assertTrue(queue.offer(() -> { }), "offer");
+    assertFalse(queue.offer(() -> { }), "offer when full");
+    assertEquals(1, queue.getDropped(DropReason.QUEUE_FULL), "queue full drops");
+  }
+
+  @Test
+  public void testOfferTimeout() throws Exception {
+    final RequestQueue queue = new RequestQueue(true, false, 1, 10L, 100L);
+    assertTrue(queue.offer(() -> { }, 0L, TimeUnit.MILLISECONDS), "offer");
+    assertFalse(queue.offer(() -> { }, 10L, TimeUnit.MILLISECONDS), "offer timed out when full");
+    assertEquals(1, queue.getDropped(DropReason.QUEUE_FULL), "queue full drops");
+
+    final Thread consumer = new Thread(() -> {
+      try {
+        Thread.sleep(50L);
+      } catch (final InterruptedException e) {
+        return;
+      }
+      queue.poll();
+    });
+    consumer.start();
+    try {
+      assertTrue(queue.offer(() -> { }, 10L, TimeUnit.SECONDS), "offer after waiting for capacity");
+    } finally {
+      consumer.join();
+    }
+    assertEquals(1, queue.size(), "size");
+    assertEquals(1, queue.getDropped(DropReason.QUEUE_FULL), "queue full drops");
+  }
+
+  @Test
+  public void testFromProperties() {
+    assertNull(RequestQueue.fromProperties(Collections.emptyMap()), "default queue");
+    assertNull(RequestQueue.fromProperties(
+        Collections.singletonMap(RequestQueue.PROPERTY_DISCIPLINE, "fifo")), "fifo");
+    final RequestQueue queue = RequestQueue.fromProperties(
+        Collections.singletonMap(RequestQueue.PROPERTY_DISCIPLINE, "codel, adaptive_lifo"));
+    assertEquals("request_queue", queue.getName(), "name");
+  }
+}
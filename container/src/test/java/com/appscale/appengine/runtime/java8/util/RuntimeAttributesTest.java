@@ -0,0 +1,80 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class RuntimeAttributesTest {
+
+  @Test
+  public void testSlotAndExtraAttributes() {
+    final RuntimeAttributes attributes = new RuntimeAttributes();
+    assertTrue(attributes.isEmpty(), "initially empty");
+
+    assertNull(attributes.put(RuntimeAttributes.INSTANCE_ID, "1"));
+    assertNull(attributes.put("com.example.extra", 7));
+    assertEquals("1", attributes.get(RuntimeAttributes.INSTANCE_ID), "slot attribute");
+    assertEquals(7, attributes.get("com.example.extra"), "extra attribute");
+    assertEquals(2, attributes.size(), "size");
+
+    assertEquals("1", attributes.put(RuntimeAttributes.INSTANCE_ID, "2"), "previous slot value");
+    assertEquals("2", attributes.remove(RuntimeAttributes.INSTANCE_ID), "removed slot value");
+    assertFalse(attributes.containsKey(RuntimeAttributes.INSTANCE_ID), "slot removed");
+    assertNull(attributes.get("com.example.missing"), "missing attribute");
+    assertNull(attributes.get(null), "null key");
+  }
+
+  @Test
+  public void testConcurrentMapOperations() {
+    final RuntimeAttributes attributes = new RuntimeAttributes();
+    assertNull(attributes.putIfAbsent(RuntimeAttributes.OFFLINE, Boolean.TRUE));
+    assertEquals(Boolean.TRUE, attributes.putIfAbsent(RuntimeAttributes.OFFLINE, Boolean.FALSE));
+    assertFalse(attributes.replace(RuntimeAttributes.OFFLINE, Boolean.FALSE, Boolean.TRUE), "replace mismatch");
+    assertTrue(attributes.replace(RuntimeAttributes.OFFLINE, Boolean.TRUE, Boolean.FALSE), "replace match");
+    assertFalse(attributes.remove(RuntimeAttributes.OFFLINE, Boolean.TRUE), "remove mismatch");
+    assertTrue(attributes.remove(RuntimeAttributes.OFFLINE, Boolean.FALSE), "remove match");
+    assertEquals("value", attributes.computeIfAbsent("com.example.computed", key -> "value"), "computed");
+    assertThrows(NullPointerException.class, () -> attributes.put(RuntimeAttributes.OFFLINE, null));
+    assertThrows(NullPointerException.class, () -> attributes.put("com.example.extra", null));
+  }
+
+  @Test
+  public void testEntries() {
+    final Map<String, Object> expected = new HashMap<>();
+    expected.put(RuntimeAttributes.REQUEST_LOG_ID, "id");
+    expected.put(RuntimeAttributes.API_DEADLINE, 5.0);
+    expected.put("com.example.extra", "extra");
+    final RuntimeAttributes attributes = new RuntimeAttributes();
+    attributes.putAll(expected);
+
+    assertEquals(expected, new HashMap<>(attributes), "entries");
+    attributes.entrySet().removeIf(entry -> entry.getKey().startsWith("com.example"));
+    expected.remove("com.example.extra");
+    assertEquals(expected, attributes, "entries after remove");
+    attributes.clear();
+    assertTrue(attributes.isEmpty(), "cleared");
+  }
+
+  @Test
+  public void testRequestIdsIncrease() {
+    String last = RuntimeEnvironment.generateRequestId();
+    for (int i = 0; i < 1000; i++) {
+      final String next = RuntimeEnvironment.generateRequestId();
+      assertTrue(Long.parseLong(next, 16) > Long.parseLong(last, 16), "increasing request id");
+      last = next;
+    }
+  }
+}
@@ -16,6 +16,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import com.google.appengine.repackaged.com.google.common.collect.ImmutableList;
@@ -41,6 +42,7 @@ public class Main extends SharedMain {
   private String applicationId;
   private String applicationDefaultVersionHostname;
   private String pidfile;
+  private final Map<String, String> serverProperties = new LinkedHashMap<>();
 
   private void appscaleInit() {
     setSystemProperties();
@@ -128,10 +130,131 @@ public class Main extends SharedMain {
         return ImmutableList.of(
             " --python_api_server_port=API_PORT Set the port for the api server.");
       }
-    }));
+    },
+    serverOption("max_threads", "appscale.server.max_threads",
+        " --max_threads=COUNT        Maximum request threads (default 200)."),
+    serverOption("min_threads", "appscale.server.min_threads",
+        " --min_threads=COUNT        Minimum request threads (default 8)."),
+    serverOption("thread_idle_timeout_ms", "appscale.server.thread_idle_timeout_ms",
+        " --thread_idle_timeout_ms=MILLIS Idle time before an extra request thread",
+        "                              exits (default 60000)."),
+    serverOption("reserved_threads", "appscale.server.reserved_threads",
+        " --reserved_threads=COUNT   Threads reserved for immediate dispatch, -1 for",
+        "                              automatic (default -1)."),
+    serverOption("acceptors", "appscale.server.acceptors",
+        " --acceptors=COUNT          Connection acceptor threads, -1 for automatic",
+        "                              (default -1)."),
+    serverOption("selectors", "appscale.server.selectors",
+        " --selectors=COUNT          Connection selector threads (default processors)."),
+    serverOption("accept_queue_size", "appscale.server.accept_queue_size",
+        " --accept_queue_size=SIZE   Listen backlog, 0 for the system default."),
+    serverOption("idle_timeout_ms", "appscale.server.idle_timeout_ms",
+        " --idle_timeout_ms=MILLIS   Connection idle timeout (default 30000)."),
+    serverOption("output_buffer_size", "appscale.server.output_buffer_size",
+        " --output_buffer_size=BYTES Response buffer size (default 32768)."),
+    serverOption("request_header_size", "appscale.server.request_header_size",
+        " --request_header_size=BYTES Maximum request header size (default 8192)."),
+    serverOption("response_header_size", "appscale.server.response_header_size",
+        " --response_header_size=BYTES Maximum response header size (default 8192)."),
+    new Option(null, "h2c", true) {
+      public void apply() {
+        serverProperties.put("appscale.server.h2c", "true");
+      }
+
+      public List<String> getHelpLines() {
+        return ImmutableList.of(
+            " --h2c                      Accept HTTP/2 cleartext connections.");
+      }
+    },
+    serverOption("h2c_max_concurrent_streams", "appscale.server.h2c.max_concurrent_streams",
+        " --h2c_max_concurrent_streams=COUNT Maximum streams per HTTP/2 connection."),
+    serverOption("h2c_stream_window", "appscale.server.h2c.stream_window",
+        " --h2c_stream_window=BYTES  Initial HTTP/2 stream flow control window."),
+    serverOption("h2c_session_window", "appscale.server.h2c.session_window",
+        " --h2c_session_window=BYTES Initial HTTP/2 session flow control window."),
+    serverOption("unix_socket", "appscale.server.unix_socket",
+        " --unix_socket=PATH         Also accept connections on a Unix domain socket."),
+    new Option(null, "unix_socket_only", true) {
+      public void apply() {
+        serverProperties.put("appscale.server.unix_socket_only", "true");
+      }
+
+      public List<String> getHelpLines() {
+        return ImmutableList.of(
+            " --unix_socket_only         Accept connections only on the Unix domain socket.");
+      }
+    },
+    serverOption("admin_port", "appscale.admin.port",
+        " --admin_port=PORT          Serve health, metrics and diagnostics on a separate",
+        "                              admin port."),
+    serverOption("admin_address", "appscale.admin.address",
+        " --admin_address=ADDRESS    The address for the admin port (default 127.0.0.1)."),
+    serverOption("admin_threads", "appscale.admin.threads",
+        " --admin_threads=COUNT      Threads for the admin port (default 4)."),
+    new Option(null, "compression", true) {
+      public void apply() {
+        serverProperties.put("appscale.compression.enabled", "true");
+      }
+
+      public List<String> getHelpLines() {
+        return ImmutableList.of(
+            " --compression              Gzip compress text responses.");
+      }
+    },
+    serverOption("compression_mime_types", "appscale.compression.mime_types",
+        " --compression_mime_types=TYPE,TYPE Mime types to compress (default text types,",
+        "                              javascript, json, xml and svg)."),
+    serverOption("compression_min_size", "appscale.compression.min_size",
+        " --compression_min_size=BYTES Minimum response size to compress (default 1024)."),
+    serverOption("compression_level", "appscale.compression.level",
+        " --compression_level=LEVEL  Compression level 1-9 (default 6)."),
+    serverOption("compression_excluded_paths", "appscale.compression.excluded_paths",
+        " --compression_excluded_paths=PATH,PATH Path specs for responses not to compress."),
+    serverOption("drain_delay_ms", "appscale.drain.delay_ms",
+        " --drain_delay_ms=MILLIS    Time unready before closing connectors when draining",
+        "                              (default 5000)."),
+    serverOption("drain_timeout_ms", "appscale.drain.timeout_ms",
+        " --drain_timeout_ms=MILLIS  Maximum wait for requests and API calls when draining",
+        "                              (default 30000)."),
+    serverOption("offline_max_concurrent_requests", "appscale.offline.max_concurrent_requests",
+        " --offline_max_concurrent_requests=COUNT Concurrent task queue requests, 0 for no",
+        "                              separate limit (default half the server threads)."),
+    serverOption("offline_queue_size", "appscale.offline.queue_size",
+        " --offline_queue_size=COUNT Task queue requests that can wait when at the limit",
+        "                              (default 0)."),
+    serverOption("deadline_watchdog", "appscale.deadline.watchdog",
+        " --deadline_watchdog=BOOL   Interrupt requests past their deadline (default true)."),
+    serverOption("deadline_hard_delay_ms", "appscale.deadline.hard_delay_ms",
+        " --deadline_hard_delay_ms=MILLIS Time after the soft deadline to log the stack of",
+        "                              a request still running (default 10000)."),
+    serverOption("background_max_threads", "appscale.background.max_threads",
+        " --background_max_threads=COUNT Maximum running background threads (default 256)."),
+    serverOption("background_queue_size", "appscale.background.queue_size",
+        " --background_queue_size=COUNT Background threads that can wait to start when at",
+        "                              the limit (default 16)."),
+    serverOption("background_queue_timeout_ms", "appscale.background.queue_timeout_ms",
+        " --background_queue_timeout_ms=MILLIS Maximum wait to start a background thread",
+        "                              (default 1000).")
+    ));
     return options;
   }
 
+  /**
+   * Option for a server setting, applied as a system property so it is
+   * available to the container as a service property.
+   */
+  private Option serverOption(final String name, final String property, final String... helpLines) {
+    return new Option(null, name, false) {
+      public void apply() {
+        serverProperties.put(property, this.getValue());
+      }
+
+      public List<String> getHelpLines() {
+        return ImmutableList.copyOf(helpLines);
+      }
+    };
+  }
+
   private void run(final String[] args) {
     Parser parser = new Parser();
     ParseResult result = parser.parseArgs(new StartAction(), buildOptions(), args);
@@ -162,6 +285,9 @@ public class Main extends SharedMain {
     if (applicationDefaultVersionHostname != null) {
       System.setProperty("APPLICATION_HOST", applicationDefaultVersionHostname);
     }
+    for (final Map.Entry<String, String> serverProperty : serverProperties.entrySet()) {
+      System.setProperty(serverProperty.getKey(), serverProperty.getValue());
+    }
   }
 
   private static void setSecret() {
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.testing;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution for simulated API calls.
+ */
+public interface LatencyDistribution {
+
+  /**
+   * Next latency in nanoseconds.
+   */
+  long nextNanos(Random random);
+
+  static LatencyDistribution none() {
+    return random -> 0L;
+  }
+
+  static LatencyDistribution fixed(final long latency, final TimeUnit unit) {
+    final long nanos = unit.toNanos(latency);
+    return random -> nanos;
+  }
+
+  static LatencyDistribution uniform(final long min, final long max, final TimeUnit unit) {
+    if (max < min) {
+      throw new IllegalArgumentException("Invalid range " + min + "-" + max);
+    }
+    final long minNanos = unit.toNanos(min);
+    final long rangeNanos = unit.toNanos(max) - minNanos;
+    return random -> minNanos + (long) (random.nextDouble() * rangeNanos);
+  }
+
+  static LatencyDistribution exponential(final long mean, final TimeUnit unit) {
+    final long meanNanos = unit.toNanos(mean);
+    return random -> (long) (-Math.log(1.0 - random.nextDouble()) * meanNanos);
+  }
+
+  /**
+   * Log-normal latency, the long tail typical of datastore calls.
+   *
+   * @param median The median latency
+   * @param sigma The shape, larger values give a longer tail (e.g. 0.5 - 1.0)
+   */
+  static LatencyDistribution logNormal(final long median, final TimeUnit unit, final double sigma) {
+    final double mu = Math.log(unit.toNanos(median));
+    return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+  }
+
+  /**
+   * Parse a distribution description.
+   *
+   * Supported forms, all in milliseconds: {@code none}, {@code fixed:5},
+   * {@code uniform:1-10}, {@code exponential:5}, {@code lognormal:5:0.8}
+   */
+  static LatencyDistribution parse(final String description) {
+    final String[] parts = description.trim().split(":");
+    try {
+      switch (parts[0]) {
+        case "none":
+          return none();
+        case "fixed":
+          return fixed(Long.parseLong(parts[1]), TimeUnit.MILLISECONDS);
+        case "uniform":
+          final String[] range = parts[1].split("-");
+          return uniform(Long.parseLong(range[0]), Long.parseLong(range[1]), TimeUnit.MILLISECONDS);
+        case "exponential":
+          return exponential(Long.parseLong(parts[1]), TimeUnit.MILLISECONDS);
+        case "lognormal":
+          return logNormal(Long.parseLong(parts[1]), TimeUnit.MILLISECONDS,
+              parts.length > 2 ? Double.parseDouble(parts[2]) : 0.5);
+        default:
+          throw new IllegalArgumentException("Unknown latency distribution: " + description);
+      }
+    } catch (final ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid latency distribution: " + description, e);
+    }
+  }
+}
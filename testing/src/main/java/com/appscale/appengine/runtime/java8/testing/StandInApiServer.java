@@ -0,0 +1,249 @@
+/**
+ * Copyright 2019 AppScale Systems, Inc
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.appscale.appengine.runtime.java8.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import com.google.apphosting.utils.remoteapi.RemoteApiPb.Request;
+import com.google.apphosting.utils.remoteapi.RemoteApiPb.Response;
+
+/**
+ * In-process stand-in for the python API server.
+ *
+ * Accepts RemoteApiPb requests over HTTP as sent by AppScaleApiClient and
+ * responds with a configurable payload after a simulated latency. Errors
+ * can be injected as application errors or HTTP failures.
+ */
+public class StandInApiServer implements AutoCloseable {
+  private static final int CONNECTOR_THREADS = 4;
+
+  private final LatencyDistribution latency;
+  private final boolean echo;
+  private final double applicationErrorRate;
+  private final int applicationErrorCode;
+  private final double httpErrorRate;
+  private final int threads;
+  private final byte[] payload;
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private Server server;
+  private int port;
+
+  private StandInApiServer(final Builder builder) {
+    this.latency = builder.latency;
+    this.echo = builder.echo;
+    this.applicationErrorRate = builder.applicationErrorRate;
+    this.applicationErrorCode = builder.applicationErrorCode;
+    this.httpErrorRate = builder.httpErrorRate;
+    this.threads = builder.threads;
+    this.payload = new byte[builder.responseSize];
+    new Random(builder.responseSize).nextBytes(payload);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Start the server on an ephemeral local port.
+   *
+   * @return The port
+   */
+  public int start() throws Exception {
+    final QueuedThreadPool threadPool = new QueuedThreadPool(threads + CONNECTOR_THREADS, CONNECTOR_THREADS);
+    threadPool.setName("standin-api");
+    threadPool.setDaemon(true);
+    server = new Server(threadPool);
+    final ServerConnector connector = new ServerConnector(server, 1, 1);
+    connector.setHost("127.0.0.1");
+    connector.setPort(0);
+    server.addConnector(connector);
+    server.setHandler(new RemoteApiHandler());
+    server.start();
+    port = connector.getLocalPort();
+    return port;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  public long getErrorCount() {
+    return errors.sum();
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (server != null) {
+      server.stop();
+      server = null;
+    }
+  }
+
+  private byte[] handle(final byte[] requestBytes, final HttpServletResponse httpResponse) throws IOException {
+    final Request request = new Request();
+    if (!request.mergeFrom(requestBytes)) {
+      httpResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid request");
+      return null;
+    }
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    pause(latency.nextNanos(random));
+
+    if (httpErrorRate > 0.0 && random.nextDouble() < httpErrorRate) {
+      errors.increment();
+      httpResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Injected error");
+      return null;
+    }
+
+    final Response response = new Response();
+    if (applicationErrorRate > 0.0 && random.nextDouble() < applicationErrorRate) {
+      errors.increment();
+      response.getMutableApplicationError()
+          .setCode(applicationErrorCode)
+          .setDetail("Injected error for " + request.getServiceName() + "." + request.getMethod());
+    } else {
+      response.setResponseAsBytes(echo ? request.getRequestAsBytes() : payload);
+    }
+    return response.toByteArray();
+  }
+
+  private static void pause(final long nanos) {
+    if (nanos > 0) {
+      final long deadline = System.nanoTime() + nanos;
+      long remaining = nanos;
+      while (remaining > 0) {
+        LockSupport.parkNanos(remaining);
+        remaining = deadline - System.nanoTime();
+      }
+    }
+  }
+
+  private static byte[] readFully(final InputStream in, final int contentLength) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(contentLength, 512));
+    final byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private class RemoteApiHandler extends AbstractHandler {
+    @Override
+    public void handle(
+        final String target,
+        final org.eclipse.jetty.server.Request baseRequest,
+        final HttpServletRequest request,
+        final HttpServletResponse response
+    ) throws IOException {
+      baseRequest.setHandled(true);
+      requests.increment();
+      if (!"POST".equals(request.getMethod())) {
+        response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        return;
+      }
+      final byte[] responseBytes = StandInApiServer.this.handle(
+          readFully(request.getInputStream(), request.getContentLength()), response);
+      if (responseBytes != null) {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/octet-stream");
+        response.setContentLength(responseBytes.length);
+        response.getOutputStream().write(responseBytes);
+      }
+    }
+  }
+
+  public static final class Builder {
+    private LatencyDistribution latency = LatencyDistribution.none();
+    private int responseSize = 128;
+    private boolean echo;
+    private double applicationErrorRate;
+    private int applicationErrorCode = 1;
+    private double httpErrorRate;
+    private int threads = 200;
+
+    private Builder() {
+    }
+
+    public Builder latency(final LatencyDistribution latency) {
+      this.latency = latency;
+      return this;
+    }
+
+    /**
+     * Size of the response payload for successful calls.
+     */
+    public Builder responseSize(final int responseSize) {
+      if (responseSize < 0) {
+        throw new IllegalArgumentException("Invalid response size: " + responseSize);
+      }
+      this.responseSize = responseSize;
+      return this;
+    }
+
+    /**
+     * Respond with the request payload rather than a fixed payload.
+     */
+    public Builder echo(final boolean echo) {
+      this.echo = echo;
+      return this;
+    }
+
+    /**
+     * Fail the given fraction of calls with an application error.
+     */
+    public Builder applicationErrors(final double rate, final int code) {
+      this.applicationErrorRate = checkRate(rate);
+      this.applicationErrorCode = code;
+      return this;
+    }
+
+    /**
+     * Fail the given fraction of calls with an HTTP 500 response.
+     */
+    public Builder httpErrors(final double rate) {
+      this.httpErrorRate = checkRate(rate);
+      return this;
+    }
+
+    /**
+     * Maximum handler threads, this bounds concurrent calls when simulating latency.
+     */
+    public Builder threads(final int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("Invalid thread count: " + threads);
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    public StandInApiServer build() {
+      return new StandInApiServer(this);
+    }
+
+    private static double checkRate(final double rate) {
+      if (rate < 0.0 || rate > 1.0) {
+        throw new IllegalArgumentException("Rate must be in [0, 1]: " + rate);
+      }
+      return rate;
+    }
+  }
+}